@@ -0,0 +1,125 @@
+package gov.nasa.gsfc.seadas.bathymetry.operator;
+
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process-wide cache of fixed-size blocks of the ETOPO1 grids, shared by all {@link BathymetryReader}s
+ * reading the same file.
+ * <p/>
+ * Blocks are kept as flat {@code short[]} arrays in row-major order and evicted least recently used first.
+ * Requested chunks are assembled from the cached blocks, so repeated requests for the same area, e.g. the
+ * coastal regions of a day's worth of granules, are served without any NetCDF decoding.
+ */
+class BathymetryBlockCache {
+
+    static final String CACHE_SIZE_PROPERTY = "seadas.bathymetry.blockCacheSize";
+
+    static final int BLOCK_SIZE = 256;
+
+    static final int HEIGHT = 0;
+    static final int WATER_SURFACE_HEIGHT = 1;
+
+    // 512 blocks of 256 x 256 shorts take 64 MB
+    private static final int DEFAULT_CACHE_SIZE = 512;
+
+    private static final Map<String, BathymetryBlockCache> CACHES = new HashMap<String, BathymetryBlockCache>();
+
+    private final int dimensionLat;
+    private final int dimensionLon;
+    private final Map<Long, short[]> blocks;
+
+    static BathymetryBlockCache get(File file, int dimensionLat, int dimensionLon) throws IOException {
+        final String key = file.getCanonicalPath();
+        synchronized (CACHES) {
+            BathymetryBlockCache cache = CACHES.get(key);
+            if (cache == null) {
+                cache = new BathymetryBlockCache(dimensionLat, dimensionLon,
+                                                 Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+                CACHES.put(key, cache);
+            }
+            return cache;
+        }
+    }
+
+    BathymetryBlockCache(int dimensionLat, int dimensionLon, final int maxBlocks) {
+        this.dimensionLat = dimensionLat;
+        this.dimensionLon = dimensionLon;
+        blocks = new LinkedHashMap<Long, short[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, short[]> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+    }
+
+    /**
+     * Copies a chunk of the grid into a flat row-major array.
+     *
+     * @param variable   the grid variable, read whenever a block is not cached yet
+     * @param variableId {@link #HEIGHT} or {@link #WATER_SURFACE_HEIGHT}
+     * @param lock       the object guarding reads from the variable's file
+     * @param origin     lat and lon index of the chunk
+     * @param shape      lat and lon length of the chunk
+     * @return the chunk, {@code shape[0] * shape[1]} values
+     */
+    short[] read(Variable variable, int variableId, Object lock, int[] origin, int[] shape) throws IOException {
+        final int latStart = origin[0];
+        final int lonStart = origin[1];
+        final int latEnd = latStart + shape[0];
+        final int lonEnd = lonStart + shape[1];
+        final short[] chunk = new short[shape[0] * shape[1]];
+
+        for (int blockRow = latStart / BLOCK_SIZE; blockRow * BLOCK_SIZE < latEnd; blockRow++) {
+            for (int blockCol = lonStart / BLOCK_SIZE; blockCol * BLOCK_SIZE < lonEnd; blockCol++) {
+                final short[] block = getBlock(variable, variableId, lock, blockRow, blockCol);
+                final int blockLat0 = blockRow * BLOCK_SIZE;
+                final int blockLon0 = blockCol * BLOCK_SIZE;
+                final int blockWidth = Math.min(BLOCK_SIZE, dimensionLon - blockLon0);
+
+                final int lat0 = Math.max(latStart, blockLat0);
+                final int lat1 = Math.min(latEnd, blockLat0 + BLOCK_SIZE);
+                final int lon0 = Math.max(lonStart, blockLon0);
+                final int lon1 = Math.min(lonEnd, blockLon0 + blockWidth);
+                for (int lat = lat0; lat < lat1; lat++) {
+                    System.arraycopy(block, (lat - blockLat0) * blockWidth + lon0 - blockLon0,
+                                     chunk, (lat - latStart) * shape[1] + lon0 - lonStart,
+                                     lon1 - lon0);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    private short[] getBlock(Variable variable, int variableId, Object lock, int blockRow, int blockCol) throws IOException {
+        final Long key = ((long) variableId << 48) | ((long) blockRow << 24) | blockCol;
+        synchronized (blocks) {
+            final short[] block = blocks.get(key);
+            if (block != null) {
+                return block;
+            }
+        }
+
+        final int[] origin = {blockRow * BLOCK_SIZE, blockCol * BLOCK_SIZE};
+        final int[] shape = {Math.min(BLOCK_SIZE, dimensionLat - origin[0]), Math.min(BLOCK_SIZE, dimensionLon - origin[1])};
+        final short[] block;
+        try {
+            synchronized (lock) {
+                block = (short[]) variable.read(origin, shape).copyTo1DJavaArray();
+            }
+        } catch (InvalidRangeException e) {
+            throw new IOException("Invalid bathymetry block " + blockRow + "," + blockCol, e);
+        }
+
+        synchronized (blocks) {
+            blocks.put(key, block);
+        }
+        return block;
+    }
+}
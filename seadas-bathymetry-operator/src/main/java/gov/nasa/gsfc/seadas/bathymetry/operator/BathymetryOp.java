@@ -12,7 +12,6 @@ import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.util.ProductUtils;
-import ucar.ma2.Array;
 
 
 import javax.naming.NameNotFoundException;
@@ -20,6 +19,7 @@ import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Map;
 
 /**
  * The bathymetry operator is a GPF-Operator. It takes the geographic bounds of the input product and creates a new
@@ -162,43 +162,48 @@ public class BathymetryOp extends Operator {
 
 
     @Override
-    public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle rectangle, ProgressMonitor pm) throws OperatorException {
 
-        final String targetBandName = targetBand.getName();
-
-        final Rectangle rectangle = targetTile.getRectangle();
+        final Tile bathymetryTile = targetTiles.get(targetProduct.getBand(BATHYMETRY_BAND_NAME));
+        final Tile topographyTile = targetTiles.get(targetProduct.getBand(TOPOGRAPHY_BAND_NAME));
+        final Tile elevationTile = targetTiles.get(targetProduct.getBand(ELEVATION_BAND_NAME));
 
         // not sure if this is really needed but just in case
-        if (!targetBandName.equals(BATHYMETRY_BAND_NAME)
-                && !targetBandName.equals(TOPOGRAPHY_BAND_NAME)
-                && !targetBandName.equals(ELEVATION_BAND_NAME)) {
-            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                    int dataValue = 0;
-                    targetTile.setSample(x, y, dataValue);
-                }
+        for (Tile targetTile : targetTiles.values()) {
+            if (targetTile != bathymetryTile && targetTile != topographyTile && targetTile != elevationTile) {
+                fillTile(targetTile, 0);
             }
-
-            return;
         }
 
-
         try {
             final GeoCoding geoCoding = sourceProduct.getGeoCoding();
             final PixelPos pixelPos = new PixelPos();
             final GeoPos geoPos = new GeoPos();
 
-
-            // loop through tile, adding each pixel geolocation to it's appropriate earthBox via motherEarthBox
+            // geolocate the tile once, the pixel geolocations are shared by all target bands.
+            // at the same time add each valid pixel geolocation to it's appropriate earthBox via motherEarthBox,
             // at this point the earthBoxes will adjust their mins and maxes based on the given lats and lons.
 
+            final int numPixels = rectangle.width * rectangle.height;
+            final float[] lats = new float[numPixels];
+            final float[] lons = new float[numPixels];
+
             MotherEarthBox motherEarthBox = new MotherEarthBox();
 
+            int i = 0;
             for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
                 for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
                     pixelPos.setLocation(x, y);
                     geoCoding.getGeoPos(pixelPos, geoPos);
-                    motherEarthBox.add(geoPos);
+                    if (geoPos.isValid()) {
+                        lats[i] = geoPos.lat;
+                        lons[i] = geoPos.lon;
+                        motherEarthBox.add(geoPos);
+                    } else {
+                        lats[i] = Float.NaN;
+                        lons[i] = Float.NaN;
+                    }
+                    i++;
                 }
             }
 
@@ -207,112 +212,133 @@ public class BathymetryOp extends Operator {
             // this point from the source in a single chunk call.
 
             for (EarthBox earthBox : motherEarthBox.getFilledEarthBoxes()) {
+                loadEarthBox(earthBox);
+            }
 
-                // add dimensions to the earthBox
-                int minLatIndex = bathymetryReader.getLatIndex(earthBox.getMinLat());
-                int maxLatIndex = bathymetryReader.getLatIndex(earthBox.getMaxLat());
 
-                int minLonIndex = bathymetryReader.getLonIndex(earthBox.getMinLon());
-                int maxLonIndex = bathymetryReader.getLonIndex(earthBox.getMaxLon());
+            // loop through all the tile pixels and derive the values of all target bands from the same
+            // bathymetry height and water surface height.
 
-                if (minLatIndex > 0) {
-                    minLatIndex--;
-                }
+            final short missingValue = bathymetryReader.getMissingValue();
+            final float[] bathymetryData = getDataBuffer(bathymetryTile);
+            final float[] topographyData = getDataBuffer(topographyTile);
+            final float[] elevationData = getDataBuffer(elevationTile);
 
-                if (maxLatIndex < bathymetryReader.dimensionLat - 1) {
-                    maxLatIndex++;
-                }
+            final short[] heights = new short[numPixels];
+            final short[] waterSurfaceHeights = new short[numPixels];
+            motherEarthBox.getValues(lats, lons, heights, waterSurfaceHeights);
 
-                if (minLonIndex > 0) {
-                    minLonIndex--;
-                }
+            i = 0;
+            for (int y = 0; y < rectangle.height; y++) {
+                final int bathymetryIndex = getLineOffset(bathymetryTile, y);
+                final int topographyIndex = getLineOffset(topographyTile, y);
+                final int elevationIndex = getLineOffset(elevationTile, y);
+
+                for (int x = 0; x < rectangle.width; x++, i++) {
+                    int bathymetryValue = missingValue;
+                    int topographyValue = missingValue;
+                    int elevationValue = missingValue;
+
+                    if (!Float.isNaN(lats[i])) {
+                        final int height = heights[i];
+                        final int waterSurfaceHeight = waterSurfaceHeights[i];
+                        final int valueSurface = height - waterSurfaceHeight;
+
+                        elevationValue = height;
+
+                        if (valueSurface > 0) {
+                            topographyValue = height;
+                        } else {
+                            bathymetryValue = valueSurface;
+                        }
 
-                if (maxLonIndex < bathymetryReader.dimensionLon - 1) {
-                    maxLonIndex++;
+                        // convert  to positive if not NaN
+                        if (bathymetryValue > -32000) {
+                            bathymetryValue = -bathymetryValue;
+                        }
+                    }
+
+                    if (bathymetryData != null) {
+                        bathymetryData[bathymetryIndex + x] = bathymetryValue;
+                    }
+                    if (topographyData != null) {
+                        topographyData[topographyIndex + x] = topographyValue;
+                    }
+                    if (elevationData != null) {
+                        elevationData[elevationIndex + x] = elevationValue;
+                    }
                 }
+            }
 
+        } catch (Exception e) {
+            throw new OperatorException("Error computing tile '" + rectangle.toString() + "'.", e);
+        }
+    }
 
-                // determine length of each dimension for the chunk array to be pulled out of the netcdf source
-                int latDimensionLength = maxLatIndex - minLatIndex + 1;
-                int lonDimensionLength = maxLonIndex - minLonIndex + 1;
+    private void loadEarthBox(EarthBox earthBox) throws IOException {
+        // add dimensions to the earthBox
+        int minLatIndex = bathymetryReader.getLatIndex(earthBox.getMinLat());
+        int maxLatIndex = bathymetryReader.getLatIndex(earthBox.getMaxLat());
 
-                // get the bathymetry height array from the netcdf source
-                int[] origin = new int[]{minLatIndex, minLonIndex};
-                int[] shape = new int[]{latDimensionLength, lonDimensionLength};
+        int minLonIndex = bathymetryReader.getLonIndex(earthBox.getMinLon());
+        int maxLonIndex = bathymetryReader.getLonIndex(earthBox.getMaxLon());
 
-                // retrieve the bathymetry height array from netcdf
-                Array heightArray = bathymetryReader.getHeightArray(origin, shape);
-                Array waterSurfaceheightArray = bathymetryReader.getWaterSurfaceHeightArray(origin, shape);
+        if (minLatIndex > 0) {
+            minLatIndex--;
+        }
 
-                // convert heightArray from ucar.ma2.Array format to regular java array
-                short heights[][] = (short[][]) heightArray.copyToNDJavaArray();
-                short waterSurfaceHeights[][] = (short[][]) waterSurfaceheightArray.copyToNDJavaArray();
+        if (maxLatIndex < bathymetryReader.dimensionLat - 1) {
+            maxLatIndex++;
+        }
 
-                // add the value array to the earthBox
+        if (minLonIndex > 0) {
+            minLonIndex--;
+        }
 
-                float minLat = bathymetryReader.getLat(minLatIndex);
-                float maxLat = bathymetryReader.getLat(maxLatIndex);
-                float minLon = bathymetryReader.getLon(minLonIndex);
-                float maxLon = bathymetryReader.getLon(maxLonIndex);
-                short missingValue = bathymetryReader.getMissingValue();
+        if (maxLonIndex < bathymetryReader.dimensionLon - 1) {
+            maxLonIndex++;
+        }
 
-                earthBox.setValues(minLat, maxLat, minLon, maxLon, heights, waterSurfaceHeights, missingValue);
-                earthBox.setGetValueAverage(true);
-            }
 
+        // determine length of each dimension for the chunk array to be pulled out of the netcdf source
+        int latDimensionLength = maxLatIndex - minLatIndex + 1;
+        int lonDimensionLength = maxLonIndex - minLonIndex + 1;
 
-            // loop through all the tile pixels, geolocate them, and get their bathymetry height from motherEarthBox.
-            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                    pixelPos.setLocation(x, y);
-                    geoCoding.getGeoPos(pixelPos, geoPos);
+        // get the bathymetry height array from the netcdf source
+        int[] origin = new int[]{minLatIndex, minLonIndex};
+        int[] shape = new int[]{latDimensionLength, lonDimensionLength};
 
-                    int value;
-                    int waterSurfaceHeight;
-                    int height;
-                    if (geoPos.isValid()) {
+        // retrieve the bathymetry height arrays, flat and row-major, from the shared block cache
+        short heights[] = bathymetryReader.getHeights(origin, shape);
+        short waterSurfaceHeights[] = bathymetryReader.getWaterSurfaceHeights(origin, shape);
 
-                        height = motherEarthBox.getValue(geoPos);
-                        waterSurfaceHeight = motherEarthBox.getWaterSurfaceValue(geoPos);
-
-                        if (targetBandName.equals(ELEVATION_BAND_NAME)) {
-                            value = height;
-                        } else if (targetBandName.equals(TOPOGRAPHY_BAND_NAME)) {
-                            int valueSurface = height - waterSurfaceHeight;
-
-                            if (valueSurface > 0) {
-                                value = motherEarthBox.getValue(geoPos);
-                            } else {
-                                value = bathymetryReader.getMissingValue();
-                            }
-                        } else if (targetBandName.equals(BATHYMETRY_BAND_NAME)) {
-                          int  valueSurface = height - waterSurfaceHeight;
-
-                            if (valueSurface <= 0) {
-                                value = valueSurface;
-                            } else {
-                                value = bathymetryReader.getMissingValue();
-                            }
-
-                            // convert  to positive if not NaN
-                            if (value > -32000) {
-                                value = -value;
-                            }
-                        } else {
-                            value = bathymetryReader.getMissingValue();
-                        }
+        // add the value array to the earthBox
 
-                    } else {
-                        value = bathymetryReader.getMissingValue();
-                    }
+        float minLat = bathymetryReader.getLat(minLatIndex);
+        float maxLat = bathymetryReader.getLat(maxLatIndex);
+        float minLon = bathymetryReader.getLon(minLonIndex);
+        float maxLon = bathymetryReader.getLon(maxLonIndex);
+        short missingValue = bathymetryReader.getMissingValue();
 
+        earthBox.setValues(minLat, maxLat, minLon, maxLon, latDimensionLength, lonDimensionLength,
+                heights, waterSurfaceHeights, missingValue);
+        earthBox.setGetValueAverage(true);
+    }
 
-                    targetTile.setSample(x, y, value);
-                }
-            }
+    private static float[] getDataBuffer(Tile tile) {
+        return tile != null ? tile.getDataBufferFloat() : null;
+    }
 
-        } catch (Exception e) {
-            throw new OperatorException("Error computing tile '" + targetTile.getRectangle().toString() + "'.", e);
+    private static int getLineOffset(Tile tile, int y) {
+        return tile != null ? tile.getScanlineOffset() + y * tile.getScanlineStride() : 0;
+    }
+
+    private static void fillTile(Tile tile, int value) {
+        final Rectangle rectangle = tile.getRectangle();
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                tile.setSample(x, y, value);
+            }
         }
     }
 
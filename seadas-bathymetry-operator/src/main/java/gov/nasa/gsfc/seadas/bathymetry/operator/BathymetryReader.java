@@ -43,6 +43,8 @@ public class BathymetryReader {
 
     private short missingValue;
 
+    private BathymetryBlockCache blockCache;
+
     public BathymetryReader(File file) throws IOException {
         ncFile = NetcdfFile.open(file.getAbsolutePath());
 
@@ -65,6 +67,8 @@ public class BathymetryReader {
 
         missingValue = heightVariable.findAttribute("missing_value").getNumericValue().shortValue();
 
+        blockCache = BathymetryBlockCache.get(file, dimensionLat, dimensionLon);
+
     }
 
 
@@ -112,6 +116,21 @@ public class BathymetryReader {
         }
     }
 
+    /**
+     * Returns a chunk of the height grid as a flat row-major array, served from the process-wide block cache.
+     */
+    public short[] getHeights(int[] origin, int[] shape) throws IOException {
+        return blockCache.read(heightVariable, BathymetryBlockCache.HEIGHT, ncFile, origin, shape);
+    }
+
+    /**
+     * Returns a chunk of the water surface height grid as a flat row-major array, served from the process-wide
+     * block cache.
+     */
+    public short[] getWaterSurfaceHeights(int[] origin, int[] shape) throws IOException {
+        return blockCache.read(waterSurfaceHeightVariable, BathymetryBlockCache.WATER_SURFACE_HEIGHT, ncFile, origin, shape);
+    }
+
     public short getHeight(int latIndex, int lonIndex) {
 
         short height;
@@ -28,11 +28,16 @@ public class EarthBox {
     float deltaLat = NULL_COORDINATE;
     float deltaLon = NULL_COORDINATE;
 
+    // reciprocals of the deltas
+    private float latScale;
+    private float lonScale;
+
     private int latDimensionLength = NULL_LENGTH;
     private int lonDimensionLength = NULL_LENGTH;
 
-    private short[][] values;
-    private short[][] waterSurfaceValues;
+    // row-major, latDimensionLength rows of lonDimensionLength values
+    private short[] values;
+    private short[] waterSurfaceValues;
 
     private short missingValue;
 
@@ -71,6 +76,7 @@ public class EarthBox {
     private void setDeltaLon() {
         if (getMinLon() != NULL_COORDINATE && getMaxLon() != NULL_COORDINATE && getLonDimensionLength() != NULL_LENGTH) {
             deltaLon = (getMaxLon() - getMinLon()) / (getLonDimensionLength()-1);
+            lonScale = 1 / deltaLon;
         }
     }
 
@@ -78,6 +84,7 @@ public class EarthBox {
     private void setDeltaLat() {
         if (getMinLat() != NULL_COORDINATE && getMaxLat() != NULL_COORDINATE && getLatDimensionLength() != NULL_LENGTH) {
             deltaLat = (getMaxLat() - getMinLat()) / (getLatDimensionLength()-1);
+            latScale = 1 / deltaLat;
         }
     }
 
@@ -130,6 +137,12 @@ public class EarthBox {
 
 
     public void setValues(float minLat, float maxLat, float minLon, float maxLon, short[][] values, short[][] waterSurfaceValues, short missingValue) {
+        setValues(minLat, maxLat, minLon, maxLon, values.length, values[0].length,
+                flatten(values), flatten(waterSurfaceValues), missingValue);
+    }
+
+    public void setValues(float minLat, float maxLat, float minLon, float maxLon, int latDimensionLength, int lonDimensionLength,
+                          short[] values, short[] waterSurfaceValues, short missingValue) {
         this.values = values;
         this.waterSurfaceValues = waterSurfaceValues;
 
@@ -138,8 +151,8 @@ public class EarthBox {
         setMaxLon(maxLon);
         setMinLon(minLon);
 
-        setLatDimensionLength(values.length);
-        setLonDimensionLength(values[0].length);
+        setLatDimensionLength(latDimensionLength);
+        setLonDimensionLength(lonDimensionLength);
 
         setDeltaLat();
         setDeltaLon();
@@ -184,254 +197,120 @@ public class EarthBox {
     }
 
     public short getValue(float lat, float lon) {
-        int latIndex = getLatIndex(lat);
-        int lonIndex = getLonIndex(lon);
-
-
-        short value;
-        if (isGetValueAverage()) {
-            float lutLat = getLat(latIndex);
-            float lutLon = getLon(lonIndex);
+        return sample(values, lat, lon);
+    }
 
-            float lutLatN;
-            float lutLatS;
-            int lutLatIndexN;
-            int lutLatIndexS;
 
+    public short getWaterSurfaceValue(float lat, float lon) {
+        return sample(waterSurfaceValues, lat, lon);
+    }
 
-            if (lat > lutLat) {
-                if (latIndex < latDimensionLength - 1) {
-                    lutLatIndexN = latIndex + 1;
-                    lutLatN = getLat(lutLatIndexN);
-                } else {
-                    lutLatIndexN = latIndex;
-                    lutLatN = lutLat;
-                }
 
-                lutLatIndexS = latIndex;
-                lutLatS = lutLat;
-            } else {
-                lutLatN = lutLat;
-                lutLatIndexN = latIndex;
-
-                if (latIndex > 0) {
-                    lutLatIndexS = latIndex - 1;
-                    lutLatS = getLat(lutLatIndexS);
-                } else {
-                    lutLatIndexS = 0;
-                    lutLatS = lutLat;
-                }
-            }
+    /**
+     * Samples the heights at the given positions, {@code NaN} positions yield the missing value.
+     */
+    public void getValues(float[] lats, float[] lons, short[] values) {
+        sample(this.values, lats, lons, values);
+    }
 
 
-            float lutLonE;
-            float lutLonW;
-            int lutLonIndexE;
-            int lutLonIndexW;
+    /**
+     * Samples the water surface heights at the given positions, {@code NaN} positions yield the missing value.
+     */
+    public void getWaterSurfaceValues(float[] lats, float[] lons, short[] waterSurfaceValues) {
+        sample(this.waterSurfaceValues, lats, lons, waterSurfaceValues);
+    }
 
-            if (lon > lutLon) {
-                if (lonIndex < lonDimensionLength - 1) {
-                    lutLonIndexE = lonIndex + 1;
-                    lutLonE = getLon(lutLonIndexE);
-                } else {
-                    lutLonIndexE = lonIndex;
-                    lutLonE = lutLon;
-                }
 
-                lutLonIndexW = lonIndex;
-                lutLonW = lutLon;
+    private void sample(short[] grid, float[] lats, float[] lons, short[] samples) {
+        for (int i = 0; i < samples.length; i++) {
+            if (Float.isNaN(lats[i]) || Float.isNaN(lons[i])) {
+                samples[i] = getMissingValue();
             } else {
-                lutLonE = lutLon;
-                lutLonIndexE = lonIndex;
-
-                if (lonIndex > 0) {
-                    lutLonIndexW = lonIndex - 1;
-                    lutLonW = getLon(lutLonIndexW);
-                } else {
-                    lutLonIndexW = 0;
-                    lutLonW = lutLon;
-                }
+                samples[i] = sample(grid, lats[i], lons[i]);
             }
+        }
+    }
 
 
-            GeoPos geoPosNW = new GeoPos(lutLatN, lutLonW);
-            GeoPos geoPosNE = new GeoPos(lutLatN, lutLonE);
-            GeoPos geoPosSW = new GeoPos(lutLatS, lutLonW);
-            GeoPos geoPosSE = new GeoPos(lutLatS, lutLonE);
-
-            short cornerValueNW = getValue(lutLatIndexN, lutLonIndexW);
-            short cornerValueNE = getValue(lutLatIndexN, lutLonIndexE);
-            short cornerValueSW = getValue(lutLatIndexS, lutLonIndexW);
-            short cornerValueSE = getValue(lutLatIndexS, lutLonIndexE);
+    // bilinear interpolation between the four surrounding grid points,
+    // the nearest grid point is used if any of them is missing.
+    private short sample(short[] grid, float lat, float lon) {
+        // make sure the deltas and scales are computed
+        final float deltaLat = getDeltaLat();
+        final float deltaLon = getDeltaLon();
 
-            if (cornerValueNW != getMissingValue() && cornerValueNE != getMissingValue() && cornerValueSW != getMissingValue() && cornerValueSE != getMissingValue()) {
-                float deltaLutLat = lutLatN - lutLatS;
-                short sideValueW;
-                short sideValueE;
+        final int latIndexS = clamp((int) ((lat - minLat) * latScale), latDimensionLength);
+        final int lonIndexW = clamp((int) ((lon - minLon) * lonScale), lonDimensionLength);
 
-                if (deltaLutLat > 0) {
-                    float weightLutLatS = (lutLatN - lat) / deltaLutLat;
-                    float weightLutLatN = 1 - weightLutLatS;
+        final int rowS = latIndexS * lonDimensionLength;
+        if (!isGetValueAverage()) {
+            return grid[rowS + lonIndexW];
+        }
 
-                    sideValueW = (short) (weightLutLatN * cornerValueNW + weightLutLatS * cornerValueSW);
-                    sideValueE = (short) (weightLutLatN * cornerValueNE + weightLutLatS * cornerValueSE);
-                } else {
-                    sideValueW = cornerValueNW;
-                    sideValueE = cornerValueNE;
-                }
+        final int latIndexN = latIndexS < latDimensionLength - 1 ? latIndexS + 1 : latIndexS;
+        final int lonIndexE = lonIndexW < lonDimensionLength - 1 ? lonIndexW + 1 : lonIndexW;
+        final int rowN = latIndexN * lonDimensionLength;
 
+        final short cornerValueSW = grid[rowS + lonIndexW];
+        final short cornerValueSE = grid[rowS + lonIndexE];
+        final short cornerValueNW = grid[rowN + lonIndexW];
+        final short cornerValueNE = grid[rowN + lonIndexE];
 
-                float deltaLutLon = lutLonE - lutLonW;
+        if (cornerValueNW == missingValue || cornerValueNE == missingValue || cornerValueSW == missingValue || cornerValueSE == missingValue) {
+            return cornerValueSW;
+        }
 
+        final short sideValueW;
+        final short sideValueE;
+        if (latIndexN != latIndexS) {
+            final float weightLutLatS = (minLat + latIndexN * deltaLat - lat) * latScale;
+            final float weightLutLatN = 1 - weightLutLatS;
 
-                if (deltaLutLon > 0) {
-                    float weightSideW = (lutLonE - lon) / deltaLutLon;
-                    float weightSideE = 1 - weightSideW;
+            sideValueW = (short) (weightLutLatN * cornerValueNW + weightLutLatS * cornerValueSW);
+            sideValueE = (short) (weightLutLatN * cornerValueNE + weightLutLatS * cornerValueSE);
+        } else {
+            sideValueW = cornerValueNW;
+            sideValueE = cornerValueNE;
+        }
 
-                    value = (short) (weightSideW * sideValueW + weightSideE * sideValueE);
-                } else {
-                    value = sideValueE;
-                }
-            } else {
-                value = getValue(latIndex, lonIndex);
-            }
+        if (lonIndexE != lonIndexW) {
+            final float weightSideW = (minLon + lonIndexE * deltaLon - lon) * lonScale;
+            final float weightSideE = 1 - weightSideW;
 
+            return (short) (weightSideW * sideValueW + weightSideE * sideValueE);
         } else {
-            value = getValue(latIndex, lonIndex);
+            return sideValueE;
         }
-
-        return value;
     }
 
 
-    public short getWaterSurfaceValue(float lat, float lon) {
-        int latIndex = getLatIndex(lat);
-        int lonIndex = getLonIndex(lon);
-
-
-        short waterSurfaceValue;
-        if (isGetValueAverage()) {
-            float lutLat = getLat(latIndex);
-            float lutLon = getLon(lonIndex);
-
-            float lutLatN;
-            float lutLatS;
-            int lutLatIndexN;
-            int lutLatIndexS;
-
-
-            if (lat > lutLat) {
-                if (latIndex < latDimensionLength - 1) {
-                    lutLatIndexN = latIndex + 1;
-                    lutLatN = getLat(lutLatIndexN);
-                } else {
-                    lutLatIndexN = latIndex;
-                    lutLatN = lutLat;
-                }
-
-                lutLatIndexS = latIndex;
-                lutLatS = lutLat;
-            } else {
-                lutLatN = lutLat;
-                lutLatIndexN = latIndex;
-
-                if (latIndex > 0) {
-                    lutLatIndexS = latIndex - 1;
-                    lutLatS = getLat(lutLatIndexS);
-                } else {
-                    lutLatIndexS = 0;
-                    lutLatS = lutLat;
-                }
-            }
-
-
-            float lutLonE;
-            float lutLonW;
-            int lutLonIndexE;
-            int lutLonIndexW;
-
-            if (lon > lutLon) {
-                if (lonIndex < lonDimensionLength - 1) {
-                    lutLonIndexE = lonIndex + 1;
-                    lutLonE = getLon(lutLonIndexE);
-                } else {
-                    lutLonIndexE = lonIndex;
-                    lutLonE = lutLon;
-                }
-
-                lutLonIndexW = lonIndex;
-                lutLonW = lutLon;
-            } else {
-                lutLonE = lutLon;
-                lutLonIndexE = lonIndex;
-
-                if (lonIndex > 0) {
-                    lutLonIndexW = lonIndex - 1;
-                    lutLonW = getLon(lutLonIndexW);
-                } else {
-                    lutLonIndexW = 0;
-                    lutLonW = lutLon;
-                }
-            }
-
-
-            GeoPos geoPosNW = new GeoPos(lutLatN, lutLonW);
-            GeoPos geoPosNE = new GeoPos(lutLatN, lutLonE);
-            GeoPos geoPosSW = new GeoPos(lutLatS, lutLonW);
-            GeoPos geoPosSE = new GeoPos(lutLatS, lutLonE);
-
-            short cornerValueNW = getWaterSurfaceValue(lutLatIndexN, lutLonIndexW);
-            short cornerValueNE = getWaterSurfaceValue(lutLatIndexN, lutLonIndexE);
-            short cornerValueSW = getWaterSurfaceValue(lutLatIndexS, lutLonIndexW);
-            short cornerValueSE = getWaterSurfaceValue(lutLatIndexS, lutLonIndexE);
-
-            if (cornerValueNW != getMissingValue() && cornerValueNE != getMissingValue() && cornerValueSW != getMissingValue() && cornerValueSE != getMissingValue()) {
-                float deltaLutLat = lutLatN - lutLatS;
-                short sideValueW;
-                short sideValueE;
-
-                if (deltaLutLat > 0) {
-                    float weightLutLatS = (lutLatN - lat) / deltaLutLat;
-                    float weightLutLatN = 1 - weightLutLatS;
-
-                    sideValueW = (short) (weightLutLatN * cornerValueNW + weightLutLatS * cornerValueSW);
-                    sideValueE = (short) (weightLutLatN * cornerValueNE + weightLutLatS * cornerValueSE);
-                } else {
-                    sideValueW = cornerValueNW;
-                    sideValueE = cornerValueNE;
-                }
-
-
-                float deltaLutLon = lutLonE - lutLonW;
-
-
-                if (deltaLutLon > 0) {
-                    float weightSideW = (lutLonE - lon) / deltaLutLon;
-                    float weightSideE = 1 - weightSideW;
-
-                    waterSurfaceValue = (short) (weightSideW * sideValueW + weightSideE * sideValueE);
-                } else {
-                    waterSurfaceValue = sideValueE;
-                }
-            } else {
-                waterSurfaceValue = getWaterSurfaceValue(latIndex, lonIndex);
-            }
-
-        } else {
-            waterSurfaceValue = getWaterSurfaceValue(latIndex, lonIndex);
+    private static int clamp(int index, int length) {
+        if (index > length - 1) {
+            return length - 1;
         }
-
-        return waterSurfaceValue;
+        if (index < 0) {
+            return 0;
+        }
+        return index;
     }
 
 
-
     public short getValue(int latIndex, int lonIndex) {
-        return values[latIndex][lonIndex];
+        return values[latIndex * lonDimensionLength + lonIndex];
     }
 
     public short getWaterSurfaceValue(int latIndex, int lonIndex) {
-        return waterSurfaceValues[latIndex][lonIndex];
+        return waterSurfaceValues[latIndex * lonDimensionLength + lonIndex];
+    }
+
+    private static short[] flatten(short[][] values) {
+        final int width = values[0].length;
+        final short[] flatValues = new short[values.length * width];
+        for (int i = 0; i < values.length; i++) {
+            System.arraycopy(values[i], 0, flatValues, i * width, width);
+        }
+        return flatValues;
     }
 
     public float getLon(int lonIndex) {
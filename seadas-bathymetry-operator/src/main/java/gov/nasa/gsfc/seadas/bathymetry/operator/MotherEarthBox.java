@@ -43,43 +43,48 @@ public class MotherEarthBox {
 
 
     public short getValue(GeoPos geoPos) {
-        short bathymetryValue;
-
-        if (geoPos.lat >= 0) {
-            if (geoPos.lon >= 0) {
-                bathymetryValue = earthBoxNE.getValue(geoPos);
-            } else {
-                bathymetryValue = earthBoxNW.getValue(geoPos);
-            }
-        } else {
-            if (geoPos.lon >= 0) {
-                bathymetryValue = earthBoxSE.getValue(geoPos);
-            } else {
-                bathymetryValue = earthBoxSW.getValue(geoPos);
-            }
-        }
+        return getValue(geoPos.lat, geoPos.lon);
+    }
 
-        return bathymetryValue;
+    public short getValue(float lat, float lon) {
+        return getEarthBox(lat, lon).getValue(lat, lon);
     }
 
     public short getWaterSurfaceValue(GeoPos geoPos) {
-        short waterSurfaceValue;
+        return getWaterSurfaceValue(geoPos.lat, geoPos.lon);
+    }
 
-        if (geoPos.lat >= 0) {
-            if (geoPos.lon >= 0) {
-                waterSurfaceValue = earthBoxNE.getWaterSurfaceValue(geoPos);
+    public short getWaterSurfaceValue(float lat, float lon) {
+        return getEarthBox(lat, lon).getWaterSurfaceValue(lat, lon);
+    }
+
+    /**
+     * Samples the heights and water surface heights at the given positions, {@code NaN} positions are skipped.
+     */
+    public void getValues(float[] lats, float[] lons, short[] values, short[] waterSurfaceValues) {
+        for (int i = 0; i < lats.length; i++) {
+            if (!Float.isNaN(lats[i]) && !Float.isNaN(lons[i])) {
+                final EarthBox earthBox = getEarthBox(lats[i], lons[i]);
+                values[i] = earthBox.getValue(lats[i], lons[i]);
+                waterSurfaceValues[i] = earthBox.getWaterSurfaceValue(lats[i], lons[i]);
+            }
+        }
+    }
+
+    private EarthBox getEarthBox(float lat, float lon) {
+        if (lat >= 0) {
+            if (lon >= 0) {
+                return earthBoxNE;
             } else {
-                waterSurfaceValue = earthBoxNW.getWaterSurfaceValue(geoPos);
+                return earthBoxNW;
             }
         } else {
-            if (geoPos.lon >= 0) {
-                waterSurfaceValue = earthBoxSE.getWaterSurfaceValue(geoPos);
+            if (lon >= 0) {
+                return earthBoxSE;
             } else {
-                waterSurfaceValue = earthBoxSW.getWaterSurfaceValue(geoPos);
+                return earthBoxSW;
             }
         }
-
-        return waterSurfaceValue;
     }
 
     public EarthBox getEarthBoxNW() {
@@ -33,7 +33,9 @@ import javax.media.jai.ParameterBlockJAI;
 import javax.media.jai.RenderedOp;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by IntelliJ IDEA.
@@ -137,20 +139,39 @@ public class ShowVectorContourOverlayAction extends AbstractShowOverlayAction {
         noDataList.add(noDataValue);
         pb.setParameter("nodata", noDataList);
 
+        // contour all levels in a single pass over the source image
+        ArrayList<Double> contourValues = new ArrayList<Double>();
         for (ContourInterval interval : contourIntervals) {
-            ArrayList<Double> contourInterval = new ArrayList<Double>();
+            contourValues.add((interval.getContourLevelValue() - scalingOffset) / scalingFactor);
+        }
+        // intervals may share a value, contour it once and give each of them its lines
+        pb.setParameter("levels", new ArrayList<Double>(new LinkedHashSet<Double>(contourValues)));
+
+        Map<Double, List<LineString>> contoursByLevel;
+        try {
+            RenderedOp dest = JAI.create("Contour", pb);
+            contoursByLevel = (Map<Double, List<LineString>>) dest.getProperty(ContourDescriptor.CONTOUR_LEVELS_PROPERTY_NAME);
+        } catch (Exception e) {
+            if (contourData.getLevels().size() != 0)
+                System.out.println(e.getMessage());
+            if (VisatApp.getApp() != null) {
+                VisatApp.getApp().showErrorDialog("failed to create contour lines");
+            }
+            return vectorDataNodes;
+        }
+
+        for (int i = 0; i < contourIntervals.size(); i++) {
+            ContourInterval interval = contourIntervals.get(i);
             String vectorName = interval.getContourLevelName();
             if (contourData.isFiltered()) {
                 vectorName = vectorName + "_filtered";
             }
-            double contourValue = (interval.getContourLevelValue() - scalingOffset) / scalingFactor;
-            contourInterval.add(contourValue);
-            pb.setParameter("levels", contourInterval);
+            double contourValue = contourValues.get(i);
 
             FeatureCollection<SimpleFeatureType, SimpleFeature> featureCollection = null;
 
             try {
-                featureCollection = createContourFeatureCollection(pb);
+                featureCollection = createContourFeatureCollection(contoursByLevel.get(contourValue));
             } catch (Exception e) {
                 if (contourData.getLevels().size() != 0)
                     System.out.println(e.getMessage());
@@ -179,10 +200,8 @@ public class ShowVectorContourOverlayAction extends AbstractShowOverlayAction {
         return vectorDataNodes;
     }
 
-    private FeatureCollection<SimpleFeatureType, SimpleFeature> createContourFeatureCollection(ParameterBlockJAI pb) {
+    private FeatureCollection<SimpleFeatureType, SimpleFeature> createContourFeatureCollection(List<LineString> contours) {
 
-        RenderedOp dest = JAI.create("Contour", pb);
-        Collection<LineString> contours = (Collection<LineString>) dest.getProperty(ContourDescriptor.CONTOUR_PROPERTY_NAME);
         SimpleFeatureType featureType = null;
         FeatureCollection<SimpleFeatureType, SimpleFeature> featureCollection = null;
         try {
@@ -191,12 +210,18 @@ public class ShowVectorContourOverlayAction extends AbstractShowOverlayAction {
         } catch (IOException ioe) {
 
         }
-        for (LineString lineString : contours) {
+        if (contours == null) {
+            return featureCollection;
+        }
+        for (LineString contour : contours) {
+            // the same contour value may be requested by more than one interval, leave the operator's lines untouched
+            LineString lineString = (LineString) contour.clone();
             Coordinate[] coordinates = lineString.getCoordinates();
             for (int i = 0; i < coordinates.length; i++) {
                 coordinates[i].x = coordinates[i].x + 0.5;
                 coordinates[i].y = coordinates[i].y + 0.5;
             }
+            lineString.geometryChanged();
             final SimpleFeature feature = createFeature(featureType, lineString);
 
             if (feature != null) {
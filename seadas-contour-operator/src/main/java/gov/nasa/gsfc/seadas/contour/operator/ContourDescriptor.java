@@ -193,6 +193,15 @@ public class ContourDescriptor extends OperationDescriptorImpl {
      * Constant identifying the image property that will hold the generated contours.
      */
     public final static String CONTOUR_PROPERTY_NAME = "contours";
+
+    /**
+     * Constant identifying the image property that will hold the generated contours
+     * grouped by contour value, as a {@code Map} from each contour value to its
+     * {@code List} of {@link com.vividsolutions.jts.geom.LineString}s, in ascending
+     * order of contour value. All levels are generated in a single pass over the
+     * source image.
+     */
+    public final static String CONTOUR_LEVELS_PROPERTY_NAME = "contoursByLevel";
     
     static final int ROI_ARG = 0;
     static final int BAND_ARG = 1;
@@ -25,6 +25,7 @@
 package gov.nasa.gsfc.seadas.contour.operator;
 
 import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.operation.linemerge.LineMerger;
 import org.jaitools.CollectionFactory;
 import org.jaitools.jts.LineSmoother;
 import org.jaitools.jts.SmootherControl;
@@ -37,9 +38,13 @@ import javax.media.jai.PlanarImage;
 import javax.media.jai.ROI;
 import javax.media.jai.iterator.RectIter;
 import javax.media.jai.iterator.RectIterFactory;
+import java.awt.Rectangle;
 import java.awt.image.RenderedImage;
 import java.lang.ref.SoftReference;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 
 /**
@@ -70,6 +75,12 @@ public class ContourOpImage extends AttributeOpImage {
     private static final int BR_VERTEX2 = 1;
     private static final int TR_VERTEX3 = 2;
     private static final int TL_VERTEX4 = 3;
+
+    /** Minimum number of grid cell rows contoured by one task */
+    private static final int MIN_STRIP_HEIGHT = 64;
+
+    /** Tolerance for contour line ends lying on a strip border */
+    private static final double SEAM_TOLERANCE = 1.0e-6;
     
     /** The source image band to process */
     private int band;
@@ -89,11 +100,14 @@ public class ContourOpImage extends AttributeOpImage {
     /** List of Ranges to treat as NO_DATA */
     private List<Range<Double>> noDataRanges;
 
+    /** The NODATA values and ranges, compiled for the contouring kernel */
+    private final NoDataPredicate noDataPredicate;
+
     /** Whether to use strict NODATA exclusion */
     private final boolean strictNodata;
     
-    /** Output contour lines */
-    private SoftReference<List<LineString>> cachedContours;
+    /** Output contour lines, by contour value */
+    private SoftReference<Map<Double, List<LineString>>> cachedContours;
     
     /** Whether to simplify contour lines by removing coincident vertices */
     private final boolean simplify;
@@ -167,12 +181,13 @@ public class ContourOpImage extends AttributeOpImage {
         this.band = band;
         
         if (levels != null) {
-            this.contourLevels = new ArrayList<Double>();
-            // Use specific levels
+            // Use specific levels, each once: the lines of a repeated level would be traced and
+            // returned once for every repetition
+            SortedSet<Double> uniqueLevels = new TreeSet<Double>();
             for (Number z : levels) {
-                this.contourLevels.add(z.doubleValue());
+                uniqueLevels.add(z.doubleValue());
             }
-            Collections.sort(contourLevels);
+            this.contourLevels = new ArrayList<Double>(uniqueLevels);
             
         } else if (interval != null && !interval.isNaN()) {
             // Use requested interval with levels 'discovered' as the
@@ -214,6 +229,8 @@ public class ContourOpImage extends AttributeOpImage {
             }
         } 
 
+        this.noDataPredicate = new NoDataPredicate(noDataNumbers, noDataRanges);
+
         this.strictNodata = strictNodata;
         this.simplify = simplify;
         this.smooth = smooth;
@@ -227,13 +244,24 @@ public class ContourOpImage extends AttributeOpImage {
      */
     @Override
     protected Object getAttribute(String name) {
-        if (cachedContours == null || cachedContours.get() == null) {
-            synchronized(this) {
-                cachedContours = new SoftReference<List<LineString>>(createContours());
+        Map<Double, List<LineString>> contours;
+        synchronized(this) {
+            contours = cachedContours != null ? cachedContours.get() : null;
+            if (contours == null) {
+                contours = createContours();
+                cachedContours = new SoftReference<Map<Double, List<LineString>>>(contours);
             }
         }
-        
-        return cachedContours.get();
+
+        if (ContourDescriptor.CONTOUR_LEVELS_PROPERTY_NAME.equalsIgnoreCase(name)) {
+            return contours;
+        }
+
+        List<LineString> contourLines = new ArrayList<LineString>();
+        for (List<LineString> levelContours : contours.values()) {
+            contourLines.addAll(levelContours);
+        }
+        return contourLines;
     }
 
     /**
@@ -241,73 +269,194 @@ public class ContourOpImage extends AttributeOpImage {
      */
     @Override
     protected String[] getAttributeNames() {
-        return new String[]{ContourDescriptor.CONTOUR_PROPERTY_NAME};
+        return new String[]{ContourDescriptor.CONTOUR_PROPERTY_NAME, ContourDescriptor.CONTOUR_LEVELS_PROPERTY_NAME};
     }
 
     /**
      * Returns the class of the specified attribute. For
-     * {@link ContourDescriptor#CONTOUR_PROPERTY_NAME} this will be {@code List}.
+     * {@link ContourDescriptor#CONTOUR_PROPERTY_NAME} this will be {@code List},
+     * for {@link ContourDescriptor#CONTOUR_LEVELS_PROPERTY_NAME} {@code Map}.
      */
     @Override
     protected Class<?> getAttributeClass(String name) {
         if (ContourDescriptor.CONTOUR_PROPERTY_NAME.equalsIgnoreCase(name)) {
             return List.class;
         }
+        if (ContourDescriptor.CONTOUR_LEVELS_PROPERTY_NAME.equalsIgnoreCase(name)) {
+            return Map.class;
+        }
         
         return super.getAttributeClass(name);
     }
     
 
     /**
-     * Controls contour generation.
+     * Controls contour generation. All contour levels are generated
+     * in a single pass over the source image.
      * 
-     * @return generated contours
+     * @return generated contours, by contour value in ascending order
      */
-    private List<LineString> createContours() {
+    private Map<Double, List<LineString>> createContours() {
         // build the contour levels if necessary
         if(contourLevels == null) {
             contourLevels = buildContourLevels();
         }
-        // aggregate all the segments
-        Map<Integer, Segments> segments = getContourSegments();
+        // aggregate all the segments, merged into lines
+        Map<Integer, List<LineString>> lines = getContourLines();
 
         /*
-         * Assemble contours into a simple list and assign values 
+         * Assemble contours by level and assign values 
          */
-        List<LineString> mergedContourLines = new ArrayList<LineString>();
+        Map<Double, List<LineString>> mergedContourLines = new LinkedHashMap<Double, List<LineString>>();
+
+        LineSmoother smoother = null;
+        if (smooth) {
+            smoother = new LineSmoother(Utils.getGeometryFactory());
+            smoother.setControl(smootherControl);
+        }
 
         int levelIndex = 0;
         for (Double levelValue : contourLevels) {
-            Segments levelSegments = segments.remove(levelIndex);
-            if (levelSegments != null) {
-                List<LineString> levelContours = levelSegments.getMergedSegments();
+            List<LineString> levelContours = lines.remove(levelIndex);
+            if (levelContours != null) {
+
+                /*
+                 * Bezier smoothing of contours
+                 */
+                if (smoother != null) {
+                    for (int i = 0; i < levelContours.size(); i++) {
+                        levelContours.set(i, smoother.smooth(levelContours.get(i), smoothAlpha));
+                    }
+                }
+
                 for (LineString line : levelContours) {
                     line.setUserData(levelValue);
                 }
-                mergedContourLines.addAll(levelContours);
+
+                List<LineString> contours = mergedContourLines.get(levelValue);
+                if (contours == null) {
+                    mergedContourLines.put(levelValue, levelContours);
+                } else {
+                    contours.addAll(levelContours);
+                }
             }
             levelIndex++;
         }
         
-        /*
-         * Bezier smoothing of contours
-         */
-        if (smooth) {
-            LineSmoother smoother = new LineSmoother(Utils.getGeometryFactory());
-            smoother.setControl(smootherControl);
-            
-            final int N = mergedContourLines.size();
-            for (int i = N - 1; i >= 0; i--) {
-                LineString contour = mergedContourLines.remove(i);
-                LineString smoothed = smoother.smooth(contour, smoothAlpha);
-                mergedContourLines.add(smoothed);
+        return mergedContourLines;
+    }
+
+
+    /**
+     * Creates the contour lines of all levels.
+     * <p>
+     * The rows of grid cells are split into horizontal strips which are
+     * contoured independently on the fork/join pool, each into its own
+     * segment buffers which are merged into lines per strip. The strip
+     * lines are then joined across the strip borders, in strip order. Only
+     * lines with an end on a strip border take part in this seam merge,
+     * all others are already complete.
+     *
+     * @return the merged contour lines by level index
+     */
+    private Map<Integer, List<LineString>> getContourLines() {
+        final Rectangle bounds = getSourceImage(0).getBounds();
+        final int numCellRows = bounds.height - 1;
+        final int numStrips = Math.max(1, Math.min(numCellRows / MIN_STRIP_HEIGHT,
+                4 * ForkJoinPool.getCommonPoolParallelism()));
+
+        final List<StripTask> tasks = new ArrayList<StripTask>(numStrips);
+        final double[] seams = new double[numStrips - 1];
+        for (int i = 0; i < numStrips; i++) {
+            final int y0 = bounds.y + (int) ((long) numCellRows * i / numStrips);
+            final int y1 = bounds.y + (int) ((long) numCellRows * (i + 1) / numStrips);
+            tasks.add(new StripTask(y0, y1));
+            if (i > 0) {
+                seams[i - 1] = y0;
             }
         }
-        
-        return mergedContourLines;
+        if (numStrips == 1) {
+            tasks.get(0).invoke();
+        } else {
+            ForkJoinTask.invokeAll(tasks);
+        }
+
+        final Map<Integer, List<LineString>> lines = new HashMap<Integer, List<LineString>>();
+        final Map<Integer, LineMerger> seamMergers = new HashMap<Integer, LineMerger>();
+        for (StripTask task : tasks) {
+            for (Map.Entry<Integer, List<LineString>> entry : task.join().entrySet()) {
+                final Integer levelIndex = entry.getKey();
+                List<LineString> levelLines = lines.get(levelIndex);
+                if (levelLines == null) {
+                    levelLines = new ArrayList<LineString>();
+                    lines.put(levelIndex, levelLines);
+                }
+                for (LineString line : entry.getValue()) {
+                    if (endsOnSeam(line, seams)) {
+                        LineMerger merger = seamMergers.get(levelIndex);
+                        if (merger == null) {
+                            merger = new LineMerger();
+                            seamMergers.put(levelIndex, merger);
+                        }
+                        merger.add(line);
+                    } else {
+                        levelLines.add(line);
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, LineMerger> entry : seamMergers.entrySet()) {
+            final List<LineString> levelLines = lines.get(entry.getKey());
+            for (Object merged : entry.getValue().getMergedLineStrings()) {
+                LineString line = (LineString) merged;
+                if (simplify) {
+                    line = Utils.removeCollinearVertices(line);
+                }
+                levelLines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static boolean endsOnSeam(LineString line, double[] seams) {
+        if (seams.length == 0 || line.isClosed()) {
+            return false;
+        }
+        final double startY = line.getCoordinateN(0).y;
+        final double endY = line.getCoordinateN(line.getNumPoints() - 1).y;
+        for (double seam : seams) {
+            if (Math.abs(startY - seam) < SEAM_TOLERANCE || Math.abs(endY - seam) < SEAM_TOLERANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Contours one strip of grid cell rows.
+     */
+    private class StripTask extends RecursiveTask<Map<Integer, List<LineString>>> {
+
+        private final int y0;
+        private final int y1;
+
+        StripTask(int y0, int y1) {
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+
+        @Override
+        protected Map<Integer, List<LineString>> compute() {
+            final Map<Integer, Segments> segments = getContourSegments(y0, y1);
+            final Map<Integer, List<LineString>> lines = new HashMap<Integer, List<LineString>>();
+            for (Map.Entry<Integer, Segments> entry : segments.entrySet()) {
+                lines.put(entry.getKey(), entry.getValue().getMergedSegments());
+            }
+            return lines;
+        }
     }
 
-    
     /**
      * Creates contour segments.
      * The algorithm used is CONREC, devised by Paul Bourke (see class notes).
@@ -349,9 +498,13 @@ public class ContourOpImage extends AttributeOpImage {
      * NODATA values are handled by ignoring all triangles that have any
      * NODATA vertices.
      * 
+     * @param firstRow the first row of grid cells to process, the cell at row
+     *     {@code y} spans the source image rows {@code y} and {@code y + 1}
+     * @param endRow the row of grid cells following the last one to process
+     *
      * @return the generated contour segments
      */
-    private Map<Integer, Segments> getContourSegments() {
+    private Map<Integer, Segments> getContourSegments(int firstRow, int endRow) {
 
         Map<Integer, Segments> segments = new HashMap<Integer, Segments>();
 
@@ -371,53 +524,51 @@ public class ContourOpImage extends AttributeOpImage {
         
         final PlanarImage src = getSourceImage(0);
         
-        RectIter iter1 = RectIterFactory.create(src, src.getBounds());
-        RectIter iter2 = RectIterFactory.create(src, src.getBounds());
-        moveIterToBand(iter1, this.band);
-        moveIterToBand(iter2, this.band);
-        iter1.startLines();
-        iter2.startLines();
-        iter2.nextLine();
-        
-        int y = (int) src.getBounds().getMinY();
-        while(!iter2.finishedLines() && !iter1.finishedLines()) {
-            iter1.startPixels();
-            iter2.startPixels();
-            
-            sample[BR_VERTEX2] = iter1.getSampleDouble();
-            nodata[BR_VERTEX2] = isNoData(sample[BR_VERTEX2]);
+        final Rectangle strip = new Rectangle(src.getMinX(), firstRow, src.getWidth(), endRow - firstRow + 1);
+        RectIter iter = RectIterFactory.create(src, strip);
+        moveIterToBand(iter, this.band);
+        iter.startLines();
 
-            sample[TR_VERTEX3] = iter2.getSampleDouble();
-            nodata[TR_VERTEX3] = isNoData(sample[TR_VERTEX3]);
+        /*
+         * Each image row is read and classified as NODATA once, into line
+         * buffers which are shared by the cells above and below the row
+         */
+        final int width = strip.width;
+        double[] samples1 = new double[width];
+        double[] samples2 = new double[width];
+        boolean[] nodata1 = new boolean[width];
+        boolean[] nodata2 = new boolean[width];
+        if (!iter.finishedLines()) {
+            readLine(iter, samples1, nodata1);
+            iter.nextLine();
+        }
+
+        int y = firstRow;
+        while(!iter.finishedLines()) {
+            readLine(iter, samples2, nodata2);
+
+            sample[BR_VERTEX2] = samples1[0];
+            nodata[BR_VERTEX2] = nodata1[0];
+
+            sample[TR_VERTEX3] = samples2[0];
+            nodata[TR_VERTEX3] = nodata2[0];
             
-            iter1.nextPixel();
-            iter2.nextPixel();
             int x = (int) src.getBounds().getMinX() + 1;
-            while (!iter1.finishedPixels() && !iter2.finishedPixels()) {
+            for (int col = 1; col < width; col++) {
                 sample[BL_VERTEX1] = sample[BR_VERTEX2];
                 nodata[BL_VERTEX1] = nodata[BR_VERTEX2];
 
-                sample[BR_VERTEX2] = iter1.getSampleDouble();
-                nodata[BR_VERTEX2] = isNoData(sample[BR_VERTEX2]);
+                sample[BR_VERTEX2] = samples1[col];
+                nodata[BR_VERTEX2] = nodata1[col];
 
                 sample[TL_VERTEX4] = sample[TR_VERTEX3];
                 nodata[TL_VERTEX4] = nodata[TR_VERTEX3];
 
-                sample[TR_VERTEX3] = iter2.getSampleDouble();
-                nodata[TR_VERTEX3] = isNoData(sample[TR_VERTEX3]);
-
-                boolean processSquare = true;
-                boolean hasSingleNoData = false;
-                for (int i = 0; i < 4 && processSquare; i++) {
-                    if (nodata[i]) {
-                        if (strictNodata || hasSingleNoData) {
-                            processSquare = false;
-                            break;
-                        } else {
-                            hasSingleNoData = true;
-                        }
-                    }
-                }
+                sample[TR_VERTEX3] = samples2[col];
+                nodata[TR_VERTEX3] = nodata2[col];
+
+                boolean processSquare = !(nodata[BL_VERTEX1] || nodata[BR_VERTEX2] || nodata[TR_VERTEX3] || nodata[TL_VERTEX4])
+                        || isProcessable(nodata);
 
                 if (processSquare) {
                     if (nodata[BL_VERTEX1]) {
@@ -610,13 +761,18 @@ public class ContourOpImage extends AttributeOpImage {
                     }
                 }
                 
-                iter1.nextPixel();
-                iter2.nextPixel();
                 x++;
             }
-            
-            iter1.nextLine();
-            iter2.nextLine();
+
+            // the top row of these cells is the bottom row of the next ones
+            double[] samplesTemp = samples1;
+            samples1 = samples2;
+            samples2 = samplesTemp;
+            boolean[] nodataTemp = nodata1;
+            nodata1 = nodata2;
+            nodata2 = nodataTemp;
+
+            iter.nextLine();
             y++;
         }
         
@@ -624,6 +780,44 @@ public class ContourOpImage extends AttributeOpImage {
     }
     
 
+    /**
+     * Tests whether a 2x2 cell with at least one NODATA vertex can be processed,
+     * which is only the case for a single NODATA vertex without strict NODATA exclusion.
+     *
+     * @param nodata NODATA flags of the cell vertices
+     *
+     * @return {@code true} if the cell should be processed
+     */
+    private boolean isProcessable(boolean[] nodata) {
+        if (strictNodata) {
+            return false;
+        }
+        int count = 0;
+        for (int i = 0; i < 4; i++) {
+            if (nodata[i]) {
+                count++;
+            }
+        }
+        return count <= 1;
+    }
+
+    /**
+     * Reads the current line of an image iterator and classifies its values as NODATA.
+     *
+     * @param iter the iterator, positioned at the line to read
+     * @param samples receives the values of the line
+     * @param nodata receives the NODATA flags of the line
+     */
+    private void readLine(RectIter iter, double[] samples, boolean[] nodata) {
+        iter.startPixels();
+        int i = 0;
+        while (!iter.finishedPixels()) {
+            samples[i++] = iter.getSampleDouble();
+            iter.nextPixel();
+        }
+        noDataPredicate.classify(samples, nodata, i);
+    }
+
     /**
      * Calculate an X or Y ordinate for a contour segment end-point
      * relative to the difference in value between two sampling positions.
@@ -710,34 +904,4 @@ public class ContourOpImage extends AttributeOpImage {
             throw new IllegalArgumentException("Band " + targetBand + " not found, max band is " + iband);
         }
     }
-
-    /**
-     * Tests if a value should be treated as NODATA.
-     * Values that are NaN, infinite or equal to Double.MAX_VALUE
-     * are always treated as NODATA.
-     * 
-     * @param value the value to test
-     * 
-     * @return {@code true} if a NODATA value; {@code false} otherwise
-     */
-    private boolean isNoData(double value) {
-        if (Double.isNaN(value) || Double.isInfinite(value) ||
-            Double.compare(value, Double.MAX_VALUE) == 0) {
-            return true;
-        }
-
-        for (Double d : noDataNumbers) {
-            if (CompareOp.aequal(value, d)) {
-                return true;
-            }
-        }
-
-        for (Range r : noDataRanges) {
-            if (r.contains(value)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
 }
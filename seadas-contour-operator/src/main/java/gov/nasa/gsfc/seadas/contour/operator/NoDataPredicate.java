@@ -0,0 +1,99 @@
+package gov.nasa.gsfc.seadas.contour.operator;
+
+import org.jaitools.numeric.CompareOp;
+import org.jaitools.numeric.Range;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The NODATA values and ranges of ContourOpImage, compiled into primitive arrays.
+ * Values that are NaN, infinite or equal to Double.MAX_VALUE are always NODATA.
+ */
+final class NoDataPredicate {
+
+    /** NODATA values, sorted */
+    private final double[] values;
+
+    /** NODATA ranges */
+    private final double[] rangeMins;
+    private final double[] rangeMaxs;
+    private final boolean[] rangeMinIncluded;
+    private final boolean[] rangeMaxIncluded;
+
+    NoDataPredicate(List<Double> noDataNumbers, List<Range<Double>> noDataRanges) {
+        values = new double[noDataNumbers.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = noDataNumbers.get(i);
+        }
+        Arrays.sort(values);
+
+        final int n = noDataRanges.size();
+        rangeMins = new double[n];
+        rangeMaxs = new double[n];
+        rangeMinIncluded = new boolean[n];
+        rangeMaxIncluded = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            final Range<Double> r = noDataRanges.get(i);
+            rangeMins[i] = r.isMinNegInf() ? Double.NEGATIVE_INFINITY : r.getMin();
+            rangeMaxs[i] = r.isMaxInf() ? Double.POSITIVE_INFINITY : r.getMax();
+            rangeMinIncluded[i] = r.isMinIncluded();
+            rangeMaxIncluded[i] = r.isMaxIncluded();
+        }
+    }
+
+    /**
+     * Tests if a value should be treated as NODATA.
+     *
+     * @param value the value to test
+     *
+     * @return {@code true} if a NODATA value; {@code false} otherwise
+     */
+    boolean isNoData(double value) {
+        // NaN, infinities and MAX_VALUE, but not -MAX_VALUE
+        if (Double.isNaN(value) || Double.isInfinite(value) || value == Double.MAX_VALUE) {
+            return true;
+        }
+
+        if (values.length > 0) {
+            // first value not below value - DTOL, which is the only candidate to be equal within tolerance
+            int lo = 0;
+            int hi = values.length;
+            final double lower = value - CompareOp.DTOL;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (values[mid] <= lower) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (lo < values.length && values[lo] < value + CompareOp.DTOL) {
+                return true;
+            }
+        }
+
+        for (int i = 0; i < rangeMins.length; i++) {
+            final boolean aboveMin = rangeMinIncluded[i] ? value >= rangeMins[i] : value > rangeMins[i];
+            final boolean belowMax = rangeMaxIncluded[i] ? value <= rangeMaxs[i] : value < rangeMaxs[i];
+            if (aboveMin && belowMax) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Classifies a row of values.
+     *
+     * @param samples the values
+     * @param nodata  receives the classification of each value
+     * @param length  the number of values to classify
+     */
+    void classify(double[] samples, boolean[] nodata, int length) {
+        for (int i = 0; i < length; i++) {
+            nodata[i] = isNoData(samples[i]);
+        }
+    }
+}
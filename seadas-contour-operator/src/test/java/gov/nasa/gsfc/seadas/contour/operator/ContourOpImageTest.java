@@ -0,0 +1,49 @@
+package gov.nasa.gsfc.seadas.contour.operator;
+
+import com.vividsolutions.jts.geom.LineString;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ContourOpImageTest {
+
+    @Test
+    public void testRepeatedLevelIsContouredOnce() {
+        BufferedImage image = createGradientImage();
+
+        Map<Double, List<LineString>> single = getContoursByLevel(new ContourOpImage(image, null, 0,
+                Arrays.asList(1.5), null, null, true, false, false));
+        Map<Double, List<LineString>> repeated = getContoursByLevel(new ContourOpImage(image, null, 0,
+                Arrays.asList(1.5, 1.5), null, null, true, false, false));
+
+        assertFalse(single.get(1.5).isEmpty());
+        assertEquals(single.keySet(), repeated.keySet());
+        assertEquals(single.get(1.5).size(), repeated.get(1.5).size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Double, List<LineString>> getContoursByLevel(ContourOpImage contourOpImage) {
+        return (Map<Double, List<LineString>>) contourOpImage.getAttribute(ContourDescriptor.CONTOUR_LEVELS_PROPERTY_NAME);
+    }
+
+    /**
+     * @return an image whose values grow from 0 to 3 from left to right
+     */
+    private static BufferedImage createGradientImage() {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                raster.setSample(x, y, 0, x);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,36 @@
+package gov.nasa.gsfc.seadas.contour.operator;
+
+import org.jaitools.numeric.Range;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NoDataPredicateTest {
+
+    @Test
+    public void testDefaultNoDataValues() {
+        NoDataPredicate predicate = new NoDataPredicate(Collections.<Double>emptyList(), Collections.<Range<Double>>emptyList());
+        assertTrue(predicate.isNoData(Double.NaN));
+        assertTrue(predicate.isNoData(Double.POSITIVE_INFINITY));
+        assertTrue(predicate.isNoData(Double.NEGATIVE_INFINITY));
+        assertTrue(predicate.isNoData(Double.MAX_VALUE));
+        assertFalse(predicate.isNoData(-Double.MAX_VALUE));
+        assertFalse(predicate.isNoData(0));
+    }
+
+    @Test
+    public void testValuesAndRanges() {
+        NoDataPredicate predicate = new NoDataPredicate(Arrays.asList(-999.0, 5.0),
+                Arrays.asList(new Range<Double>(10.0, true, 20.0, false)));
+        assertTrue(predicate.isNoData(-999.0));
+        assertTrue(predicate.isNoData(5.0));
+        assertFalse(predicate.isNoData(6.0));
+        assertTrue(predicate.isNoData(10.0));
+        assertTrue(predicate.isNoData(15.0));
+        assertFalse(predicate.isNoData(20.0));
+    }
+}
@@ -1,6 +1,7 @@
 package gov.nasa.gsfc.seadas.ocsswrest;
 
 import gov.nasa.gsfc.seadas.ocsswrest.database.SQLiteJDBC;
+import gov.nasa.gsfc.seadas.ocsswrest.process.JobScheduler;
 
 import javax.json.Json;
 import javax.json.JsonObject;
@@ -25,10 +26,7 @@ public class JobServices {
     public String createNewJob() {
         String newJobId = hashJobID(new Long(new Date().getTime()).toString());
         //insert rows for this new job in the processor and file tables.
-        SQLiteJDBC.insertItem("FILE_TABLE", "JOB_ID", newJobId);
-        SQLiteJDBC.updateItem(SQLiteJDBC.PROCESS_TABLE_NAME, newJobId, SQLiteJDBC.ProcessTableFields.STATUS.getFieldName(), SQLiteJDBC.ProcessStatusFlag.NONEXIST.getValue());
-        SQLiteJDBC.insertItem("PROCESS_TABLE", "JOB_ID", newJobId);
-        SQLiteJDBC.insertItem(SQLiteJDBC.LONLAT_TABLE_NAME, "JOB_ID", newJobId);
+        SQLiteJDBC.insertNewJob(newJobId);
         return newJobId;
     }
 
@@ -40,6 +38,29 @@ public class JobServices {
         return jobList;
     }
 
+    /**
+     * @return the position of the job in the program queue, 1 if it is the next to start, or 0 if it is not
+     * waiting to start
+     */
+    @GET
+    @Path("/queuePosition/{jobId}")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String getQueuePosition(@PathParam("jobId") String jobId) {
+        return Integer.toString(JobScheduler.getInstance().getQueuePosition(jobId));
+    }
+
+    @GET
+    @Path("/queueStatus")
+    @Produces(MediaType.APPLICATION_JSON)
+    public JsonObject getQueueStatus() {
+        JobScheduler scheduler = JobScheduler.getInstance();
+        return Json.createObjectBuilder()
+                .add("maxConcurrentJobs", scheduler.getMaxConcurrentJobs())
+                .add("runningJobs", scheduler.getRunningJobCount())
+                .add("queuedJobs", scheduler.getQueuedJobCount())
+                .build();
+    }
+
     @DELETE
     @Path("/deleteJobs")
     public void deleteAllJobs() {
@@ -3,18 +3,25 @@ package gov.nasa.gsfc.seadas.ocsswrest;
 import gov.nasa.gsfc.seadas.ocsswrest.database.SQLiteJDBC;
 import gov.nasa.gsfc.seadas.ocsswrest.ocsswmodel.OCSSWRemoteImpl;
 import gov.nasa.gsfc.seadas.ocsswrest.ocsswmodel.OCSSWServerModel;
+import gov.nasa.gsfc.seadas.ocsswrest.utilities.ChunkedUploads;
+import gov.nasa.gsfc.seadas.ocsswrest.utilities.ContentStore;
+import gov.nasa.gsfc.seadas.ocsswrest.utilities.FileDownloads;
 import gov.nasa.gsfc.seadas.ocsswrest.utilities.OCSSWServerPropertyValues;
 import gov.nasa.gsfc.seadas.ocsswrest.utilities.ServerSideFileUtilities;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 
 import javax.json.Json;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
 import javax.ws.rs.*;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.*;
 import java.io.*;
 import java.nio.file.*;
+import java.util.Map;
 
 import static gov.nasa.gsfc.seadas.ocsswrest.OCSSWRestServer.OCSSW_ROOT_PROPERTY;
 import static gov.nasa.gsfc.seadas.ocsswrest.ocsswmodel.OCSSWRemoteImpl.MLP_OUTPUT_DIR_NAME;
@@ -40,6 +47,10 @@ public class OCSSWFileServices {
     private static final String OCSSW_OUTPUT_COMPRESSED_FILE_NAME = "ocssw_output.zip";
     private static final int BUFFER_SIZE = 1024;
 
+    // the Range header of the current request, resources are created per request
+    @HeaderParam(FileDownloads.RANGE_HEADER)
+    private String range;
+
     @GET
     @Path("/serverSharedFileDir")
     @Produces(MediaType.TEXT_PLAIN)
@@ -135,28 +146,157 @@ public class OCSSWFileServices {
         return Response.status(respStatus).build();
     }
 
+    /**
+     * Receives one chunk of a file uploaded in chunks of {@code chunkSize} bytes. Chunks may arrive in any
+     * order and in parallel; the file is assembled once {@link #completeUpload} is called.
+     */
+    @PUT
+    @Path("/uploadChunk/{jobId}/{fileName}/{index}")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public Response uploadChunk(@PathParam("jobId") String jobId,
+                                @PathParam("fileName") String fileName,
+                                @PathParam("index") int index,
+                                @QueryParam("chunkSize") int chunkSize,
+                                @QueryParam("fileSize") long fileSize,
+                                InputStream chunk) {
+        File targetFile = getUploadTarget(jobId, fileName);
+        if (targetFile == null) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        try {
+            Files.createDirectories(targetFile.getParentFile().toPath());
+            ChunkedUploads.writeChunk(targetFile, fileSize, chunkSize, index, chunk);
+            return Response.ok().build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Lists the chunks already received of a file, so an interrupted upload only sends the missing ones.
+     */
+    @GET
+    @Path("/uploadStatus/{jobId}/{fileName}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response uploadStatus(@PathParam("jobId") String jobId,
+                                 @PathParam("fileName") String fileName,
+                                 @QueryParam("chunkSize") int chunkSize,
+                                 @QueryParam("fileSize") long fileSize) {
+        File targetFile = getUploadTarget(jobId, fileName);
+        if (targetFile == null) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        try {
+            JsonArrayBuilder chunks = Json.createArrayBuilder();
+            for (int index : ChunkedUploads.getReceivedChunks(targetFile, fileSize, chunkSize)) {
+                chunks.add(index);
+            }
+            return Response.ok(Json.createObjectBuilder().add("chunks", chunks).build()).build();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Assembles an uploaded file after verifying its SHA-256 checksum, and adds it to the job's input files.
+     *
+     * @return 409 if chunks are missing, 412 if the checksum does not match and the upload has been discarded,
+     * 404 if there is no upload of the file
+     */
+    @POST
+    @Path("/completeUpload/{jobId}/{fileName}")
+    public Response completeUpload(@PathParam("jobId") String jobId,
+                                   @PathParam("fileName") String fileName,
+                                   @QueryParam("sha256") String sha256) {
+        File targetFile = getUploadTarget(jobId, fileName);
+        if (targetFile == null || sha256 == null) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        try {
+            switch (ChunkedUploads.complete(targetFile, sha256)) {
+                case COMPLETED:
+                    SQLiteJDBC.updateInputFilesList(jobId, targetFile.getPath());
+                    addToContentStore(targetFile, sha256);
+                    return Response.ok().build();
+                case MISSING_CHUNKS:
+                    return Response.status(Response.Status.CONFLICT).build();
+                case CHECKSUM_MISMATCH:
+                    return Response.status(Response.Status.PRECONDITION_FAILED).build();
+                default:
+                    return Response.status(Response.Status.NOT_FOUND).build();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Links the input files already on the server into the job's working directory, given the SHA-256 checksums
+     * of their content, so clients only upload the files the server has never seen.
+     *
+     * @param checksums the checksum of each file by file name
+     * @return the names of the linked files as {@code {"linked": [...]}}
+     */
+    @POST
+    @Path("/linkCachedFiles/{jobId}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response linkCachedFiles(@PathParam("jobId") String jobId, JsonObject checksums) {
+        JsonArrayBuilder linked = Json.createArrayBuilder();
+        ContentStore contentStore = ContentStore.getInstance();
+        for (Map.Entry<String, JsonValue> checksum : checksums.entrySet()) {
+            File targetFile = getUploadTarget(jobId, checksum.getKey());
+            if (targetFile == null || !(checksum.getValue() instanceof JsonString)) {
+                continue;
+            }
+            try {
+                Files.createDirectories(targetFile.getParentFile().toPath());
+                if (contentStore.linkInto(((JsonString) checksum.getValue()).getString(), targetFile)) {
+                    SQLiteJDBC.updateInputFilesList(jobId, targetFile.getPath());
+                    linked.add(checksum.getKey());
+                }
+            } catch (IOException e) {
+                // the client uploads the file instead
+                e.printStackTrace();
+            }
+        }
+        return Response.ok(Json.createObjectBuilder().add("linked", linked).build()).build();
+    }
+
+    private static void addToContentStore(File file, String sha256) {
+        try {
+            ContentStore.getInstance().add(file, sha256);
+        } catch (IOException e) {
+            // the upload itself succeeded, the next job uploads the file again
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the file in the job's working directory, {@code null} if the name is not a plain file name
+     */
+    private static File getUploadTarget(String jobId, String fileName) {
+        if (fileName == null || fileName.isEmpty() || fileName.contains("/") || fileName.contains(File.separator) || fileName.equals(".") || fileName.equals("..")) {
+            return null;
+        }
+        String workingDir = SQLiteJDBC.retrieveItem(SQLiteJDBC.FILE_TABLE_NAME, jobId, SQLiteJDBC.FileTableFields.WORKING_DIR_PATH.getFieldName());
+        if (workingDir == null) {
+            return null;
+        }
+        return new File(workingDir, fileName);
+    }
+
     @GET
     @Path("/downloadFile/{jobId}")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
     public Response downloadFile(@PathParam("jobId") String jobId) {
         String ofileName = SQLiteJDBC.retrieveItem(SQLiteJDBC.FILE_TABLE_NAME, jobId, SQLiteJDBC.FileTableFields.O_FILE_NAME.getFieldName());
-        StreamingOutput fileStream = new StreamingOutput() {
-            @Override
-            public void write(OutputStream outputStream) throws WebApplicationException {
-                try {
-                    java.nio.file.Path path = Paths.get(ofileName);
-                    byte[] data = Files.readAllBytes(path);
-                    outputStream.write(data);
-                    outputStream.flush();
-                } catch (Exception e) {
-                    throw new WebApplicationException("File Not Found !!");
-                }
-            }
-        };
-        return Response
-                .ok(fileStream, MediaType.APPLICATION_OCTET_STREAM)
-                .header("content-disposition", "attachment; fileName = " + ofileName)
-                .build();
+        return FileDownloads.createResponse(ofileName, range);
     }
 
     @GET
@@ -166,24 +306,7 @@ public class OCSSWFileServices {
 
         String serverWorkingDir = SQLiteJDBC.retrieveItem(SQLiteJDBC.FILE_TABLE_NAME, jobId, SQLiteJDBC.FileTableFields.WORKING_DIR_PATH.getFieldName());
         String fileToDownload = serverWorkingDir + File.separator + OCSSWRemoteImpl.ANC_FILE_LIST_FILE_NAME;
-        StreamingOutput fileStream = new StreamingOutput() {
-            @Override
-            public void write(OutputStream outputStream) throws WebApplicationException {
-                try {
-                    System.out.println("anc file name = " + fileToDownload);
-                    java.nio.file.Path path = Paths.get(fileToDownload);
-                    byte[] data = Files.readAllBytes(path);
-                    outputStream.write(data);
-                    outputStream.flush();
-                } catch (Exception e) {
-                    throw new WebApplicationException("File Not Found !!");
-                }
-            }
-        };
-        return Response
-                .ok(fileStream, MediaType.APPLICATION_OCTET_STREAM)
-                .header("content-disposition", "attachment; fileName = " + fileToDownload)
-                .build();
+        return FileDownloads.createResponse(fileToDownload, range);
     }
 
 
@@ -204,24 +327,7 @@ public class OCSSWFileServices {
         if (programName.equals(MLP_PROGRAM_NAME)) {
             processStdoutFileName = ServerSideFileUtilities.getLogFileName(workingDir);
         }
-        String finalProcessStdoutFileName = processStdoutFileName;
-        StreamingOutput fileStream = new StreamingOutput() {
-            @Override
-            public void write(OutputStream outputStream) throws WebApplicationException {
-                try {
-                    java.nio.file.Path path = Paths.get(finalProcessStdoutFileName);
-                    byte[] data = Files.readAllBytes(path);
-                    outputStream.write(data);
-                    outputStream.flush();
-                } catch (Exception e) {
-                    throw new WebApplicationException("File Not Found !!");
-                }
-            }
-        };
-        return Response
-                .ok(fileStream, MediaType.APPLICATION_OCTET_STREAM)
-                .header("content-disposition", "attachment; fileName = " + finalProcessStdoutFileName)
-                .build();
+        return FileDownloads.createResponse(processStdoutFileName, range);
     }
 
     @GET
@@ -232,31 +338,7 @@ public class OCSSWFileServices {
         String workingFileDir = SQLiteJDBC.retrieveItem(SQLiteJDBC.FILE_TABLE_NAME, jobId, SQLiteJDBC.FileTableFields.WORKING_DIR_PATH.getFieldName());
         String mlpOutputDir = workingFileDir + File.separator + MLP_OUTPUT_DIR_NAME;
         String ofileName = mlpOutputDir + File.separator + clientOfileName;
-        File file = new File(ofileName);
-        if (file.exists()) {
-            StreamingOutput fileStream = new StreamingOutput() {
-                @Override
-                public void write(OutputStream outputStream) throws WebApplicationException {
-                    try {
-                        java.nio.file.Path path = Paths.get(ofileName);
-                        byte[] data = Files.readAllBytes(path);
-                        outputStream.write(data);
-                        outputStream.flush();
-                    } catch (Exception e) {
-                        throw new WebApplicationException("File Not Found !!");
-                    }
-                }
-            };
-            System.out.println(file.getAbsolutePath());
-
-            return Response
-                    .ok(fileStream, MediaType.APPLICATION_OCTET_STREAM)
-                    .header("content-disposition", "attachment; fileName = " + ofileName)
-                    .build();
-        } else {
-            System.out.println(ofileName + " does not exist");
-            return null;
-        }
+        return FileDownloads.createResponse(ofileName, range);
     }
 
 
@@ -267,23 +349,7 @@ public class OCSSWFileServices {
                                          @PathParam("ofileName") String clientOfileName) {
         String workingFileDir = SQLiteJDBC.retrieveItem(SQLiteJDBC.FILE_TABLE_NAME, jobId, SQLiteJDBC.FileTableFields.WORKING_DIR_PATH.getFieldName());
         String ofileName = workingFileDir + File.separator + clientOfileName;
-        StreamingOutput fileStream = new StreamingOutput() {
-            @Override
-            public void write(OutputStream outputStream) throws WebApplicationException {
-                try {
-                    java.nio.file.Path path = Paths.get(ofileName);
-                    byte[] data = Files.readAllBytes(path);
-                    outputStream.write(data);
-                    outputStream.flush();
-                } catch (Exception e) {
-                    throw new WebApplicationException("File Not Found !!");
-                }
-            }
-        };
-        return Response
-                .ok(fileStream, MediaType.APPLICATION_OCTET_STREAM)
-                .header("content-disposition", "attachment; fileName = " + ofileName)
-                .build();
+        return FileDownloads.createResponse(ofileName, range);
     }
 
 
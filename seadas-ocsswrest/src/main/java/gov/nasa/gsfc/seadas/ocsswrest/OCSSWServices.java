@@ -3,16 +3,24 @@ package gov.nasa.gsfc.seadas.ocsswrest;
 import gov.nasa.gsfc.seadas.ocsswrest.database.SQLiteJDBC;
 import gov.nasa.gsfc.seadas.ocsswrest.ocsswmodel.OCSSWRemoteImpl;
 import gov.nasa.gsfc.seadas.ocsswrest.ocsswmodel.OCSSWServerModel;
+import gov.nasa.gsfc.seadas.ocsswrest.process.JobEventLog;
 import gov.nasa.gsfc.seadas.ocsswrest.utilities.*;
 
 import javax.json.Json;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.container.TimeoutHandler;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static gov.nasa.gsfc.seadas.ocsswrest.OCSSWRestServer.SERVER_WORKING_DIRECTORY_PROPERTY;
 import static gov.nasa.gsfc.seadas.ocsswrest.ocsswmodel.OCSSWRemoteImpl.*;
@@ -39,6 +47,9 @@ public class OCSSWServices {
     private static String MISSION_TABLE_NAME = "MISSION_TABLE";
     final static String CLIENT_SERVER_SHARED_DIR_PROPERTY = "clientServerSharedDir";
 
+    // long enough to spare clients most round trips, short enough for proxies to keep the connection open
+    private static final long LONG_POLL_TIMEOUT_SECONDS = 30;
+
     private HashMap<String, Boolean> missionDataStatus;
 
     /**
@@ -387,6 +398,93 @@ public class OCSSWServices {
         return processStatus;
     }
 
+    /**
+     * Long-polls the job's status: responds as soon as the status differs from the known one, or with the
+     * unchanged status after {@link #LONG_POLL_TIMEOUT_SECONDS}.
+     */
+    @GET
+    @Path("awaitProcessStatus/{jobId}/{knownStatus}")
+    @Produces(MediaType.TEXT_PLAIN)
+    public void awaitProcessStatus(@PathParam("jobId") String jobId,
+                                   @PathParam("knownStatus") final String knownStatus,
+                                   @Suspended final AsyncResponse asyncResponse) {
+        final JobEventLog eventLog = JobEventLog.getLog(jobId);
+        final JobEventLog.Listener listener = new JobEventLog.Listener() {
+            @Override
+            public boolean eventsAdded(JobEventLog log) {
+                String status = log.getStatus();
+                if (status.equals(knownStatus)) {
+                    return false;
+                }
+                asyncResponse.resume(status);
+                return true;
+            }
+        };
+        asyncResponse.setTimeout(LONG_POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        asyncResponse.setTimeoutHandler(new TimeoutHandler() {
+            @Override
+            public void handleTimeout(AsyncResponse response) {
+                eventLog.removeListener(listener);
+                response.resume(eventLog.getStatus());
+            }
+        });
+        eventLog.addListener(listener);
+    }
+
+    /**
+     * Long-polls the status transitions and output lines of the job's current program run. Responds as soon as
+     * there are events with a sequence number of at least {@code since}, or with no events after
+     * {@link #LONG_POLL_TIMEOUT_SECONDS}. The response holds the job's status, the events and the {@code next}
+     * sequence number to ask for.
+     */
+    @GET
+    @Path("processEvents/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void getProcessEvents(@PathParam("jobId") String jobId,
+                                 @QueryParam("since") @DefaultValue("0") final long since,
+                                 @Suspended final AsyncResponse asyncResponse) {
+        final JobEventLog eventLog = JobEventLog.getLog(jobId);
+        final JobEventLog.Listener listener = new JobEventLog.Listener() {
+            @Override
+            public boolean eventsAdded(JobEventLog log) {
+                // the status is read first, so it never announces an end whose last lines are missing
+                String status = log.getStatus();
+                List<JobEventLog.Event> events = log.getEvents(since);
+                if (events.isEmpty()) {
+                    return false;
+                }
+                asyncResponse.resume(toJson(status, log, events));
+                return true;
+            }
+        };
+        asyncResponse.setTimeout(LONG_POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        asyncResponse.setTimeoutHandler(new TimeoutHandler() {
+            @Override
+            public void handleTimeout(AsyncResponse response) {
+                eventLog.removeListener(listener);
+                String status = eventLog.getStatus();
+                response.resume(toJson(status, eventLog, eventLog.getEvents(since)));
+            }
+        });
+        eventLog.addListener(listener);
+    }
+
+    private static JsonObject toJson(String status, JobEventLog eventLog, List<JobEventLog.Event> events) {
+        JsonArrayBuilder eventsBuilder = Json.createArrayBuilder();
+        for (JobEventLog.Event event : events) {
+            eventsBuilder.add(Json.createObjectBuilder()
+                                      .add("sequence", event.getSequence())
+                                      .add("type", event.getType())
+                                      .add("text", event.getText()));
+        }
+        long next = events.isEmpty() ? eventLog.getNextSequence() : events.get(events.size() - 1).getSequence() + 1;
+        return Json.createObjectBuilder()
+                .add("status", status)
+                .add("next", next)
+                .add("events", eventsBuilder)
+                .build();
+    }
+
     @GET
     @Path("missions")
     @Produces(MediaType.APPLICATION_JSON)
@@ -540,4 +638,48 @@ public class OCSSWServices {
         System.out.println("process error stream last line = " + errorStreamLine + "  filename = " + processErrorStreamFileName);
         return errorStreamLine;
     }
+
+    /**
+     * Returns the process input stream lines written since the given offset, together with the offset to ask
+     * for next time.
+     */
+    @GET
+    @Path("retrieveProcessInputStreamLines/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response retrieveProcessInputStreamLines(@PathParam("jobId") String jobId,
+                                                    @QueryParam("offset") @DefaultValue("0") long offset) {
+        String serverWorkingDir = SQLiteJDBC.retrieveItem(SQLiteJDBC.FILE_TABLE_NAME, jobId, SQLiteJDBC.FileTableFields.WORKING_DIR_PATH.getFieldName());
+        return createLogLinesResponse(serverWorkingDir + File.separator + jobId + File.separator + PROCESS_INPUT_STREAM_FILE_NAME, offset);
+    }
+
+    /**
+     * Returns the process error stream lines written since the given offset, together with the offset to ask
+     * for next time.
+     */
+    @GET
+    @Path("retrieveProcessErrorStreamLines/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response retrieveProcessErrorStreamLines(@PathParam("jobId") String jobId,
+                                                    @QueryParam("offset") @DefaultValue("0") long offset) {
+        String serverWorkingDir = SQLiteJDBC.retrieveItem(SQLiteJDBC.FILE_TABLE_NAME, jobId, SQLiteJDBC.FileTableFields.WORKING_DIR_PATH.getFieldName());
+        return createLogLinesResponse(serverWorkingDir + File.separator + jobId + File.separator + PROCESS_ERROR_STREAM_FILE_NAME, offset);
+    }
+
+    private Response createLogLinesResponse(String logFileName, long offset) {
+        try {
+            ProcessLogReader.LogChunk chunk = ProcessLogReader.readLinesSince(logFileName, offset);
+            JsonArrayBuilder linesBuilder = Json.createArrayBuilder();
+            for (String line : chunk.getLines()) {
+                linesBuilder.add(line);
+            }
+            JsonObject lines = Json.createObjectBuilder()
+                    .add("offset", chunk.getNextOffset())
+                    .add("lines", linesBuilder)
+                    .build();
+            return Response.ok(lines, MediaType.APPLICATION_JSON_TYPE).build();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 }
@@ -0,0 +1,173 @@
+package gov.nasa.gsfc.seadas.ocsswrest.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A small pool of long-lived connections to the job database.
+ * <p>
+ * The database is switched to write-ahead logging, so status polls read concurrently with job updates
+ * instead of waiting for them. Each connection caches its prepared statements by SQL string; a connection
+ * is only ever used by one thread at a time, which is all SQLite requires. Connections are opened lazily,
+ * up to the pool size given by the {@link #POOL_SIZE_PROPERTY} system property.
+ */
+class JobStoreConnectionPool {
+
+    static final String POOL_SIZE_PROPERTY = "jobDbConnectionPoolSize";
+    private static final int DEFAULT_POOL_SIZE = 8;
+    private static final int BUSY_TIMEOUT_MILLIS = 10000;
+
+    private final String url;
+    private final int maxSize;
+    private final Deque<PooledConnection> idle = new ArrayDeque<PooledConnection>();
+    private int openCount;
+
+    JobStoreConnectionPool(String url) {
+        this(url, Integer.getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE));
+    }
+
+    JobStoreConnectionPool(String url, int maxSize) {
+        this.url = url;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * Takes a connection from the pool, waiting for one to be released if all are in use.
+     * It must be handed back with {@link #release} or {@link #invalidate}.
+     */
+    PooledConnection acquire() throws SQLException {
+        synchronized (this) {
+            while (idle.isEmpty() && openCount >= maxSize) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a job database connection", e);
+                }
+            }
+            if (!idle.isEmpty()) {
+                return idle.pop();
+            }
+            // reserve the slot, the connection is opened outside of the lock
+            openCount++;
+        }
+        try {
+            return new PooledConnection(open());
+        } catch (SQLException e) {
+            synchronized (this) {
+                openCount--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool. Does nothing for {@code null}.
+     */
+    synchronized void release(PooledConnection connection) {
+        if (connection != null) {
+            idle.push(connection);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes a connection which failed, instead of returning it to the pool.
+     */
+    void invalidate(PooledConnection connection) {
+        if (connection == null) {
+            return;
+        }
+        connection.close();
+        synchronized (this) {
+            openCount--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes all idle connections, e.g. before the database file is replaced.
+     */
+    synchronized void closeIdleConnections() {
+        while (!idle.isEmpty()) {
+            idle.pop().close();
+            openCount--;
+        }
+        notifyAll();
+    }
+
+    private Connection open() throws SQLException {
+        try {
+            Class.forName(SQLiteJDBC.DB_CLASS_FOR_NAME);
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver not found", e);
+        }
+        final Connection connection = DriverManager.getConnection(url);
+        final Statement statement = connection.createStatement();
+        try {
+            statement.execute("PRAGMA journal_mode=WAL");
+            // with WAL, NORMAL only risks the last transactions on power loss, never corruption
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS);
+        } finally {
+            statement.close();
+        }
+        return connection;
+    }
+
+    /**
+     * A pooled connection together with its prepared statement cache.
+     */
+    static class PooledConnection {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Returns the cached statement for the given SQL, preparing it on first use. The statement's
+         * parameters are cleared; it must not be closed by the caller.
+         */
+        PreparedStatement prepareStatement(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        private void close() {
+            for (PreparedStatement statement : statements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // closing anyway
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println(" in closing job database connection : " + e.getMessage());
+            }
+        }
+    }
+}
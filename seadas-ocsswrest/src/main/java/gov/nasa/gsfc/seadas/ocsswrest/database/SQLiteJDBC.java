@@ -1,9 +1,12 @@
 package gov.nasa.gsfc.seadas.ocsswrest.database;
 
+import gov.nasa.gsfc.seadas.ocsswrest.process.JobEventLog;
+
 import java.io.File;
 import java.io.InputStream;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Map;
 
 /**
  * Created by IntelliJ IDEA.
@@ -25,6 +28,9 @@ public class SQLiteJDBC {
     private static String username = "obpg";
     private static String password = "obpg";
 
+    // long-lived connections shared by all requests, opened on first use
+    private static final JobStoreConnectionPool connectionPool = new JobStoreConnectionPool(JOB_DB_URL);
+
     public static final String FILE_TABLE_NAME = "FILE_TABLE";
     public static final String MISSION_TABLE_NAME = "MISSION_TABLE";
     public static final String PROCESS_TABLE_NAME = "PROCESS_TABLE";
@@ -90,7 +96,9 @@ public class SQLiteJDBC {
         STD_OUT_NAME("stdout"),
         STD_ERR_NAME("stderr"),
         INPUTSTREAM("INPUT_STREAM"),
-        ERRORSTREAM("ERROR_STREAM");
+        ERRORSTREAM("ERROR_STREAM"),
+        PRIORITY("PRIORITY"),
+        SUBMIT_TIME("SUBMIT_TIME");
 
         String fieldName;
 
@@ -130,9 +138,13 @@ public class SQLiteJDBC {
 
     public static void createTables() {
 
+        connectionPool.closeIdleConnections();
         if (new File(JOB_DB_FILENAME).exists()) {
             new File(JOB_DB_FILENAME).delete();
         }
+        // write-ahead log and shared memory index of the pooled connections
+        new File(JOB_DB_FILENAME + "-wal").delete();
+        new File(JOB_DB_FILENAME + "-shm").delete();
         Connection connection = null;
         Statement stmt = null;
         PreparedStatement preparedStatement = null;
@@ -152,7 +164,9 @@ public class SQLiteJDBC {
                     " stdout CHAR(500), " +
                     " stderr CHAR(500), " +
                     " INPUT_STREAM BLOB , " +
-                    " OUTPUT_STREAM BLOB )";
+                    " OUTPUT_STREAM BLOB , " +
+                    " PRIORITY CHAR(10), " +
+                    " SUBMIT_TIME CHAR(20) )";
 
             //string for creating FILE_TABLE
             String file_table_sql = "CREATE TABLE IF NOT EXISTS FILE_TABLE ( " +
@@ -352,21 +366,14 @@ public class SQLiteJDBC {
     }
 
     public static String retrieveMissionDir(String missionName) {
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        Statement statement = null;
-        String commonQueryString = "SELECT * FROM MISSION_TABLE WHERE MISSION_ID = ?";
-
+        JobStoreConnectionPool.PooledConnection connection = null;
         String missionDir = null;
 
         try {
-            Class.forName(DB_CLASS_FOR_NAME);
-            connection = DriverManager.getConnection(JOB_DB_URL);
-            connection.setAutoCommit(false);
+            connection = connectionPool.acquire();
             //System.out.println("Opened database successfully");
 
-            statement = connection.createStatement();
-            ResultSet rs = statement.executeQuery("SELECT * FROM MISSION_TABLE;");
+            ResultSet rs = connection.prepareStatement("SELECT * FROM MISSION_TABLE;").executeQuery();
             while (rs.next()) {
                 String missionNames = rs.getString("MISSION_NAMES");
                 System.out.println("MISSION NAMES = " + missionNames);
@@ -377,282 +384,207 @@ public class SQLiteJDBC {
                 }
             }
             rs.close();
-            statement.close();
-            connection.close();
         } catch (Exception e) {
             System.err.println(e.getClass().getName() + ": " + e.getMessage());
             System.exit(0);
+        } finally {
+            connectionPool.release(connection);
         }
 
         return missionDir;
     }
 
     public static void insertItem(String tableName, String itemName, String itemValue) {
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-
         String commonInsertString = "INSERT INTO " + tableName + " (" + itemName + ") VALUES ( ? );";
-
-        try {
-            Class.forName(DB_CLASS_FOR_NAME);
-            connection = DriverManager.getConnection(JOB_DB_URL);
-            connection.setAutoCommit(false);
-            preparedStatement = connection.prepareStatement(commonInsertString);
-            preparedStatement.setString(1, itemValue);
-            // execute insert SQL stetement
-            int exitCode = preparedStatement.executeUpdate();
-
-            connection.commit();
-
-            //System.out.println(itemName + " is " + (exitCode == 1 ? "" : "not") + " inserted into " + tableName + " table!");
-            preparedStatement.close();
-            connection.close();
-
-        } catch (Exception e) {
-            System.err.println(" in inserting item : " + e.getClass().getName() + ": " + e.getMessage());
-            //System.exit(0);
-        }
+        executeUpdate(" in inserting item : ", commonInsertString, itemValue);
         //System.out.println("Inserted " + itemName + " successfully");
     }
 
     public static String updateItem(String tableName, String jobID, String itemName, String itemValue) {
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
         String commonUpdateString = "UPDATE " + tableName + " SET " + itemName + " = ?  WHERE JOB_ID = ?";
-        String retrievedItem = null;
-
-        try {
-            Class.forName(DB_CLASS_FOR_NAME);
-            connection = DriverManager.getConnection(JOB_DB_URL);
-            connection.setAutoCommit(false);
-            //System.out.println("Operating on table " + tableName);
-
-            preparedStatement = connection.prepareStatement(commonUpdateString);
-
-            preparedStatement.setString(1, itemValue);
-            preparedStatement.setString(2, jobID);
-            int exitCode = preparedStatement.executeUpdate();
-            connection.commit();
+        executeUpdate(" in update item : ", commonUpdateString, itemValue, jobID);
+        if (PROCESS_TABLE_NAME.equals(tableName) && ProcessTableFields.STATUS.getFieldName().equals(itemName)) {
+            // all status transitions pass here, push them to clients waiting for the job
+            JobEventLog.getLog(jobID).setStatus(itemValue);
+        }
+        return null;
+    }
 
-            //System.out.println(itemName + " is " + (exitCode == 1 ? "" : "not") + " updated on " + tableName + " table!");
-            //System.out.println(itemName + " = "  + itemValue);
-            preparedStatement.close();
-            connection.close();
+    /**
+     * Updates several fields of a job's row with a single statement.
+     *
+     * @param items field names and values, in the order they are set
+     */
+    public static void updateItems(String tableName, String jobID, Map<String, String> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        StringBuilder commonUpdateString = new StringBuilder("UPDATE " + tableName + " SET ");
+        String[] values = new String[items.size() + 1];
+        int i = 0;
+        for (Map.Entry<String, String> item : items.entrySet()) {
+            if (i > 0) {
+                commonUpdateString.append(", ");
+            }
+            commonUpdateString.append(item.getKey()).append(" = ?");
+            values[i++] = item.getValue();
+        }
+        commonUpdateString.append(" WHERE JOB_ID = ?");
+        values[i] = jobID;
+        executeUpdate(" in update items : ", commonUpdateString.toString(), values);
+    }
 
+    /**
+     * Inserts the rows of a new job into the file, process and lon/lat tables in one transaction.
+     */
+    public static void insertNewJob(String jobID) {
+        JobStoreConnectionPool.PooledConnection connection = null;
+        try {
+            connection = connectionPool.acquire();
+            Connection jdbcConnection = connection.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            try {
+                PreparedStatement preparedStatement = connection.prepareStatement("INSERT INTO " + FILE_TABLE_NAME + " (JOB_ID) VALUES ( ? );");
+                preparedStatement.setString(1, jobID);
+                preparedStatement.executeUpdate();
+
+                preparedStatement = connection.prepareStatement("INSERT INTO " + PROCESS_TABLE_NAME + " (JOB_ID, STATUS) VALUES ( ?, ? );");
+                preparedStatement.setString(1, jobID);
+                preparedStatement.setString(2, ProcessStatusFlag.NONEXIST.getValue());
+                preparedStatement.executeUpdate();
+
+                preparedStatement = connection.prepareStatement("INSERT INTO " + LONLAT_TABLE_NAME + " (JOB_ID) VALUES ( ? );");
+                preparedStatement.setString(1, jobID);
+                preparedStatement.executeUpdate();
+
+                jdbcConnection.commit();
+            } catch (SQLException e) {
+                jdbcConnection.rollback();
+                throw e;
+            } finally {
+                jdbcConnection.setAutoCommit(true);
+            }
         } catch (Exception e) {
-            System.err.println(" in update item : " + e.getClass().getName() + ": " + e.getMessage());
-            //System.exit(0);
+            System.err.println(" in inserting new job : " + e.getClass().getName() + ": " + e.getMessage());
+            // the connection may be stuck in the failed transaction
+            connectionPool.invalidate(connection);
+            connection = null;
+        } finally {
+            connectionPool.release(connection);
         }
-        //System.out.println("Operation done successfully");
-
-        return retrievedItem;
     }
 
     public static void insertItemWithDoubleKey(String tableName, String key1, String value1, String key2, String value2) {
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-
         String commonInsertString = "INSERT INTO " + tableName + " (" + key1 + "," + key2 + ") VALUES ( ?, ? );";
-
-        try {
-            Class.forName(DB_CLASS_FOR_NAME);
-            connection = DriverManager.getConnection(JOB_DB_URL);
-            connection.setAutoCommit(false);
-            preparedStatement = connection.prepareStatement(commonInsertString);
-            preparedStatement.setString(1, value1);
-            preparedStatement.setString(2, value2);
-            // execute insert SQL stetement
-            int exitCode = preparedStatement.executeUpdate();
-
-            connection.commit();
-
-            //System.out.println(key1 + " is " + (exitCode == 1 ? "" : "not") + " inserted into " + tableName + " table!");
-            preparedStatement.close();
-            connection.close();
-
-        } catch (Exception e) {
-            System.err.println(" in inserting item : " + e.getClass().getName() + ": " + e.getMessage());
-            //System.exit(0);
-        }
+        executeUpdate(" in inserting item : ", commonInsertString, value1, value2);
         //System.out.println("Inserted " + key1 + "and " + key2 + " successfully");
     }
 
 
     public static String updateItemWithDoubleKey(String tableName, String key1, String keyValue1, String key2, String keyValue2, String itemName, String itemValue) {
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
         String commonUpdateString = "UPDATE " + tableName + " SET " + itemName + " = ?  WHERE " + key1 + " = ? AND " + key2 + "=?";
-        String retrievedItem = null;
-
-        try {
-            Class.forName(DB_CLASS_FOR_NAME);
-            connection = DriverManager.getConnection(JOB_DB_URL);
-            connection.setAutoCommit(false);
-            //System.out.println("Operating on table " + tableName);
-
-            preparedStatement = connection.prepareStatement(commonUpdateString);
-
-            preparedStatement.setString(1, itemValue);
-            preparedStatement.setString(2, keyValue1);
-            preparedStatement.setString(3, keyValue2);
-            int exitCode = preparedStatement.executeUpdate();
-            connection.commit();
-
-            //System.out.println(itemName + " is " + (exitCode == 1 ? "" : "not") + " updated on " + tableName + " table!");
-            //System.out.println(itemName + " = "  + itemValue);
-            preparedStatement.close();
-            connection.close();
-
-        } catch (Exception e) {
-            System.err.println(" in update item : " + e.getClass().getName() + ": " + e.getMessage());
-            //System.exit(0);
-        }
-        //System.out.println("Operation done successfully");
-
-        return retrievedItem;
+        executeUpdate(" in update item : ", commonUpdateString, itemValue, keyValue1, keyValue2);
+        return null;
     }
 
     public static ArrayList getInputFilesList(String jobId) {
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
+        JobStoreConnectionPool.PooledConnection connection = null;
         String commonQueryString = "SELECT * FROM " + INPUT_FILES_LIST_TABLE_NAME + " WHERE JOB_ID = ?";
 
         ArrayList fileList = new ArrayList();
 
         try {
-            Class.forName(DB_CLASS_FOR_NAME);
-            connection = DriverManager.getConnection(JOB_DB_URL);
-            connection.setAutoCommit(false);
-            //System.out.println("Operating on table " + INPUT_FILES_LIST_TABLE_NAME + "  jobID = " + jobId + "  searching for " + "fileName");
-
-            preparedStatement = connection.prepareStatement(commonQueryString);
-
-            //preparedStatement.setString(1, itemName);
+            connection = connectionPool.acquire();
+            PreparedStatement preparedStatement = connection.prepareStatement(commonQueryString);
             preparedStatement.setString(1, jobId);
-            //System.out.println("sql string: " + preparedStatement);
 
             ResultSet rs = preparedStatement.executeQuery();
-
-
             while (rs.next()) {
                 fileList.add(rs.getString("FILENAME"));
             }
             rs.close();
-            preparedStatement.close();
-            connection.close();
         } catch (Exception e) {
             System.err.println(" in retrieve item : " + e.getClass().getName() + ": " + e.getMessage());
-            //System.exit(0);
+        } finally {
+            connectionPool.release(connection);
         }
-        //System.out.println("Operation done successfully");
 
         return fileList;
     }
 
     public static void updateInputFilesList(String jobID, String newClientFileName) {
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-
         String commonUpdateString = "INSERT INTO " + INPUT_FILES_LIST_TABLE_NAME + " ( JOB_ID, FILENAME )  VALUES ( ? , ? );";
-
-        //System.out.println(commonUpdateString);
-
-        try {
-            Class.forName(DB_CLASS_FOR_NAME);
-            connection = DriverManager.getConnection(JOB_DB_URL);
-            connection.setAutoCommit(false);
-            //System.out.println("Operating on table " + INPUT_FILES_LIST_TABLE_NAME);
-
-            preparedStatement = connection.prepareStatement(commonUpdateString);
-
-            preparedStatement.setString(1, jobID);
-            preparedStatement.setString(2, newClientFileName);
-
-            int exitCode = preparedStatement.executeUpdate();
-            connection.commit();
-
-            //System.out.println(newClientFileName + " is " + (exitCode == 1 ? "" : "not") + " added in " + INPUT_FILES_LIST_TABLE_NAME + " table!");
-
-            preparedStatement.close();
-            connection.close();
-
-        } catch (Exception e) {
-            System.err.println(" in update item : " + e.getClass().getName() + ": " + e.getMessage());
-            //System.exit(0);
-        }
+        executeUpdate(" in update item : ", commonUpdateString, jobID, newClientFileName);
     }
 
     public static String retrieveItem(String tableName, String searchKey, String itemName) {
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
+        JobStoreConnectionPool.PooledConnection connection = null;
 
         String commonQueryString = "SELECT * FROM " + tableName + " WHERE JOB_ID = ?";
 
         String retrievedItem = null;
 
         try {
-            Class.forName(DB_CLASS_FOR_NAME);
-            connection = DriverManager.getConnection(JOB_DB_URL);
-            connection.setAutoCommit(false);
+            connection = connectionPool.acquire();
             //System.out.println("Operating on table " + tableName + "  jobID = " + searchKey + " searching for " + itemName);
 
-            preparedStatement = connection.prepareStatement(commonQueryString);
+            PreparedStatement preparedStatement = connection.prepareStatement(commonQueryString);
             preparedStatement.setString(1, searchKey);
             ResultSet rs = preparedStatement.executeQuery();
-            retrievedItem = rs.getString(itemName);
+            try {
+                retrievedItem = rs.getString(itemName);
+            } finally {
+                rs.close();
+            }
             //System.out.println("Retrieved item name : " + retrievedItem);
-            rs.close();
-            preparedStatement.close();
-            connection.close();
         } catch (Exception e) {
             System.err.println(" in retrieve item : " + e.getClass().getName() + ": " + e.getMessage());
-            //System.exit(0);
+        } finally {
+            connectionPool.release(connection);
         }
-        //System.out.println("Operation done successfully");
 
         return retrievedItem;
     }
 
     public static InputStream retrieveInputStreamItem(String tableName, String searchKey, String itemName) {
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
+        JobStoreConnectionPool.PooledConnection connection = null;
         String commonQueryString = "SELECT * FROM " + tableName + " WHERE JOB_ID = ?";
         InputStream retrievedItem = null;
 
         try {
-            Class.forName(DB_CLASS_FOR_NAME);
-            connection = DriverManager.getConnection(JOB_DB_URL);
-            connection.setAutoCommit(false);
+            connection = connectionPool.acquire();
             //System.out.println("Operating on table " + tableName + "  jobID = " + searchKey + " searching for " + itemName);
 
-            preparedStatement = connection.prepareStatement(commonQueryString);
+            PreparedStatement preparedStatement = connection.prepareStatement(commonQueryString);
             preparedStatement.setString(1, searchKey);
             ResultSet rs = preparedStatement.executeQuery();
+            try {
+                int size= 0;
+                if (rs != null)
+                {
+                    rs.beforeFirst();
+                    rs.last();
+                    size = rs.getRow();
+                }
 
-            int size= 0;
-            if (rs != null)
-            {
-                rs.beforeFirst();
-                rs.last();
-                size = rs.getRow();
-            }
-
-            if (rs.next()) {
-                retrievedItem = rs.getBinaryStream(size);
-                //System.out.println("Total retrieved item number : " + rs.getFetchSize());
-                //rs.deleteRow();
-            } else {
-                retrievedItem = null;
+                if (rs.next()) {
+                    retrievedItem = rs.getBinaryStream(size);
+                    //System.out.println("Total retrieved item number : " + rs.getFetchSize());
+                    //rs.deleteRow();
+                } else {
+                    retrievedItem = null;
+                }
+            } finally {
+                rs.close();
             }
 
             //retrievedItem = rs.getBinaryStream(itemName);
             //System.out.println("Retrieved item name : " + retrievedItem.toString());
-            rs.close();
-            preparedStatement.close();
-            connection.close();
         } catch (Exception e) {
             System.err.println(" in retrieve input stream item : " );
             e.printStackTrace();
+        } finally {
+            connectionPool.release(connection);
         }
         //System.out.println("Operation done successfully");
 
@@ -662,4 +594,24 @@ public class SQLiteJDBC {
      public static String getProgramName(String jobId) {
         return retrieveItem(FILE_TABLE_NAME, jobId, FileTableFields.PROGRAM_NAME.getFieldName());
     }
+
+    /**
+     * Executes an insert or update statement with string parameters on a pooled connection.
+     * Failures are reported on stderr with the given prefix, like all other job database errors.
+     */
+    private static void executeUpdate(String errorPrefix, String sql, String... values) {
+        JobStoreConnectionPool.PooledConnection connection = null;
+        try {
+            connection = connectionPool.acquire();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            for (int i = 0; i < values.length; i++) {
+                preparedStatement.setString(i + 1, values[i]);
+            }
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println(errorPrefix + e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            connectionPool.release(connection);
+        }
+    }
 }
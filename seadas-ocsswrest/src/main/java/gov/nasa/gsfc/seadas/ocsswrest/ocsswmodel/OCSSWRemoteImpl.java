@@ -1,6 +1,7 @@
 package gov.nasa.gsfc.seadas.ocsswrest.ocsswmodel;
 
 import gov.nasa.gsfc.seadas.ocsswrest.database.SQLiteJDBC;
+import gov.nasa.gsfc.seadas.ocsswrest.process.JobScheduler;
 import gov.nasa.gsfc.seadas.ocsswrest.process.ORSProcessObserver;
 import gov.nasa.gsfc.seadas.ocsswrest.utilities.MissionInfo;
 import gov.nasa.gsfc.seadas.ocsswrest.utilities.ServerSideFileUtilities;
@@ -8,7 +9,6 @@ import gov.nasa.gsfc.seadas.ocsswrest.utilities.ServerSideFileUtilities;
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
-import javax.swing.*;
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -376,10 +376,10 @@ public class OCSSWRemoteImpl {
         }
         debug("\n" + "command array content ended ");
 
-        SwingWorker swingWorker = new SwingWorker() {
+        JobScheduler.getInstance().submit(jobId, getClientId(jobId), JobScheduler.PRIORITY_NORMAL, new Runnable() {
 
             @Override
-            protected Object doInBackground() throws Exception {
+            public void run() {
                 ProcessBuilder processBuilder = new ProcessBuilder(commandArray);
                 Process process = null;
                 try {
@@ -389,7 +389,9 @@ public class OCSSWRemoteImpl {
                 }
 
                 if (process == null) {
-                    throw new IOException(programName + " failed to create process.");
+                    debug(programName + " failed to create process.");
+                    SQLiteJDBC.updateItem(SQLiteJDBC.PROCESS_TABLE_NAME, jobId, SQLiteJDBC.ProcessTableFields.STATUS.getFieldName(), SQLiteJDBC.ProcessStatusFlag.FAILED.getValue());
+                    return;
                 }
                 if (process.isAlive()) {
                     debug("process is alive: ");
@@ -402,10 +404,8 @@ public class OCSSWRemoteImpl {
                         SQLiteJDBC.updateItem(SQLiteJDBC.PROCESS_TABLE_NAME, jobId, SQLiteJDBC.ProcessTableFields.STATUS.getFieldName(), SQLiteJDBC.ProcessStatusFlag.FAILED.getValue());
                     }
                 }
-                return null;
             }
-        };
-        swingWorker.execute();
+        });
     }
 
     public void executeProcessSimple(String[] commandArray, String jobId, String programName) {
@@ -464,10 +464,10 @@ public class OCSSWRemoteImpl {
     public void execute(String[] commandArrayParam, String workingDir, String jobIdParam) {
         String jobID = jobIdParam;
         String[] commandArray = commandArrayParam;
-        SwingWorker swingWorker = new SwingWorker() {
+        JobScheduler.getInstance().submit(jobID, getClientId(jobID), JobScheduler.PRIORITY_BATCH, new Runnable() {
 
             @Override
-            protected Object doInBackground() {
+            public void run() {
 
                 StringBuilder sb = new StringBuilder();
                 for (String item : commandArray) {
@@ -488,12 +488,18 @@ public class OCSSWRemoteImpl {
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
+                if (process == null) {
+                    SQLiteJDBC.updateItem(SQLiteJDBC.PROCESS_TABLE_NAME, jobID, SQLiteJDBC.ProcessTableFields.STATUS.getFieldName(), SQLiteJDBC.ProcessStatusFlag.FAILED.getValue());
+                    return;
+                }
                 final ORSProcessObserver processObserver = new ORSProcessObserver(process, programName, jobIdParam);
                 processObserver.startAndWait();
-                return process;
             }
-        };
-        swingWorker.execute();
+        });
+    }
+
+    private String getClientId(String jobId) {
+        return SQLiteJDBC.retrieveItem(SQLiteJDBC.FILE_TABLE_NAME, jobId, SQLiteJDBC.FileTableFields.CLIENT_ID_NAME.getFieldName());
     }
 
     public HashMap<String, String> computePixelsFromLonLat(String jobId, String programName, JsonObject jsonObject) {
@@ -510,10 +516,17 @@ public class OCSSWRemoteImpl {
                 if (line.indexOf("=") != -1) {
                     tmp = line.split("=");
                     pixels.put(tmp[0], tmp[1]);
-                    SQLiteJDBC.updateItem(SQLiteJDBC.LONLAT_TABLE_NAME, jobId, tmp[0], tmp[1]);
                     debug("pixels are not null: " + tmp[0] + "=" + tmp[1]);
                 }
             }
+            // only the table's own columns, other output of the program must not end up in the statement
+            HashMap<String, String> lonLatItems = new HashMap<String, String>();
+            for (SQLiteJDBC.LonLatTableFields field : SQLiteJDBC.LonLatTableFields.values()) {
+                if (pixels.containsKey(field.getValue())) {
+                    lonLatItems.put(field.getValue(), pixels.get(field.getValue()));
+                }
+            }
+            SQLiteJDBC.updateItems(SQLiteJDBC.LONLAT_TABLE_NAME, jobId, lonLatItems);
 
         } catch (IOException ioe) {
             ioe.printStackTrace();
@@ -662,15 +675,17 @@ public class OCSSWRemoteImpl {
                     String fileType = splitLine[2].trim();
                     debug("mission name : " + missionName);
                     debug("file type : " + fileType);
+                    HashMap<String, String> fileInfo = new HashMap<String, String>();
                     if (fileType.length() > 0) {
-                        SQLiteJDBC.updateItem(SQLiteJDBC.FILE_TABLE_NAME, jobId, SQLiteJDBC.FileTableFields.I_FILE_TYPE.getFieldName(), fileType);
+                        fileInfo.put(SQLiteJDBC.FileTableFields.I_FILE_TYPE.getFieldName(), fileType);
                         this.fileType = fileType;
                     }
 
                     if (missionName.length() > 0) {
-                        SQLiteJDBC.updateItem(SQLiteJDBC.FILE_TABLE_NAME, jobId, SQLiteJDBC.FileTableFields.MISSION_NAME.getFieldName(), missionName);
+                        fileInfo.put(SQLiteJDBC.FileTableFields.MISSION_NAME.getFieldName(), missionName);
                         this.missionName = missionName;
                     }
+                    SQLiteJDBC.updateItems(SQLiteJDBC.FILE_TABLE_NAME, jobId, fileInfo);
                 }
             }
         } catch (IOException ioe) {
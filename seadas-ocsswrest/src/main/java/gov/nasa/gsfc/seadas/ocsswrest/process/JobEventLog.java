@@ -0,0 +1,248 @@
+package gov.nasa.gsfc.seadas.ocsswrest.process;
+
+import gov.nasa.gsfc.seadas.ocsswrest.database.SQLiteJDBC;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The status transitions and output lines of a job's current program run, kept in memory so clients can
+ * be notified of them as they happen instead of polling.
+ * <p>
+ * Every event has a sequence number; clients read the events after the last one they have seen. A new run
+ * starts when the status changes to {@code NONEXIST} or {@code STARTED}, which drops the events of the
+ * previous run. At most {@link #MAX_EVENTS} events are kept per job, a client which falls further behind
+ * skips the oldest lines. Logs of the least recently used jobs are discarded when more than
+ * {@link #MAX_JOBS} jobs are tracked, except for those of jobs whose program is running: the observer of a
+ * program keeps publishing to the log it got at the start.
+ */
+public class JobEventLog {
+
+    public static final String STDOUT = "stdout";
+    public static final String STDERR = "stderr";
+    public static final String STATUS = "status";
+
+    static final int MAX_EVENTS = 10000;
+    static final int MAX_JOBS = 200;
+
+    private static final Map<String, JobEventLog> logs = new LinkedHashMap<String, JobEventLog>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JobEventLog> eldest) {
+            return size() > MAX_JOBS;
+        }
+    };
+
+    // the logs of jobs with a running program, which are not evicted, guarded by logs
+    private static final Map<String, JobEventLog> runningLogs = new HashMap<String, JobEventLog>();
+
+    private final List<Event> events = new ArrayList<Event>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private long firstSequence;
+    private String status;
+    // the number of programs of the job publishing to this log, guarded by logs
+    private int runs;
+
+    /**
+     * Returns the log of a job, creating it with the job's current status if necessary.
+     */
+    public static JobEventLog getLog(String jobId) {
+        synchronized (logs) {
+            JobEventLog log = findLog(jobId);
+            if (log != null) {
+                return log;
+            }
+        }
+        String status = SQLiteJDBC.retrieveItem(SQLiteJDBC.PROCESS_TABLE_NAME, jobId, SQLiteJDBC.ProcessTableFields.STATUS.getFieldName());
+        synchronized (logs) {
+            JobEventLog log = findLog(jobId);
+            if (log == null) {
+                log = new JobEventLog(status == null ? SQLiteJDBC.ProcessStatusFlag.NONEXIST.getValue() : status);
+                logs.put(jobId, log);
+            }
+            return log;
+        }
+    }
+
+    /**
+     * Returns the log of a job whose program is starting, which is kept until {@link #runFinished} is called
+     * for the job.
+     */
+    public static JobEventLog runStarted(String jobId) {
+        JobEventLog log = getLog(jobId);
+        synchronized (logs) {
+            JobEventLog running = runningLogs.get(jobId);
+            if (running != null) {
+                log = running;
+            } else {
+                runningLogs.put(jobId, log);
+            }
+            log.runs++;
+            return log;
+        }
+    }
+
+    /**
+     * Allows the log of a job to be discarded again once none of its programs is running.
+     */
+    public static void runFinished(String jobId) {
+        synchronized (logs) {
+            JobEventLog log = runningLogs.get(jobId);
+            if (log != null && --log.runs == 0) {
+                runningLogs.remove(jobId);
+                if (!logs.containsKey(jobId)) {
+                    // evicted while running
+                    logs.put(jobId, log);
+                }
+            }
+        }
+    }
+
+    private static JobEventLog findLog(String jobId) {
+        JobEventLog log = runningLogs.get(jobId);
+        if (log != null) {
+            // keeps the job recently used
+            logs.get(jobId);
+            return log;
+        }
+        return logs.get(jobId);
+    }
+
+    JobEventLog(String status) {
+        this.status = status;
+    }
+
+    public void appendLine(String type, String line) {
+        synchronized (this) {
+            append(type, line);
+        }
+        fireEventsAdded();
+    }
+
+    /**
+     * Records a status transition. Setting the current status again does nothing.
+     */
+    public void setStatus(String newStatus) {
+        synchronized (this) {
+            if (newStatus == null || newStatus.equals(status)) {
+                return;
+            }
+            status = newStatus;
+            if (!isFinished(newStatus)) {
+                // a new run of the job
+                firstSequence += events.size();
+                events.clear();
+            }
+            append(STATUS, newStatus);
+        }
+        fireEventsAdded();
+    }
+
+    public synchronized String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the sequence number the next event will get
+     */
+    public synchronized long getNextSequence() {
+        return firstSequence + events.size();
+    }
+
+    /**
+     * @param since the sequence number of the first event to return, events older than the current run
+     *              are never returned
+     * @return the events of the current run from {@code since} on
+     */
+    public synchronized List<Event> getEvents(long since) {
+        int start = (int) Math.max(0, since - firstSequence);
+        if (start >= events.size()) {
+            return new ArrayList<Event>();
+        }
+        return new ArrayList<Event>(events.subList(start, events.size()));
+    }
+
+    /**
+     * Registers a listener and calls it once right away, so it can not miss an event added meanwhile.
+     * The listener stays registered until it returns {@code true} or is removed.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        if (listener.eventsAdded(this)) {
+            listeners.remove(listener);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return whether the status is the exit value of an ended program
+     */
+    public static boolean isFinished(String status) {
+        return !SQLiteJDBC.ProcessStatusFlag.NONEXIST.getValue().equals(status)
+                && !SQLiteJDBC.ProcessStatusFlag.STARTED.getValue().equals(status);
+    }
+
+    private void append(String type, String text) {
+        if (events.size() >= MAX_EVENTS) {
+            // drop the oldest tenth at once instead of shifting the list for every line
+            int dropped = MAX_EVENTS / 10;
+            events.subList(0, dropped).clear();
+            firstSequence += dropped;
+        }
+        events.add(new Event(firstSequence + events.size(), type, text));
+    }
+
+    private void fireEventsAdded() {
+        for (Listener listener : listeners) {
+            if (listener.eventsAdded(this)) {
+                listeners.remove(listener);
+            }
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called without holding the log's lock whenever events were added.
+         *
+         * @return {@code true} if the listener is done and should be removed
+         */
+        boolean eventsAdded(JobEventLog log);
+    }
+
+    public static class Event {
+
+        private final long sequence;
+        private final String type;
+        private final String text;
+
+        Event(long sequence, String type, String text) {
+            this.sequence = sequence;
+            this.type = type;
+            this.text = text;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return {@link #STDOUT}, {@link #STDERR} or {@link #STATUS}
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return the output line, or the new status
+         */
+        public String getText() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package gov.nasa.gsfc.seadas.ocsswrest.process;
+
+import gov.nasa.gsfc.seadas.ocsswrest.database.SQLiteJDBC;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs OCSSW programs on a bounded pool of worker threads, so a burst of submissions queues up instead of
+ * oversubscribing the host.
+ * <p>
+ * The number of programs running at once is given by the {@link #MAX_CONCURRENT_JOBS_PROPERTY} system property.
+ * By default it is the number of processors, reduced so that each program gets {@link #JOB_MEMORY_MB_PROPERTY}
+ * megabytes (2048 by default) of physical memory.
+ * <p>
+ * Queued jobs are started in this order:
+ * <ol>
+ * <li>jobs with the higher priority;</li>
+ * <li>jobs of the client with the fewest running jobs, then of the client served least recently, so one
+ * client can not take all workers;</li>
+ * <li>jobs submitted earlier.</li>
+ * </ol>
+ * The submit time and priority of each job are recorded in the process table.
+ */
+public class JobScheduler {
+
+    public static final String MAX_CONCURRENT_JOBS_PROPERTY = "maxConcurrentJobs";
+    public static final String JOB_MEMORY_MB_PROPERTY = "jobMemoryMB";
+
+    public static final int PRIORITY_NORMAL = 0;
+    // multilevel processor runs take hours, single programs should not wait behind them
+    public static final int PRIORITY_BATCH = -10;
+
+    private static final int DEFAULT_JOB_MEMORY_MB = 2048;
+    private static final String UNKNOWN_CLIENT = "unknown";
+
+    private static JobScheduler instance;
+
+    private final int maxConcurrentJobs;
+    private final boolean recordInJobTable;
+    private final ExecutorService workers;
+    private final List<QueuedJob> queue = new ArrayList<QueuedJob>();
+    private final Map<String, Integer> runningJobsPerClient = new HashMap<String, Integer>();
+    private final Map<String, Long> lastStartPerClient = new HashMap<String, Long>();
+    private int runningJobs;
+    private long submitCount;
+    private long startCount;
+
+    public static synchronized JobScheduler getInstance() {
+        if (instance == null) {
+            instance = new JobScheduler(Integer.getInteger(MAX_CONCURRENT_JOBS_PROPERTY, getDefaultMaxConcurrentJobs()), true);
+        }
+        return instance;
+    }
+
+    JobScheduler(int maxConcurrentJobs, boolean recordInJobTable) {
+        this.maxConcurrentJobs = Math.max(1, maxConcurrentJobs);
+        this.recordInJobTable = recordInJobTable;
+        final AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(this.maxConcurrentJobs, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ocssw-job-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        System.out.println("job scheduler runs up to " + this.maxConcurrentJobs + " programs at once");
+    }
+
+    /**
+     * Queues a program run. The job's process status stays {@code NONEXIST} until the program starts.
+     *
+     * @param jobId    the job
+     * @param clientId the client which submitted the job, {@code null} if unknown
+     * @param priority the job's priority, higher priorities start first
+     * @param task     runs the program and waits for it to end
+     * @return a future which is done when the task has run
+     */
+    public Future<?> submit(String jobId, String clientId, int priority, Runnable task) {
+        final QueuedJob job = new QueuedJob(jobId, clientId == null ? UNKNOWN_CLIENT : clientId, priority, task);
+        synchronized (this) {
+            job.sequence = submitCount++;
+            queue.add(job);
+        }
+        if (recordInJobTable) {
+            Map<String, String> items = new LinkedHashMap<String, String>();
+            items.put(SQLiteJDBC.ProcessTableFields.PRIORITY.getFieldName(), Integer.toString(priority));
+            items.put(SQLiteJDBC.ProcessTableFields.SUBMIT_TIME.getFieldName(), Long.toString(System.currentTimeMillis()));
+            SQLiteJDBC.updateItems(SQLiteJDBC.PROCESS_TABLE_NAME, jobId, items);
+        }
+        dispatch();
+        return job.future;
+    }
+
+    /**
+     * @return the position of the job in the queue, 1 if it is the next to start, or 0 if it is not queued
+     */
+    public synchronized int getQueuePosition(String jobId) {
+        // replay the start order, assuming no running job ends in the meantime
+        final List<QueuedJob> pending = new ArrayList<QueuedJob>(queue);
+        final Map<String, Integer> running = new HashMap<String, Integer>(runningJobsPerClient);
+        final Map<String, Long> lastStart = new HashMap<String, Long>(lastStartPerClient);
+        long start = startCount;
+        int position = 0;
+        while (!pending.isEmpty()) {
+            QueuedJob next = pending.remove(selectNext(pending, running, lastStart));
+            position++;
+            if (next.jobId.equals(jobId)) {
+                return position;
+            }
+            running.put(next.clientId, getCount(running, next.clientId) + 1);
+            lastStart.put(next.clientId, ++start);
+        }
+        return 0;
+    }
+
+    public synchronized int getQueuedJobCount() {
+        return queue.size();
+    }
+
+    public synchronized int getRunningJobCount() {
+        return runningJobs;
+    }
+
+    public int getMaxConcurrentJobs() {
+        return maxConcurrentJobs;
+    }
+
+    private void dispatch() {
+        synchronized (this) {
+            while (runningJobs < maxConcurrentJobs && !queue.isEmpty()) {
+                final QueuedJob job = queue.remove(selectNext(queue, runningJobsPerClient, lastStartPerClient));
+                runningJobs++;
+                runningJobsPerClient.put(job.clientId, getCount(runningJobsPerClient, job.clientId) + 1);
+                lastStartPerClient.put(job.clientId, ++startCount);
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            job.future.run();
+                        } finally {
+                            finished(job);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private void finished(QueuedJob job) {
+        synchronized (this) {
+            runningJobs--;
+            int running = getCount(runningJobsPerClient, job.clientId) - 1;
+            if (running > 0) {
+                runningJobsPerClient.put(job.clientId, running);
+            } else {
+                runningJobsPerClient.remove(job.clientId);
+            }
+        }
+        dispatch();
+    }
+
+    private static int selectNext(List<QueuedJob> jobs, Map<String, Integer> runningPerClient,
+                                  Map<String, Long> lastStartPerClient) {
+        int selected = 0;
+        for (int i = 1; i < jobs.size(); i++) {
+            if (startsBefore(jobs.get(i), jobs.get(selected), runningPerClient, lastStartPerClient)) {
+                selected = i;
+            }
+        }
+        return selected;
+    }
+
+    private static boolean startsBefore(QueuedJob job, QueuedJob other, Map<String, Integer> runningPerClient,
+                                        Map<String, Long> lastStartPerClient) {
+        if (job.priority != other.priority) {
+            return job.priority > other.priority;
+        }
+        if (!job.clientId.equals(other.clientId)) {
+            int running = getCount(runningPerClient, job.clientId);
+            int otherRunning = getCount(runningPerClient, other.clientId);
+            if (running != otherRunning) {
+                return running < otherRunning;
+            }
+            long lastStart = getLastStart(lastStartPerClient, job.clientId);
+            long otherLastStart = getLastStart(lastStartPerClient, other.clientId);
+            if (lastStart != otherLastStart) {
+                return lastStart < otherLastStart;
+            }
+        }
+        return job.sequence < other.sequence;
+    }
+
+    private static int getCount(Map<String, Integer> counts, String clientId) {
+        Integer count = counts.get(clientId);
+        return count == null ? 0 : count;
+    }
+
+    private static long getLastStart(Map<String, Long> lastStarts, String clientId) {
+        Long lastStart = lastStarts.get(clientId);
+        return lastStart == null ? 0 : lastStart;
+    }
+
+    private static int getDefaultMaxConcurrentJobs() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            long physicalMemory = ((com.sun.management.OperatingSystemMXBean) osBean).getTotalPhysicalMemorySize();
+            long jobMemory = Integer.getInteger(JOB_MEMORY_MB_PROPERTY, DEFAULT_JOB_MEMORY_MB) * 1024L * 1024L;
+            if (jobMemory > 0) {
+                return (int) Math.max(1, Math.min(processors, physicalMemory / jobMemory));
+            }
+        }
+        return processors;
+    }
+
+    private static class QueuedJob {
+
+        private final String jobId;
+        private final String clientId;
+        private final int priority;
+        private final FutureTask<Object> future;
+        private long sequence;
+
+        private QueuedJob(String jobId, String clientId, int priority, Runnable task) {
+            this.jobId = jobId;
+            this.clientId = clientId;
+            this.priority = priority;
+            this.future = new FutureTask<Object>(task, null);
+        }
+    }
+}
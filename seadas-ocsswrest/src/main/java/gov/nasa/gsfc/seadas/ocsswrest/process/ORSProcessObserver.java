@@ -1,11 +1,8 @@
 package gov.nasa.gsfc.seadas.ocsswrest.process;
 
 import gov.nasa.gsfc.seadas.ocsswrest.database.SQLiteJDBC;
-import gov.nasa.gsfc.seadas.ocsswrest.ocsswmodel.OCSSWConfig;
 
 import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
 
 /**
  * Created by aabduraz on 3/22/16.
@@ -20,9 +17,7 @@ public class ORSProcessObserver {
     private final Process process;
     private final String processName;
     private final String jobId;
-
-    private int processInputStreamPortNumber;
-    private int processErrorStreamPortNumber;
+    private final JobEventLog eventLog;
 
 
     /**
@@ -35,35 +30,41 @@ public class ORSProcessObserver {
         this.process = process;
         this.processName = processName;
         this.jobId = jobId;
-        processInputStreamPortNumber = new Integer(System.getProperty(OCSSWConfig.OCSSW_PROCESS_INPUTSTREAM_SOCKET_PORT_NUMBER_PROPERTY)).intValue();
-        processErrorStreamPortNumber = new Integer(System.getProperty(OCSSWConfig.OCSSW_PROCESS_ERRORSTREAM_SOCKET_PORT_NUMBER_PROPERTY)).intValue();
+        // kept until startAndWait returns, so output lines are not published to an evicted log
+        eventLog = JobEventLog.runStarted(jobId);
         SQLiteJDBC.updateItem(SQLiteJDBC.PROCESS_TABLE_NAME, jobId, SQLiteJDBC.ProcessTableFields.STATUS.getFieldName(), SQLiteJDBC.ProcessStatusFlag.STARTED.getValue());
     }
 
     /**
      * Starts observing the given process. The method blocks until both {@code stdout} and {@code stderr}
-     * streams are no longer available. If the progress monitor is cancelled, the process will be destroyed.
+     * streams are no longer available and the process has ended; its exit value is then stored as the job's status.
+     * Output lines are published to the job's {@link JobEventLog}, from where clients receive them.
      */
     public final void startAndWait() {
-        final Thread stdoutReaderThread = new LineReaderThread(STDOUT);
-        final Thread stderrReaderThread = new LineReaderThread(STDERR);
-        stdoutReaderThread.start();
-        stderrReaderThread.start();
-        awaitTermintation(stdoutReaderThread, stderrReaderThread);
+        try {
+            final Thread stdoutReaderThread = new LineReaderThread(STDOUT);
+            final Thread stderrReaderThread = new LineReaderThread(STDERR);
+            stdoutReaderThread.start();
+            stderrReaderThread.start();
+            awaitTermintation(stdoutReaderThread, stderrReaderThread);
+        } finally {
+            JobEventLog.runFinished(jobId);
+        }
     }
 
     private void awaitTermintation(Thread stdoutReaderThread, Thread stderrReaderThread) {
-        while (stdoutReaderThread.isAlive() && stderrReaderThread.isAlive()) {
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                // todo - check what is best done now:
-                //      * 1. just leave, and let the process be unattended (current impl.)
-                //        2. destroy the process
-                //        3. throw a checked ProgressObserverException
-                e.printStackTrace();
-                return;
-            }
+        try {
+            stdoutReaderThread.join();
+            stderrReaderThread.join();
+            int processStatus = process.waitFor();
+            System.out.println("final process status: " + processStatus);
+            SQLiteJDBC.updateItem(SQLiteJDBC.PROCESS_TABLE_NAME, jobId, SQLiteJDBC.ProcessTableFields.STATUS.getFieldName(), Integer.toString(processStatus));
+        } catch (InterruptedException e) {
+            // todo - check what is best done now:
+            //      * 1. just leave, and let the process be unattended (current impl.)
+            //        2. destroy the process
+            //        3. throw a checked ProgressObserverException
+            e.printStackTrace();
         }
     }
 
@@ -84,36 +85,16 @@ public class ORSProcessObserver {
             }
         }
 
-        private void read() {
-
-            InputStream inputStream = type.equals("stdout") ? process.getInputStream() : process.getErrorStream();
-            writeProcessStreamToSocket(inputStream, type.equals("stdout") ? processInputStreamPortNumber : processErrorStreamPortNumber);
-        }
-
-        private void writeProcessStreamToSocket(InputStream inputStream, int portNumber) {
-            System.out.println("server process observer: " + portNumber);
-            try (
-                    ServerSocket serverSocket =
-                            new ServerSocket(portNumber);
-                    Socket clientSocket = serverSocket.accept();
-                    PrintWriter out =
-                            new PrintWriter(clientSocket.getOutputStream(), true);
-                    final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))
-            ) {
-                String inputLine;
-                while ((inputLine = reader.readLine()) != null) {
-                    out.println(inputLine);
+        private void read() throws IOException {
+            InputStream inputStream = type.equals(STDOUT) ? process.getInputStream() : process.getErrorStream();
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    eventLog.appendLine(type.equals(STDOUT) ? JobEventLog.STDOUT : JobEventLog.STDERR, line);
                 }
-                int processStatus = process.waitFor();
-                System.out.println("final process status: " + processStatus);
-                SQLiteJDBC.updateItem(SQLiteJDBC.PROCESS_TABLE_NAME, jobId, SQLiteJDBC.ProcessTableFields.STATUS.getFieldName(), new Integer(process.exitValue()).toString());
-                serverSocket.setReuseAddress(true);
-            } catch (IOException e) {
-                System.out.println("Exception caught when trying to listen on port "
-                        + portNumber + " or listening for a connection");
-                System.out.println(e.getMessage());
-            } catch (Exception e) {
-                e.printStackTrace();
+            } finally {
+                reader.close();
             }
         }
     }
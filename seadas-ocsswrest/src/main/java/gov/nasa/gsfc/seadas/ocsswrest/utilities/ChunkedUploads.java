@@ -0,0 +1,325 @@
+package gov.nasa.gsfc.seadas.ocsswrest.utilities;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receives files in fixed size chunks, which clients may send in any order and over parallel connections.
+ * <p>
+ * Chunks are written in place into {@code <file>.part}. The indexes of the received chunks are appended to
+ * {@code <file>.part.chunks}, so an upload interrupted by a dropped connection, or by a server restart, is
+ * resumed by sending only the missing chunks. Once all chunks are there, the SHA-256 checksum of the assembled
+ * file is verified against the client's before the file is moved to its final name.
+ * <p>
+ * Uploads which have not received a chunk for {@link #EXPIRY_HOURS_PROPERTY} hours (24 by default) are
+ * abandoned: they are discarded together with their files.
+ */
+public class ChunkedUploads {
+
+    static final String PART_SUFFIX = ".part";
+    static final String CHUNKS_SUFFIX = ".part.chunks";
+    public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    public static final String EXPIRY_HOURS_PROPERTY = "uploadExpiryHours";
+    private static final int DEFAULT_EXPIRY_HOURS = 24;
+    private static final long EXPIRY_CHECK_INTERVAL = 60 * 1000;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    public enum CompletionStatus {
+        COMPLETED,
+        NO_UPLOAD,
+        MISSING_CHUNKS,
+        CHECKSUM_MISMATCH
+    }
+
+    // uploads in progress by target file path
+    private static final Map<String, Upload> uploads = new HashMap<String, Upload>();
+    private static long lastExpiryCheck;
+
+    /**
+     * Writes one chunk of a file. The first chunk of a file with another size or chunk size than the
+     * upload in progress starts over.
+     *
+     * @param targetFile the file being uploaded
+     * @param fileSize   the size of the whole file
+     * @param chunkSize  the size of all chunks but the last
+     * @param index      the index of the chunk
+     * @param data       the chunk's bytes
+     * @throws IllegalArgumentException if the chunk does not fit the file
+     * @throws IOException              if the chunk could not be written completely
+     */
+    public static void writeChunk(File targetFile, long fileSize, int chunkSize, int index, InputStream data) throws IOException {
+        if (fileSize < 0 || chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE || index < 0 || index >= getChunkCount(fileSize, chunkSize)) {
+            throw new IllegalArgumentException("chunk " + index + " does not fit a file of " + fileSize + " bytes in chunks of " + chunkSize);
+        }
+        final Upload upload = getUpload(targetFile, fileSize, chunkSize, true);
+        final long position = (long) index * chunkSize;
+        final long length = Math.min(chunkSize, fileSize - position);
+        final FileChannel channel = FileChannel.open(upload.partFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            // positional writes of different chunks do not interfere, so parallel requests need no lock;
+            // unlike transferFrom, write also fills in chunks beyond the current end of the file
+            final ReadableByteChannel source = Channels.newChannel(data);
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long written = 0;
+            while (written < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, length - written));
+                if (source.read(buffer) <= 0) {
+                    break;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, position + written);
+                }
+            }
+            if (written < length || data.read() != -1) {
+                throw new IOException("chunk " + index + " of " + targetFile.getName() + " is not " + length + " bytes long");
+            }
+        } finally {
+            channel.close();
+        }
+        upload.chunkReceived(index);
+    }
+
+    /**
+     * @return the indexes of the chunks received so far for an upload of the given size and chunk size,
+     * empty if there is no such upload
+     */
+    public static List<Integer> getReceivedChunks(File targetFile, long fileSize, int chunkSize) throws IOException {
+        final List<Integer> received = new ArrayList<Integer>();
+        final Upload upload = getUpload(targetFile, fileSize, chunkSize, false);
+        if (upload != null) {
+            synchronized (upload) {
+                for (int i = upload.chunks.nextSetBit(0); i >= 0; i = upload.chunks.nextSetBit(i + 1)) {
+                    received.add(i);
+                }
+            }
+        }
+        return received;
+    }
+
+    /**
+     * Verifies the assembled file and moves it to its final name. An upload with a wrong checksum is discarded.
+     *
+     * @param sha256 the hex encoded SHA-256 checksum of the file computed by the client
+     */
+    public static CompletionStatus complete(File targetFile, String sha256) throws IOException {
+        final Upload upload;
+        synchronized (uploads) {
+            upload = uploads.get(targetFile.getAbsolutePath());
+        }
+        if (upload == null) {
+            return getUpload(targetFile, -1, -1, false) == null ? CompletionStatus.NO_UPLOAD : complete(targetFile, sha256);
+        }
+        synchronized (upload) {
+            if (upload.chunks.cardinality() < getChunkCount(upload.fileSize, upload.chunkSize)) {
+                return CompletionStatus.MISSING_CHUNKS;
+            }
+        }
+        final boolean valid = getSha256(upload.partFile).equalsIgnoreCase(sha256);
+        if (valid) {
+            Files.move(upload.partFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        discard(upload);
+        return valid ? CompletionStatus.COMPLETED : CompletionStatus.CHECKSUM_MISMATCH;
+    }
+
+    /**
+     * @return the hex encoded SHA-256 checksum of the file's content
+     */
+    public static String getSha256(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return hex.toString();
+    }
+
+    static int getChunkCount(long fileSize, int chunkSize) {
+        // an empty file is uploaded as one empty chunk
+        return (int) Math.max(1, (fileSize + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Returns the upload in progress, loading it from its chunk list after a server restart.
+     *
+     * @param fileSize  the expected file size, or -1 to accept any
+     * @param chunkSize the expected chunk size, or -1 to accept any
+     * @param create    whether to start a new upload if there is none with the expected sizes
+     */
+    private static Upload getUpload(File targetFile, long fileSize, int chunkSize, boolean create) throws IOException {
+        final String key = targetFile.getAbsolutePath();
+        synchronized (uploads) {
+            final long now = System.currentTimeMillis();
+            if (now - lastExpiryCheck > EXPIRY_CHECK_INTERVAL) {
+                lastExpiryCheck = now;
+                discardUploadsIdleSince(now - getExpiry());
+            }
+            Upload upload = uploads.get(key);
+            if (upload == null) {
+                upload = Upload.load(targetFile, now - getExpiry());
+                if (upload != null) {
+                    uploads.put(key, upload);
+                }
+            }
+            if (upload != null && (fileSize == -1 || upload.fileSize == fileSize) && (chunkSize == -1 || upload.chunkSize == chunkSize)) {
+                upload.lastActivity = now;
+                return upload;
+            }
+            if (!create) {
+                return null;
+            }
+            if (upload != null) {
+                discard(upload);
+            }
+            upload = Upload.create(targetFile, fileSize, chunkSize);
+            uploads.put(key, upload);
+            return upload;
+        }
+    }
+
+    /**
+     * Discards the uploads which have not been used since the given time.
+     *
+     * @return the number of discarded uploads
+     */
+    static int discardUploadsIdleSince(long time) {
+        final List<Upload> idle = new ArrayList<Upload>();
+        synchronized (uploads) {
+            for (Upload upload : uploads.values()) {
+                if (upload.lastActivity < time) {
+                    idle.add(upload);
+                }
+            }
+            for (Upload upload : idle) {
+                discard(upload);
+            }
+        }
+        return idle.size();
+    }
+
+    private static long getExpiry() {
+        return Integer.getInteger(EXPIRY_HOURS_PROPERTY, DEFAULT_EXPIRY_HOURS) * 60L * 60L * 1000L;
+    }
+
+    private static void discard(Upload upload) {
+        synchronized (uploads) {
+            if (uploads.get(upload.targetFile.getAbsolutePath()) == upload) {
+                uploads.remove(upload.targetFile.getAbsolutePath());
+            }
+        }
+        upload.partFile.delete();
+        upload.chunksFile.delete();
+    }
+
+    private static class Upload {
+
+        private final File targetFile;
+        private final File partFile;
+        private final File chunksFile;
+        private final long fileSize;
+        private final int chunkSize;
+        private final BitSet chunks = new BitSet();
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        private Upload(File targetFile, long fileSize, int chunkSize) {
+            this.targetFile = targetFile;
+            this.partFile = new File(targetFile.getPath() + PART_SUFFIX);
+            this.chunksFile = new File(targetFile.getPath() + CHUNKS_SUFFIX);
+            this.fileSize = fileSize;
+            this.chunkSize = chunkSize;
+        }
+
+        static Upload create(File targetFile, long fileSize, int chunkSize) throws IOException {
+            Upload upload = new Upload(targetFile, fileSize, chunkSize);
+            upload.partFile.delete();
+            Writer writer = new OutputStreamWriter(new FileOutputStream(upload.chunksFile), StandardCharsets.US_ASCII);
+            try {
+                writer.write(fileSize + " " + chunkSize + "\n");
+            } finally {
+                writer.close();
+            }
+            return upload;
+        }
+
+        /**
+         * @param idleSince an upload whose last chunk was received before this time is discarded as abandoned
+         * @return the upload recorded next to the target file, {@code null} if there is none
+         */
+        static Upload load(File targetFile, long idleSince) throws IOException {
+            File chunksFile = new File(targetFile.getPath() + CHUNKS_SUFFIX);
+            File partFile = new File(targetFile.getPath() + PART_SUFFIX);
+            if (!chunksFile.isFile() || !partFile.isFile()) {
+                return null;
+            }
+            if (chunksFile.lastModified() < idleSince) {
+                chunksFile.delete();
+                partFile.delete();
+                return null;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(chunksFile), StandardCharsets.US_ASCII));
+            try {
+                String[] header = reader.readLine().split(" ");
+                Upload upload = new Upload(targetFile, Long.parseLong(header[0]), Integer.parseInt(header[1]));
+                upload.lastActivity = chunksFile.lastModified();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        upload.chunks.set(Integer.parseInt(line));
+                    }
+                }
+                return upload;
+            } catch (RuntimeException e) {
+                // an unreadable chunk list, start over
+                return null;
+            } finally {
+                reader.close();
+            }
+        }
+
+        synchronized void chunkReceived(int index) throws IOException {
+            lastActivity = System.currentTimeMillis();
+            if (chunks.get(index)) {
+                return;
+            }
+            Writer writer = new OutputStreamWriter(new FileOutputStream(chunksFile, true), StandardCharsets.US_ASCII);
+            try {
+                writer.write(index + "\n");
+            } finally {
+                writer.close();
+            }
+            chunks.set(index);
+        }
+    }
+}
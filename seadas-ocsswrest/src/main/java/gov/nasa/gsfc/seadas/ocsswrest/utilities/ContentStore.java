@@ -0,0 +1,248 @@
+package gov.nasa.gsfc.seadas.ocsswrest.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Input files uploaded by any client, kept by the SHA-256 checksum of their content so the same granule is
+ * uploaded only once for all jobs and clients.
+ * <p>
+ * Each file is copied once into {@code <store>/<first two hex digits>/<sha256>} and hard linked into the working
+ * directories of the jobs which use it; stored files are made read-only, since all links share the content. The
+ * job's own upload is copied rather than linked, so it stays writable and changes to it do not reach the store.
+ * Files linked into a job must still be replaced, not written into, see
+ * {@link ServerSideFileUtilities#writeStringToFile}.
+ * When the stored files exceed {@link #QUOTA_MB_PROPERTY} megabytes (20480 by default), the least recently
+ * used are removed. Jobs keep their own links, so removing a stored file does not affect them.
+ * <p>
+ * The store is {@code ~/ocsswfiles/contentStore} unless {@link #DIRECTORY_PROPERTY} is set; it is kept out of
+ * the server working directory, which is emptied between jobs. Files are copied instead of linked if the store
+ * is on another file system than the working directories.
+ */
+public class ContentStore {
+
+    public static final String DIRECTORY_PROPERTY = "contentStoreDirectory";
+    public static final String QUOTA_MB_PROPERTY = "contentStoreQuotaMB";
+
+    private static final String DEFAULT_DIRECTORY = System.getProperty("user.home") + File.separator + "ocsswfiles" + File.separator + "contentStore";
+    private static final long DEFAULT_QUOTA_MB = 20480;
+    private static final Pattern SHA256_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private static ContentStore instance;
+
+    private final File directory;
+    private final long quota;
+    // sizes of the stored files by checksum, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long size;
+
+    public static synchronized ContentStore getInstance() {
+        if (instance == null) {
+            String directory = System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY);
+            long quotaMB = Long.getLong(QUOTA_MB_PROPERTY, DEFAULT_QUOTA_MB);
+            instance = new ContentStore(new File(directory), quotaMB * 1024L * 1024L);
+        }
+        return instance;
+    }
+
+    ContentStore(File directory, long quota) {
+        this.directory = directory;
+        this.quota = quota;
+        load();
+    }
+
+    /**
+     * Links the stored file with the given checksum into a job's working directory, replacing a file of the same name.
+     *
+     * @return {@code false} if no file with the checksum is stored
+     */
+    public boolean linkInto(String sha256, File targetFile) throws IOException {
+        final String key = normalize(sha256);
+        if (key == null) {
+            return false;
+        }
+        final File blob = getBlob(key);
+        synchronized (this) {
+            // get, unlike containsKey, marks the file as recently used
+            if (entries.get(key) == null || !blob.isFile()) {
+                forget(key);
+                return false;
+            }
+            // also across restarts
+            blob.setLastModified(System.currentTimeMillis());
+        }
+        // copying a large file must not block the other requests, so the lock is not held here
+        final File temporary;
+        try {
+            temporary = linkToTemporaryFile(blob, targetFile.getParentFile());
+        } catch (NoSuchFileException e) {
+            // evicted meanwhile
+            synchronized (this) {
+                forget(key);
+            }
+            return false;
+        }
+        try {
+            Files.move(temporary.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+        return true;
+    }
+
+    /**
+     * Stores a file whose checksum has been verified, unless a file with that checksum is stored already.
+     */
+    public void add(File file, String sha256) throws IOException {
+        final String key = normalize(sha256);
+        if (key == null) {
+            throw new IllegalArgumentException("not a SHA-256 checksum: " + sha256);
+        }
+        final File blob = getBlob(key);
+        if (isStored(key, blob)) {
+            return;
+        }
+        Files.createDirectories(blob.getParentFile().toPath());
+        // copied without holding the lock, only the rename into place and the bookkeeping need it
+        final File temporary = copyToTemporaryFile(file, blob.getParentFile());
+        try {
+            synchronized (this) {
+                if (isStored(key, blob)) {
+                    // stored by another request meanwhile
+                    return;
+                }
+                Files.move(temporary.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                blob.setReadOnly();
+                forget(key);
+                entries.put(key, blob.length());
+                size += blob.length();
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+    }
+
+    public synchronized boolean contains(String sha256) {
+        final String key = normalize(sha256);
+        return key != null && entries.containsKey(key);
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (size > quota && iterator.hasNext()) {
+            final Map.Entry<String, Long> eldest = iterator.next();
+            final File blob = getBlob(eldest.getKey());
+            if (blob.delete() || !blob.exists()) {
+                size -= eldest.getValue();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void forget(String key) {
+        final Long removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed;
+        }
+    }
+
+    /**
+     * Reads the stored files at startup, in the order they were last used.
+     */
+    private void load() {
+        final List<File> blobs = new ArrayList<File>();
+        final File[] prefixes = directory.listFiles();
+        if (prefixes != null) {
+            for (File prefix : prefixes) {
+                final File[] files = prefix.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        if (file.isFile() && SHA256_PATTERN.matcher(file.getName()).matches()) {
+                            blobs.add(file);
+                        }
+                    }
+                }
+            }
+        }
+        Collections.sort(blobs, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                return Long.compare(file1.lastModified(), file2.lastModified());
+            }
+        });
+        for (File blob : blobs) {
+            entries.put(blob.getName(), blob.length());
+            size += blob.length();
+        }
+        evict();
+    }
+
+    private File getBlob(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key);
+    }
+
+    /**
+     * @return whether the file is stored, which counts as a use
+     */
+    private synchronized boolean isStored(String key, File blob) {
+        return entries.get(key) != null && blob.isFile();
+    }
+
+    /**
+     * Hard links the file to a new temporary file in the directory, or copies it if the directory is on another
+     * file system.
+     */
+    private static File linkToTemporaryFile(File existing, File directory) throws IOException {
+        final Path temporary = Files.createTempFile(directory.toPath(), existing.getName(), ".tmp");
+        try {
+            Files.delete(temporary);
+            try {
+                Files.createLink(temporary, existing.toPath());
+            } catch (NoSuchFileException e) {
+                throw e;
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(existing.toPath(), temporary, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return temporary.toFile();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    private static File copyToTemporaryFile(File existing, File directory) throws IOException {
+        final Path temporary = Files.createTempFile(directory.toPath(), existing.getName(), ".tmp");
+        try {
+            Files.copy(existing.toPath(), temporary, StandardCopyOption.REPLACE_EXISTING);
+            return temporary.toFile();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    private static String normalize(String sha256) {
+        if (sha256 == null) {
+            return null;
+        }
+        final String key = sha256.toLowerCase();
+        return SHA256_PATTERN.matcher(key).matches() ? key : null;
+    }
+}
@@ -0,0 +1,157 @@
+package gov.nasa.gsfc.seadas.ocsswrest.utilities;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Builds download responses which stream a file from disk instead of loading it into memory.
+ * <p>
+ * A single HTTP byte range ({@code Range: bytes=first-last}, {@code bytes=first-} or {@code bytes=-suffix})
+ * is honoured with a 206 response, so clients can resume a download or fetch parts of a file in parallel.
+ * Requests for several ranges get the whole file, which HTTP permits, and so do malformed Range headers,
+ * which HTTP requires to be ignored.
+ */
+public class FileDownloads {
+
+    public static final String RANGE_HEADER = "Range";
+
+    // the largest transfer handed to the channel at once
+    private static final long TRANSFER_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    /**
+     * @param fileName    the file to send
+     * @param rangeHeader the request's Range header, may be {@code null}
+     * @return the 200 or 206 response streaming the file, 404 if the file does not exist, or 416 if
+     * a well-formed range starts beyond the end of the file
+     */
+    public static Response createResponse(String fileName, String rangeHeader) {
+        final File file = fileName == null ? null : new File(fileName);
+        if (file == null || !file.isFile()) {
+            System.out.println(fileName + " does not exist");
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        final long length = file.length();
+        long first = 0;
+        long last = length - 1;
+        boolean partial = false;
+        if (rangeHeader != null && rangeHeader.startsWith("bytes=") && rangeHeader.indexOf(',') == -1) {
+            try {
+                final long[] range = parseRange(rangeHeader.substring("bytes=".length()).trim(), length);
+                if (range == null) {
+                    return Response.status(416)
+                            .header("Content-Range", "bytes */" + length)
+                            .build();
+                }
+                first = range[0];
+                last = range[1];
+                partial = true;
+            } catch (IllegalArgumentException e) {
+                System.out.println("ignoring the invalid range " + rangeHeader);
+            }
+        }
+
+        final long start = first;
+        final long count = last - first + 1;
+        final StreamingOutput fileStream = new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException, WebApplicationException {
+                transfer(file, start, count, outputStream);
+            }
+        };
+
+        final Response.ResponseBuilder builder = partial ? Response.status(206) : Response.ok();
+        builder.entity(fileStream)
+                .type(MediaType.APPLICATION_OCTET_STREAM)
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Length", count)
+                .header("content-disposition", "attachment; fileName = " + fileName);
+        if (partial) {
+            builder.header("Content-Range", "bytes " + first + "-" + last + "/" + length);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Copies a part of a file to a stream through the file channel, without staging it in the heap.
+     */
+    static void transfer(File file, long start, long count, OutputStream outputStream) throws IOException {
+        final FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final WritableByteChannel target = Channels.newChannel(outputStream);
+            long position = start;
+            final long end = start + count;
+            while (position < end) {
+                final long transferred = fileChannel.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, end - position), target);
+                if (transferred <= 0) {
+                    // the file was truncated while being sent
+                    throw new IOException("Unexpected end of file " + file + " at byte " + position);
+                }
+                position += transferred;
+            }
+            outputStream.flush();
+        } finally {
+            fileChannel.close();
+        }
+    }
+
+    /**
+     * @return the first and last byte of the range, {@code null} if it is well-formed but not satisfiable
+     * @throws IllegalArgumentException if the range is malformed
+     */
+    static long[] parseRange(String range, long length) {
+        final int dash = range.indexOf('-');
+        if (dash == -1) {
+            throw new IllegalArgumentException("no '-' in range " + range);
+        }
+        final String firstString = range.substring(0, dash).trim();
+        final String lastString = range.substring(dash + 1).trim();
+        long first;
+        long last;
+        if (firstString.isEmpty()) {
+            // the last n bytes
+            final long suffix = parsePosition(lastString);
+            if (suffix == 0) {
+                return null;
+            }
+            first = Math.max(0, length - suffix);
+            last = length - 1;
+        } else {
+            first = parsePosition(firstString);
+            last = length - 1;
+            if (!lastString.isEmpty()) {
+                final long requestedLast = parsePosition(lastString);
+                if (requestedLast < first) {
+                    throw new IllegalArgumentException("range " + range + " ends before it starts");
+                }
+                last = Math.min(requestedLast, last);
+            }
+        }
+        if (first >= length) {
+            return null;
+        }
+        return new long[]{first, last};
+    }
+
+    private static long parsePosition(String position) {
+        if (position.isEmpty()) {
+            throw new IllegalArgumentException("missing byte position");
+        }
+        for (int i = 0; i < position.length(); i++) {
+            if (!Character.isDigit(position.charAt(i))) {
+                throw new IllegalArgumentException("invalid byte position " + position);
+            }
+        }
+        // throws a NumberFormatException, which is an IllegalArgumentException, if it is too large
+        return Long.parseLong(position);
+    }
+}
@@ -0,0 +1,197 @@
+package gov.nasa.gsfc.seadas.ocsswrest.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental access to the log files of running programs, which only grow while they are polled.
+ * <p>
+ * The last line is found by reading the file backwards from its end, so its cost does not depend on the
+ * length of the log; it is remembered together with the file length and only looked up again once the file
+ * has changed. New lines are served from a byte offset cursor: a client passes the offset returned by its
+ * previous call and only gets the lines written since.
+ */
+public class ProcessLogReader {
+
+    private static final int BLOCK_SIZE = 8192;
+    // the most bytes returned by one call of readLinesSince, so a client catching up gets the log in pieces
+    static final int MAX_CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_CACHED_FILES = 256;
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private static final Map<String, CachedLine> lastLines = new LinkedHashMap<String, CachedLine>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedLine> eldest) {
+            return size() > MAX_CACHED_FILES;
+        }
+    };
+
+    /**
+     * @return the last non-empty line of the file, {@code null} if the file does not exist or has no lines
+     */
+    public static String getLastLine(String fileName) {
+        final File file = new File(fileName);
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        synchronized (lastLines) {
+            CachedLine cached = lastLines.get(fileName);
+            if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+                return cached.line;
+            }
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+        String line;
+        try {
+            line = readLastLine(file, length);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        synchronized (lastLines) {
+            lastLines.put(fileName, new CachedLine(length, lastModified, line));
+        }
+        return line;
+    }
+
+    /**
+     * Reads the complete lines written after the given offset. A line which is still being written is left
+     * for the next call.
+     *
+     * @param offset the offset returned by the previous call, 0 to start at the beginning
+     * @return the lines and the offset to pass next time; an offset beyond the end of the file, e.g. of a
+     * previous run's log, starts over at the beginning
+     */
+    public static LogChunk readLinesSince(String fileName, long offset) throws IOException {
+        final File file = new File(fileName);
+        if (!file.isFile()) {
+            return new LogChunk(new ArrayList<String>(), 0);
+        }
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            final long length = channel.size();
+            long start = offset < 0 || offset > length ? 0 : offset;
+            final int size = (int) Math.min(MAX_CHUNK_SIZE, length - start);
+            final ByteBuffer buffer = ByteBuffer.allocate(size);
+            while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+                // read until the chunk is full
+            }
+            final byte[] bytes = buffer.array();
+            final int filled = buffer.position();
+            final List<String> lines = new ArrayList<String>();
+            int lineStart = 0;
+            for (int i = 0; i < filled; i++) {
+                if (bytes[i] == '\n') {
+                    lines.add(trimCarriageReturn(new String(bytes, lineStart, i - lineStart, CHARSET)));
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart == 0 && filled == MAX_CHUNK_SIZE) {
+                // a single line longer than a chunk, hand it out in pieces
+                lines.add(new String(bytes, 0, filled, CHARSET));
+                lineStart = filled;
+            }
+            return new LogChunk(lines, start + lineStart);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static String readLastLine(File file, long length) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            final long lineEnd = skipBackward(channel, Math.min(length, channel.size()), true);
+            if (lineEnd == 0) {
+                return null;
+            }
+            final long lineStart = skipBackward(channel, lineEnd, false);
+            final ByteBuffer line = ByteBuffer.allocate((int) Math.min(MAX_CHUNK_SIZE, lineEnd - lineStart));
+            final long readStart = lineEnd - line.capacity();
+            while (line.hasRemaining() && channel.read(line, readStart + line.position()) > 0) {
+                // read until the line is complete
+            }
+            return new String(line.array(), 0, line.position(), CHARSET);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Moves backwards from {@code end} over line breaks, or over anything else.
+     *
+     * @return the position after the last byte which was not skipped, 0 if all were skipped
+     */
+    private static long skipBackward(FileChannel channel, long end, boolean lineBreaks) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        long position = end;
+        while (position > 0) {
+            final int blockSize = (int) Math.min(BLOCK_SIZE, position);
+            final long blockStart = position - blockSize;
+            buffer.clear();
+            buffer.limit(blockSize);
+            while (buffer.hasRemaining() && channel.read(buffer, blockStart + buffer.position()) > 0) {
+                // read until the block is full
+            }
+            final byte[] block = buffer.array();
+            for (int i = blockSize - 1; i >= 0; i--) {
+                final boolean lineBreak = block[i] == '\n' || block[i] == '\r';
+                if (lineBreak != lineBreaks) {
+                    return blockStart + i + 1;
+                }
+            }
+            position = blockStart;
+        }
+        return 0;
+    }
+
+    private static String trimCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * Lines read from a log, with the offset to continue from.
+     */
+    public static class LogChunk {
+
+        private final List<String> lines;
+        private final long nextOffset;
+
+        LogChunk(List<String> lines, long nextOffset) {
+            this.lines = lines;
+            this.nextOffset = nextOffset;
+        }
+
+        public List<String> getLines() {
+            return lines;
+        }
+
+        public long getNextOffset() {
+            return nextOffset;
+        }
+    }
+
+    private static class CachedLine {
+
+        private final long length;
+        private final long lastModified;
+        private final String line;
+
+        private CachedLine(long length, long lastModified, String line) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.line = line;
+        }
+    }
+}
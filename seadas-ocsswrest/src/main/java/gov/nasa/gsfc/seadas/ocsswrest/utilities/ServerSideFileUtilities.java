@@ -69,6 +69,8 @@ public class ServerSideFileUtilities {
 
         try {
             File outputFile = new File(fileLocation);
+            // the file may be a read-only link into the content store, replace it instead of writing into it
+            Files.deleteIfExists(outputFile.toPath());
             OutputStream outputStream = new FileOutputStream(outputFile);
             int read = 0;
             byte[] bytes = new byte[8192];
@@ -108,11 +110,16 @@ public class ServerSideFileUtilities {
         }
     }
 
+    /**
+     * Writes the string to a new file, replacing the file at that location. An input file of a job may be a
+     * hard link into the {@link ContentStore}, which writing into it would change for all jobs.
+     */
     public static File writeStringToFile(String fileContent, String fileLocation) {
 
         try {
 
             final File parFile = new File(fileLocation);
+            Files.deleteIfExists(parFile.toPath());
             FileWriter fileWriter = null;
             try {
                 fileWriter = new FileWriter(parFile);
@@ -201,19 +208,12 @@ public class ServerSideFileUtilities {
         }
     }
 
+    /**
+     * @return the last non-empty line of a log file, read from its end rather than from the start
+     * @see ProcessLogReader#getLastLine(String)
+     */
     public static String getlastLine(String fileName) {
-        BufferedReader input = null;
-        String last = null, line;
-        try {
-            input = new BufferedReader(new FileReader(fileName));
-            while ((line = input.readLine()) != null) {
-                last = line;
-            }
-
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-        }
-        return last;
+        return ProcessLogReader.getLastLine(fileName);
     }
 
 
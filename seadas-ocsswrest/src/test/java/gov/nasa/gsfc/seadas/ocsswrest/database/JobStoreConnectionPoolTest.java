@@ -0,0 +1,58 @@
+package gov.nasa.gsfc.seadas.ocsswrest.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class JobStoreConnectionPoolTest {
+
+    private File dbFile;
+    private JobStoreConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("ocssw-test", ".db");
+        pool = new JobStoreConnectionPool("jdbc:sqlite:" + dbFile.getPath(), 2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.closeIdleConnections();
+        dbFile.delete();
+        new File(dbFile.getPath() + "-wal").delete();
+        new File(dbFile.getPath() + "-shm").delete();
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws Exception {
+        JobStoreConnectionPool.PooledConnection first = pool.acquire();
+        JobStoreConnectionPool.PooledConnection second = pool.acquire();
+        assertNotSame(first, second);
+        pool.release(first);
+        assertSame(first, pool.acquire());
+        pool.release(first);
+        pool.release(second);
+    }
+
+    @Test
+    public void testStatementsAreCachedAndWalIsEnabled() throws Exception {
+        JobStoreConnectionPool.PooledConnection connection = pool.acquire();
+        try {
+            PreparedStatement statement = connection.prepareStatement("PRAGMA journal_mode");
+            assertSame(statement, connection.prepareStatement("PRAGMA journal_mode"));
+            ResultSet rs = statement.executeQuery();
+            assertEquals("wal", rs.getString(1).toLowerCase());
+            rs.close();
+        } finally {
+            pool.release(connection);
+        }
+    }
+}
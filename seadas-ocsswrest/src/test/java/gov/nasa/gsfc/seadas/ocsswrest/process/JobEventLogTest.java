@@ -0,0 +1,81 @@
+package gov.nasa.gsfc.seadas.ocsswrest.process;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JobEventLogTest {
+
+    @Test
+    public void testEventsSince() {
+        JobEventLog log = new JobEventLog("-100");
+        log.setStatus("-1");
+        log.appendLine(JobEventLog.STDOUT, "first");
+        log.appendLine(JobEventLog.STDERR, "second");
+        log.setStatus("0");
+
+        List<JobEventLog.Event> events = log.getEvents(0);
+        assertEquals(4, events.size());
+        assertEquals(JobEventLog.STATUS, events.get(0).getType());
+        assertEquals("first", events.get(1).getText());
+        assertEquals(JobEventLog.STDERR, events.get(2).getType());
+        assertEquals("0", events.get(3).getText());
+
+        List<JobEventLog.Event> newEvents = log.getEvents(events.get(1).getSequence() + 1);
+        assertEquals(2, newEvents.size());
+        assertEquals("second", newEvents.get(0).getText());
+        assertTrue(log.getEvents(log.getNextSequence()).isEmpty());
+    }
+
+    @Test
+    public void testNewRunDropsOldEvents() {
+        JobEventLog log = new JobEventLog("-100");
+        log.setStatus("-1");
+        log.appendLine(JobEventLog.STDOUT, "old run");
+        log.setStatus("1");
+        long oldNext = log.getNextSequence();
+
+        log.setStatus("-1");
+        List<JobEventLog.Event> events = log.getEvents(0);
+        assertEquals(1, events.size());
+        assertEquals("-1", events.get(0).getText());
+        assertEquals(oldNext, events.get(0).getSequence());
+    }
+
+    @Test
+    public void testOldestEventsAreDropped() {
+        JobEventLog log = new JobEventLog("-1");
+        for (int i = 0; i < JobEventLog.MAX_EVENTS + 1; i++) {
+            log.appendLine(JobEventLog.STDOUT, Integer.toString(i));
+        }
+        List<JobEventLog.Event> events = log.getEvents(0);
+        assertTrue(events.size() <= JobEventLog.MAX_EVENTS);
+        assertEquals(Integer.toString(JobEventLog.MAX_EVENTS), events.get(events.size() - 1).getText());
+        assertEquals(JobEventLog.MAX_EVENTS, events.get(events.size() - 1).getSequence());
+    }
+
+    @Test
+    public void testListenerIsCalledUntilDone() {
+        JobEventLog log = new JobEventLog("-1");
+        final int[] calls = new int[1];
+        log.addListener(new JobEventLog.Listener() {
+            @Override
+            public boolean eventsAdded(JobEventLog log) {
+                calls[0]++;
+                return JobEventLog.isFinished(log.getStatus());
+            }
+        });
+        assertEquals(1, calls[0]);
+        log.appendLine(JobEventLog.STDOUT, "line");
+        assertEquals(2, calls[0]);
+        log.setStatus("0");
+        assertEquals(3, calls[0]);
+        log.appendLine(JobEventLog.STDOUT, "after the end");
+        assertEquals(3, calls[0]);
+        assertFalse(JobEventLog.isFinished("-1"));
+    }
+}
@@ -0,0 +1,90 @@
+package gov.nasa.gsfc.seadas.ocsswrest.process;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JobSchedulerTest {
+
+    @Test
+    public void testQueueOrderIsFairAcrossClients() throws Exception {
+        JobScheduler scheduler = new JobScheduler(1, false);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+
+        scheduler.submit("a1", "clientA", JobScheduler.PRIORITY_NORMAL, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        futures.add(scheduler.submit("a2", "clientA", JobScheduler.PRIORITY_NORMAL, recorder("a2", started)));
+        futures.add(scheduler.submit("a3", "clientA", JobScheduler.PRIORITY_NORMAL, recorder("a3", started)));
+        futures.add(scheduler.submit("b1", "clientB", JobScheduler.PRIORITY_BATCH, recorder("b1", started)));
+        futures.add(scheduler.submit("b2", "clientB", JobScheduler.PRIORITY_NORMAL, recorder("b2", started)));
+
+        assertEquals(1, scheduler.getRunningJobCount());
+        assertEquals(4, scheduler.getQueuedJobCount());
+        assertEquals(0, scheduler.getQueuePosition("a1"));
+        // client B has nothing running, so its normal priority job goes first, batch jobs go last
+        assertEquals(1, scheduler.getQueuePosition("b2"));
+        assertEquals(2, scheduler.getQueuePosition("a2"));
+        assertEquals(3, scheduler.getQueuePosition("a3"));
+        assertEquals(4, scheduler.getQueuePosition("b1"));
+
+        blocker.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(Arrays.asList("b2", "a2", "a3", "b1"), started);
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        final JobScheduler scheduler = new JobScheduler(2, false);
+        final int[] maxRunning = new int[1];
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(scheduler.submit("job" + i, "client" + (i % 3), JobScheduler.PRIORITY_NORMAL, new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (maxRunning) {
+                        maxRunning[0] = Math.max(maxRunning[0], scheduler.getRunningJobCount());
+                    }
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertTrue(maxRunning[0] <= 2);
+    }
+
+    private static Runnable recorder(final String jobId, final List<String> started) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                started.add(jobId);
+            }
+        };
+    }
+}
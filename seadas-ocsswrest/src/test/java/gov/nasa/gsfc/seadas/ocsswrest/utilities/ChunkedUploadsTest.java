@@ -0,0 +1,120 @@
+package gov.nasa.gsfc.seadas.ocsswrest.utilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class ChunkedUploadsTest {
+
+    private static final int CHUNK_SIZE = 4;
+
+    private File workingDir;
+    private File targetFile;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        workingDir = Files.createTempDirectory("uploads").toFile();
+        targetFile = new File(workingDir, "granule.L1A");
+        content = "0123456789".getBytes("US-ASCII");
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : workingDir.listFiles()) {
+            file.delete();
+        }
+        workingDir.delete();
+    }
+
+    @Test
+    public void testChunksInAnyOrder() throws Exception {
+        writeChunk(2);
+        writeChunk(0);
+        assertEquals(Arrays.asList(0, 2), ChunkedUploads.getReceivedChunks(targetFile, content.length, CHUNK_SIZE));
+        assertEquals(ChunkedUploads.CompletionStatus.MISSING_CHUNKS, ChunkedUploads.complete(targetFile, sha256()));
+
+        writeChunk(1);
+        assertEquals(ChunkedUploads.CompletionStatus.COMPLETED, ChunkedUploads.complete(targetFile, sha256()));
+        assertArrayEquals(content, Files.readAllBytes(targetFile.toPath()));
+        assertEquals(1, workingDir.listFiles().length);
+        assertEquals(ChunkedUploads.CompletionStatus.NO_UPLOAD, ChunkedUploads.complete(targetFile, sha256()));
+    }
+
+    @Test
+    public void testChecksumMismatchDiscardsUpload() throws Exception {
+        writeChunk(0);
+        writeChunk(1);
+        writeChunk(2);
+        assertEquals(ChunkedUploads.CompletionStatus.CHECKSUM_MISMATCH, ChunkedUploads.complete(targetFile, "00"));
+        assertFalse(targetFile.exists());
+        assertEquals(Collections.<Integer>emptyList(), ChunkedUploads.getReceivedChunks(targetFile, content.length, CHUNK_SIZE));
+    }
+
+    @Test
+    public void testOtherFileSizeStartsOver() throws Exception {
+        writeChunk(0);
+        ChunkedUploads.writeChunk(targetFile, 4, CHUNK_SIZE, 0, new ByteArrayInputStream(content, 0, 4));
+        assertEquals(Collections.<Integer>emptyList(), ChunkedUploads.getReceivedChunks(targetFile, content.length, CHUNK_SIZE));
+        assertEquals(Arrays.asList(0), ChunkedUploads.getReceivedChunks(targetFile, 4, CHUNK_SIZE));
+        ChunkedUploads.complete(targetFile, "00");
+    }
+
+    @Test
+    public void testChunkOfWrongLengthIsRejected() throws Exception {
+        try {
+            ChunkedUploads.writeChunk(targetFile, content.length, CHUNK_SIZE, 2, new ByteArrayInputStream(content, 0, 3));
+            fail();
+        } catch (IOException expected) {
+        }
+        try {
+            ChunkedUploads.writeChunk(targetFile, content.length, CHUNK_SIZE, 3, new ByteArrayInputStream(content, 0, 0));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(Collections.<Integer>emptyList(), ChunkedUploads.getReceivedChunks(targetFile, content.length, CHUNK_SIZE));
+        writeChunk(0);
+        writeChunk(1);
+        writeChunk(2);
+        assertEquals(ChunkedUploads.CompletionStatus.COMPLETED, ChunkedUploads.complete(targetFile, sha256()));
+    }
+
+    @Test
+    public void testIdleUploadsAreDiscarded() throws Exception {
+        writeChunk(0);
+        ChunkedUploads.discardUploadsIdleSince(System.currentTimeMillis() - 60 * 1000);
+        assertEquals(Arrays.asList(0), ChunkedUploads.getReceivedChunks(targetFile, content.length, CHUNK_SIZE));
+
+        ChunkedUploads.discardUploadsIdleSince(System.currentTimeMillis() + 1);
+        assertEquals(0, workingDir.listFiles().length);
+        assertEquals(Collections.<Integer>emptyList(), ChunkedUploads.getReceivedChunks(targetFile, content.length, CHUNK_SIZE));
+    }
+
+    private void writeChunk(int index) throws IOException {
+        int offset = index * CHUNK_SIZE;
+        int length = Math.min(CHUNK_SIZE, content.length - offset);
+        ChunkedUploads.writeChunk(targetFile, content.length, CHUNK_SIZE, index, new ByteArrayInputStream(content, offset, length));
+    }
+
+    private String sha256() throws IOException {
+        File file = new File(workingDir, "expected");
+        Files.write(file.toPath(), content);
+        try {
+            return ChunkedUploads.getSha256(file);
+        } finally {
+            file.delete();
+        }
+    }
+}
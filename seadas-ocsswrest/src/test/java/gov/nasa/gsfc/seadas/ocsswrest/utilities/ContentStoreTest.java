@@ -0,0 +1,105 @@
+package gov.nasa.gsfc.seadas.ocsswrest.utilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ContentStoreTest {
+
+    private File storeDir;
+    private File jobDir;
+
+    @Before
+    public void setUp() throws Exception {
+        storeDir = Files.createTempDirectory("store").toFile();
+        jobDir = Files.createTempDirectory("job").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(storeDir);
+        delete(jobDir);
+    }
+
+    @Test
+    public void testLinkStoredFile() throws Exception {
+        ContentStore store = new ContentStore(storeDir, 1024);
+        File uploaded = write("granule.L1A", "granule");
+        String sha256 = ChunkedUploads.getSha256(uploaded);
+        assertFalse(store.linkInto(sha256, new File(jobDir, "other.L1A")));
+
+        store.add(uploaded, sha256);
+        assertTrue(store.contains(sha256.toUpperCase()));
+        File linked = new File(jobDir, "other.L1A");
+        assertTrue(store.linkInto(sha256, linked));
+        assertArrayEquals("granule".getBytes("US-ASCII"), Files.readAllBytes(linked.toPath()));
+        assertFalse(store.linkInto("not a checksum", linked));
+    }
+
+    @Test
+    public void testRewritingInputFileKeepsStoredContent() throws Exception {
+        ContentStore store = new ContentStore(storeDir, 1024);
+        File uploaded = write("files.txt", "granule");
+        String sha256 = ChunkedUploads.getSha256(uploaded);
+        store.add(uploaded, sha256);
+        File linked = new File(jobDir, "linked.txt");
+        assertTrue(store.linkInto(sha256, linked));
+        assertFalse(Files.isSameFile(uploaded.toPath(), linked.toPath()));
+
+        // the server rewrites file lists in place, which must neither fail nor change the stored file
+        assertNotNull(ServerSideFileUtilities.writeStringToFile("changed", uploaded.getPath()));
+        assertNotNull(ServerSideFileUtilities.writeStringToFile("changed", linked.getPath()));
+        assertArrayEquals("changed".getBytes("US-ASCII"), Files.readAllBytes(linked.toPath()));
+        File relinked = new File(jobDir, "relinked.txt");
+        assertTrue(store.linkInto(sha256, relinked));
+        assertArrayEquals("granule".getBytes("US-ASCII"), Files.readAllBytes(relinked.toPath()));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAreEvicted() throws Exception {
+        ContentStore store = new ContentStore(storeDir, 10);
+        File first = write("first", "12345");
+        File second = write("second", "abcde");
+        File third = write("third", "ABCDE");
+        store.add(first, ChunkedUploads.getSha256(first));
+        store.add(second, ChunkedUploads.getSha256(second));
+        assertTrue(store.linkInto(ChunkedUploads.getSha256(first), new File(jobDir, "first.link")));
+
+        store.add(third, ChunkedUploads.getSha256(third));
+        assertEquals(10, store.getSize());
+        assertTrue(store.contains(ChunkedUploads.getSha256(first)));
+        assertFalse(store.contains(ChunkedUploads.getSha256(second)));
+        assertTrue(store.contains(ChunkedUploads.getSha256(third)));
+
+        // the stored files are found again after a restart
+        ContentStore reopened = new ContentStore(storeDir, 10);
+        assertEquals(10, reopened.getSize());
+        assertTrue(reopened.contains(ChunkedUploads.getSha256(third)));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(jobDir, name);
+        Files.write(file.toPath(), content.getBytes("US-ASCII"));
+        return file;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
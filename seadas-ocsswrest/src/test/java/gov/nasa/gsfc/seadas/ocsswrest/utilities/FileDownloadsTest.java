@@ -0,0 +1,37 @@
+package gov.nasa.gsfc.seadas.ocsswrest.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class FileDownloadsTest {
+
+    @Test
+    public void testParseRange() {
+        assertArrayEquals(new long[]{0, 99}, FileDownloads.parseRange("0-99", 1000));
+        assertArrayEquals(new long[]{500, 999}, FileDownloads.parseRange("500-", 1000));
+        assertArrayEquals(new long[]{900, 999}, FileDownloads.parseRange("-100", 1000));
+        assertArrayEquals(new long[]{0, 999}, FileDownloads.parseRange("-5000", 1000));
+        assertArrayEquals(new long[]{990, 999}, FileDownloads.parseRange("990-2000", 1000));
+    }
+
+    @Test
+    public void testParseUnsatisfiableRange() {
+        assertNull(FileDownloads.parseRange("1000-", 1000));
+        assertNull(FileDownloads.parseRange("-0", 1000));
+        assertNull(FileDownloads.parseRange("-10", 0));
+    }
+
+    @Test
+    public void testParseInvalidRange() {
+        for (String range : new String[]{"abc", "1-x", "x-1", "20-10", "-", "+1-2", "1--2"}) {
+            try {
+                FileDownloads.parseRange(range, 1000);
+                fail(range);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
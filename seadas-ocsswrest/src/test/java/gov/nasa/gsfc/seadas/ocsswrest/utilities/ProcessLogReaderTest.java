@@ -0,0 +1,78 @@
+package gov.nasa.gsfc.seadas.ocsswrest.utilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ProcessLogReaderTest {
+
+    private File logFile;
+
+    @Before
+    public void setUp() throws Exception {
+        logFile = File.createTempFile("process", ".log");
+    }
+
+    @After
+    public void tearDown() {
+        logFile.delete();
+    }
+
+    @Test
+    public void testLastLine() throws Exception {
+        assertNull(ProcessLogReader.getLastLine(logFile.getPath()));
+        append("first\nsecond\n\n");
+        assertEquals("second", ProcessLogReader.getLastLine(logFile.getPath()));
+        append("third");
+        assertEquals("third", ProcessLogReader.getLastLine(logFile.getPath()));
+        assertNull(ProcessLogReader.getLastLine(logFile.getPath() + ".missing"));
+    }
+
+    @Test
+    public void testLastLineLongerThanABlock() throws Exception {
+        char[] chars = new char[20000];
+        Arrays.fill(chars, 'x');
+        String longLine = new String(chars);
+        append("start\n" + longLine + "\r\n");
+        assertEquals(longLine, ProcessLogReader.getLastLine(logFile.getPath()));
+    }
+
+    @Test
+    public void testLinesSince() throws Exception {
+        append("one\ntwo\nthr");
+        ProcessLogReader.LogChunk chunk = ProcessLogReader.readLinesSince(logFile.getPath(), 0);
+        assertEquals(Arrays.asList("one", "two"), chunk.getLines());
+        assertEquals(8, chunk.getNextOffset());
+
+        append("ee\r\n");
+        chunk = ProcessLogReader.readLinesSince(logFile.getPath(), chunk.getNextOffset());
+        assertEquals(Collections.singletonList("three"), chunk.getLines());
+
+        chunk = ProcessLogReader.readLinesSince(logFile.getPath(), chunk.getNextOffset());
+        assertEquals(0, chunk.getLines().size());
+        assertEquals(logFile.length(), chunk.getNextOffset());
+
+        // an offset past the end belongs to an older, longer log
+        chunk = ProcessLogReader.readLinesSince(logFile.getPath(), 1000);
+        assertEquals(3, chunk.getLines().size());
+    }
+
+    private void append(String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(logFile, true);
+        try {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package gov.nasa.gsfc.seadas.ocssw;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Uploads files to the job's working directory on the OCSSW server in chunks sent over parallel connections.
+ * <p>
+ * The chunks of all files are sent by one pool of {@link #PARALLEL_UPLOADS_PROPERTY} threads (4 by default),
+ * so a list of small files is uploaded as fast as one large file. Failed chunks are retried up to three times,
+ * after a growing delay; the server remembers the chunks it has received, so uploading a file again after a
+ * failure only sends the missing ones. A file with rejected chunks is reported as failed. Each file is
+ * assembled on the server once the SHA-256 checksum of the received chunks matches.
+ * <p>
+ * The checksums are sent first: files the server already has from any earlier upload are linked into the
+ * job's working directory from its content store and not uploaded at all.
+ */
+public class ChunkedFileUploader {
+
+    public static final String PARALLEL_UPLOADS_PROPERTY = "seadas.ocssw.parallelUploads";
+
+    static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int DEFAULT_PARALLEL_UPLOADS = 4;
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_DELAY_MILLIS = 500;
+
+    private final WebTarget fileServices;
+    private final String jobId;
+
+    public ChunkedFileUploader(WebTarget target, String jobId) {
+        this.fileServices = target.path("fileServices");
+        this.jobId = jobId;
+    }
+
+    /**
+     * Uploads the files to the job's working directory, keeping their names.
+     *
+     * @param files the files to upload
+     * @param pm    a monitor which is advanced by one for every file uploaded
+     * @return the files which have been uploaded and verified
+     */
+    public List<File> upload(List<File> files, ProgressMonitor pm) {
+        final List<File> uploaded = new ArrayList<File>();
+        if (files.isEmpty()) {
+            return uploaded;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(getParallelUploads(), Math.max(files.size(), getChunkCount(files))));
+        try {
+            // the checksums, file by file in parallel
+            final Map<File, Future<FileUpload>> preparations = new LinkedHashMap<File, Future<FileUpload>>();
+            for (final File file : files) {
+                preparations.put(file, executor.submit(new Callable<FileUpload>() {
+                    @Override
+                    public FileUpload call() throws Exception {
+                        return new FileUpload(file, getSha256(file));
+                    }
+                }));
+            }
+            final List<FileUpload> hashed = new ArrayList<FileUpload>();
+            for (Map.Entry<File, Future<FileUpload>> preparation : preparations.entrySet()) {
+                FileUpload upload = getResult(preparation.getValue());
+                if (upload != null) {
+                    hashed.add(upload);
+                } else {
+                    System.out.println("could not read " + preparation.getKey());
+                }
+            }
+
+            // files the server already has from earlier jobs are linked instead of uploaded
+            final Set<String> linked = linkCachedFiles(hashed);
+            final List<FileUpload> uploads = new ArrayList<FileUpload>();
+            for (FileUpload upload : hashed) {
+                if (linked.contains(upload.file.getName())) {
+                    uploaded.add(upload.file);
+                    pm.worked(1);
+                } else {
+                    uploads.add(upload);
+                }
+            }
+
+            // the chunks already on the server, file by file in parallel
+            final List<Future<Boolean>> statusQueries = new ArrayList<Future<Boolean>>();
+            for (final FileUpload upload : uploads) {
+                statusQueries.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        queryReceivedChunks(upload);
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> statusQuery : statusQueries) {
+                getResult(statusQuery);
+            }
+
+            // the missing chunks of all files at once
+            final Map<FileUpload, List<Future<Boolean>>> chunksByUpload = new LinkedHashMap<FileUpload, List<Future<Boolean>>>();
+            for (final FileUpload upload : uploads) {
+                final List<Future<Boolean>> chunks = new ArrayList<Future<Boolean>>();
+                chunksByUpload.put(upload, chunks);
+                for (int index = 0; index < upload.chunkCount; index++) {
+                    if (upload.receivedChunks.contains(index)) {
+                        continue;
+                    }
+                    final int chunkIndex = index;
+                    chunks.add(executor.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws Exception {
+                            return sendChunk(upload, chunkIndex);
+                        }
+                    }));
+                }
+            }
+
+            for (Map.Entry<FileUpload, List<Future<Boolean>>> entry : chunksByUpload.entrySet()) {
+                final FileUpload upload = entry.getKey();
+                boolean allSent = true;
+                for (Future<Boolean> chunk : entry.getValue()) {
+                    allSent &= Boolean.TRUE.equals(getResult(chunk));
+                }
+                if (pm.isCanceled()) {
+                    break;
+                }
+                if (!allSent) {
+                    // the server still has the chunks it received, uploading again sends the rest
+                    System.out.println("upload of " + upload.file.getName() + " failed: not all chunks were accepted");
+                    pm.worked(1);
+                    continue;
+                }
+                pm.setSubTaskName("Verifying " + upload.file.getName() + " on the remote server ...");
+                if (complete(upload)) {
+                    uploaded.add(upload.file);
+                }
+                pm.worked(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return uploaded;
+    }
+
+    public boolean upload(File file, ProgressMonitor pm) {
+        List<File> files = new ArrayList<File>();
+        files.add(file);
+        return upload(files, pm).size() == 1;
+    }
+
+    /**
+     * @return the names of the files linked from the server's content store into the job's working directory
+     */
+    private Set<String> linkCachedFiles(List<FileUpload> uploads) {
+        final Set<String> linked = new HashSet<String>();
+        if (uploads.isEmpty()) {
+            return linked;
+        }
+        final JsonObjectBuilder checksums = Json.createObjectBuilder();
+        for (FileUpload upload : uploads) {
+            checksums.add(upload.file.getName(), upload.sha256);
+        }
+        try {
+            final Response response = fileServices.path("linkCachedFiles").path(jobId)
+                    .request(MediaType.APPLICATION_JSON_TYPE).post(Entity.entity(checksums.build(), MediaType.APPLICATION_JSON_TYPE));
+            if (response.getStatus() == Response.Status.OK.getStatusCode()) {
+                final JsonArray names = response.readEntity(JsonObject.class).getJsonArray("linked");
+                for (int i = 0; i < names.size(); i++) {
+                    linked.add(names.getString(i));
+                }
+            } else {
+                response.close();
+            }
+        } catch (RuntimeException e) {
+            // an older server without a content store, upload everything
+            System.out.println("could not look up cached files: " + e.getMessage());
+        }
+        return linked;
+    }
+
+    private void queryReceivedChunks(FileUpload upload) {
+        final JsonObject status = fileServices.path("uploadStatus").path(jobId).path(upload.file.getName())
+                .queryParam("chunkSize", CHUNK_SIZE)
+                .queryParam("fileSize", upload.fileSize)
+                .request(MediaType.APPLICATION_JSON_TYPE).get(JsonObject.class);
+        final JsonArray chunks = status.getJsonArray("chunks");
+        for (int i = 0; i < chunks.size(); i++) {
+            upload.receivedChunks.add(chunks.getInt(i));
+        }
+    }
+
+    private boolean sendChunk(FileUpload upload, int index) throws IOException {
+        final long position = (long) index * CHUNK_SIZE;
+        final byte[] chunk = new byte[(int) Math.min(CHUNK_SIZE, upload.fileSize - position)];
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(upload.file, "r");
+        try {
+            randomAccessFile.seek(position);
+            randomAccessFile.readFully(chunk);
+        } finally {
+            randomAccessFile.close();
+        }
+        for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+            if (attempt > 0) {
+                // 0.5, 1 and 2 seconds, to let a dropped connection recover
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS << (attempt - 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            try {
+                Response response = fileServices.path("uploadChunk").path(jobId).path(upload.file.getName()).path(Integer.toString(index))
+                        .queryParam("chunkSize", CHUNK_SIZE)
+                        .queryParam("fileSize", upload.fileSize)
+                        .request().put(Entity.entity(chunk, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+                response.close();
+                if (response.getStatus() == Response.Status.OK.getStatusCode()) {
+                    return true;
+                }
+                System.out.println("chunk " + index + " of " + upload.file.getName() + " was rejected: " + response.getStatus());
+            } catch (RuntimeException e) {
+                // a dropped connection, try again
+                System.out.println("chunk " + index + " of " + upload.file.getName() + " failed: " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private boolean complete(FileUpload upload) {
+        Response response = fileServices.path("completeUpload").path(jobId).path(upload.file.getName())
+                .queryParam("sha256", upload.sha256)
+                .request().post(Entity.text(""));
+        response.close();
+        if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+            System.out.println("upload of " + upload.file.getName() + " failed: " + response.getStatus());
+            return false;
+        }
+        return true;
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        }
+        return null;
+    }
+
+    private static int getChunkCount(List<File> files) {
+        int chunkCount = 0;
+        for (File file : files) {
+            chunkCount += getChunkCount(file.length());
+        }
+        return chunkCount;
+    }
+
+    static int getChunkCount(long fileSize) {
+        // an empty file is sent as one empty chunk
+        return (int) Math.max(1, (fileSize + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    private static int getParallelUploads() {
+        return Math.max(1, Integer.getInteger(PARALLEL_UPLOADS_PROPERTY, DEFAULT_PARALLEL_UPLOADS));
+    }
+
+    static String getSha256(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return hex.toString();
+    }
+
+    private static class FileUpload {
+
+        private final File file;
+        private final String sha256;
+        private final long fileSize;
+        private final int chunkCount;
+        private final Set<Integer> receivedChunks = new HashSet<Integer>();
+
+        private FileUpload(File file, String sha256) {
+            this.file = file;
+            this.sha256 = sha256;
+            this.fileSize = file.length();
+            this.chunkCount = getChunkCount(fileSize);
+        }
+    }
+}
@@ -10,9 +10,6 @@ import gov.nasa.gsfc.seadas.processing.common.SeadasProcess;
 import gov.nasa.gsfc.seadas.processing.core.*;
 import gov.nasa.gsfc.seadas.processing.utilities.SeadasArrayUtils;
 import org.esa.beam.visat.VisatApp;
-import org.glassfish.jersey.media.multipart.FormDataMultiPart;
-import org.glassfish.jersey.media.multipart.MultiPart;
-import org.glassfish.jersey.media.multipart.file.FileDataBodyPart;
 
 import javax.json.*;
 import javax.ws.rs.client.Entity;
@@ -24,7 +21,6 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 import static gov.nasa.gsfc.seadas.OCSSWInfo.SEADAS_CLIENT_ID_PROPERTY;
 
@@ -145,13 +141,7 @@ public class OCSSWRemote extends OCSSW {
                 } finally {
                     pm.done();
                 }
-                final FileDataBodyPart fileDataBodyPart = new FileDataBodyPart("file", new File(fileName));
-                final MultiPart multiPart = new FormDataMultiPart()
-                        //.field("ifileName", ifileName)
-                        .bodyPart(fileDataBodyPart);
-                Response response = target.path("fileServices").path("uploadClientFile").path(jobId).request().post(Entity.entity(multiPart, MediaType.MULTIPART_FORM_DATA_TYPE));
-
-                if (response.getStatus() == Response.ok().build().getStatus()) {
+                if (new ChunkedFileUploader(target, jobId).upload(new File(fileName), ProgressMonitor.NULL)) {
                     ifileUploadSuccess = true;
                 }
                 return null;
@@ -176,13 +166,7 @@ public class OCSSWRemote extends OCSSW {
                     pm.beginTask("Uploading file '" + fileName + "' to the remote server ", 10);
 
                     pm.worked(1);
-                    final FileDataBodyPart fileDataBodyPart = new FileDataBodyPart("file", new File(fileName));
-                    final MultiPart multiPart = new FormDataMultiPart()
-                            //.field("ifileName", ifileName)
-                            .bodyPart(fileDataBodyPart);
-                    Response response = target.path("fileServices").path("uploadClientFile").path(jobId).request().post(Entity.entity(multiPart, MediaType.MULTIPART_FORM_DATA_TYPE));
-
-                    if (response.getStatus() == Response.ok().build().getStatus()) {
+                    if (new ChunkedFileUploader(target, jobId).upload(new File(fileName), pm)) {
                         ifileUploadSuccess = true;
                     }
                     return null;
@@ -255,33 +239,21 @@ public class OCSSWRemote extends OCSSW {
 
         pm.beginTask("Uploading " + fileCount + " files to the remote server ...", fileCount);
 
-        FileDataBodyPart fileDataBodyPart;
-        MultiPart multiPart;
-        Response response;
-
-        boolean fileUploadSuccess = true;
-
-        int numberOfTasksWorked = 1;
-
+        List<File> filesToUpload = new ArrayList<>();
         for (String nextFileName : fileList) {
             if (!fileExistsOnServer(nextFileName)) {
-
-                pm.setSubTaskName("Uploading " + nextFileName + " to the remote server ...");
-
-                fileDataBodyPart = new FileDataBodyPart("file", new File(nextFileName));
-                multiPart = new FormDataMultiPart()
-                        //.field("ifileName", ifileName)
-                        .bodyPart(fileDataBodyPart);
-                response = target.path("fileServices").path("uploadClientFile").path(jobId).request().post(Entity.entity(multiPart, MediaType.MULTIPART_FORM_DATA_TYPE));
-                if (response.getStatus() == Response.ok().build().getStatus()) {
-                    fileUploadSuccess = fileUploadSuccess & true;
-                    sb.append(nextFileName.substring(nextFileName.lastIndexOf(File.separator) + 1) + "\n");
-                } else {
-                    fileUploadSuccess = fileUploadSuccess & false;
-                }
-                pm.worked(numberOfTasksWorked++);
+                filesToUpload.add(new File(nextFileName));
+            } else {
+                pm.worked(1);
             }
         }
+
+        pm.setSubTaskName("Uploading " + filesToUpload.size() + " files to the remote server ...");
+        List<File> uploadedFiles = new ChunkedFileUploader(target, jobId).upload(filesToUpload, pm);
+        for (File uploadedFile : uploadedFiles) {
+            sb.append(uploadedFile.getName() + "\n");
+        }
+        boolean fileUploadSuccess = uploadedFiles.size() == filesToUpload.size();
         String fileNames = sb.toString();
 
 
@@ -490,7 +462,7 @@ public class OCSSWRemote extends OCSSW {
 
                     String processStatus = "-100";
                     while (!serverProcessStarted) {
-                        processStatus = target.path("ocssw").path("processStatus").path(jobId).request().get(String.class);
+                        processStatus = awaitProcessStatus(processStatus);
                         switch (processStatus) {
                             case PROCESS_STATUS_NONEXIST:
                                 serverProcessStarted = false;
@@ -508,11 +480,6 @@ public class OCSSWRemote extends OCSSW {
                                 serverProcessStarted = true;
                                 break;
                         }
-                        try {
-                            TimeUnit.SECONDS.sleep(1);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
                     }
                 } else {
                     setProcessExitValue(1);
@@ -536,7 +503,7 @@ public class OCSSWRemote extends OCSSW {
 
         String processStatus = "-100";
         while (!serverProcessCompleted) {
-            processStatus = target.path("ocssw").path("processStatus").path(jobId).request().get(String.class);
+            processStatus = awaitProcessStatus(processStatus);
             switch (processStatus) {
                 case PROCESS_STATUS_NONEXIST:
                     serverProcessCompleted = false;
@@ -553,11 +520,6 @@ public class OCSSWRemote extends OCSSW {
                     serverProcessCompleted = true;
                     break;
             }
-            try {
-                TimeUnit.SECONDS.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
         }
         return seadasProcess;
     }
@@ -579,7 +541,7 @@ public class OCSSWRemote extends OCSSW {
 
         String processStatus = PROCESS_STATUS_NONEXIST;
         while (!serverProcessCompleted) {
-            processStatus = target.path("ocssw").path("processStatus").path(jobId).request().get(String.class);
+            processStatus = awaitProcessStatus(processStatus);
             switch (processStatus) {
                 case PROCESS_STATUS_NONEXIST:
                     serverProcessCompleted = false;
@@ -598,14 +560,17 @@ public class OCSSWRemote extends OCSSW {
                 default:
                     serverProcessCompleted = false;
             }
-            try {
-                TimeUnit.SECONDS.sleep(2);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
         }
     }
 
+    /**
+     * Waits until the job's status on the server differs from the known one. The server holds the request until
+     * the status changes, or for at most half a minute, in which case the unchanged status is returned.
+     */
+    private String awaitProcessStatus(String knownStatus) {
+        return target.path("ocssw").path("awaitProcessStatus").path(jobId).path(knownStatus).request().get(String.class);
+    }
+
     @Override
     public void updateOCSSWProgramXMLFiles() {
 
@@ -741,7 +706,7 @@ public class OCSSWRemote extends OCSSW {
 
         String processStatus = "-100";
         while (!serverProcessStarted) {
-            processStatus = target.path("ocssw").path("processStatus").path(jobId).request().get(String.class);
+            processStatus = awaitProcessStatus(processStatus);
             switch (processStatus) {
                 case PROCESS_STATUS_NONEXIST:
                     serverProcessStarted = false;
@@ -761,11 +726,6 @@ public class OCSSWRemote extends OCSSW {
                 default:
                     serverProcessStarted = false;
             }
-            try {
-                TimeUnit.SECONDS.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
         }
         return seadasProcess;
     }
@@ -4,10 +4,10 @@ import com.bc.ceres.core.ProgressMonitor;
 import gov.nasa.gsfc.seadas.OCSSWInfo;
 import gov.nasa.gsfc.seadas.ocssw.OCSSWClient;
 
+import javax.json.JsonArray;
+import javax.json.JsonObject;
 import javax.ws.rs.client.WebTarget;
-import java.io.*;
-import java.net.Socket;
-import java.net.UnknownHostException;
+import javax.ws.rs.core.MediaType;
 
 import static gov.nasa.gsfc.seadas.ocssw.OCSSWRemote.PROCESS_STATUS_NONEXIST;
 import static gov.nasa.gsfc.seadas.ocssw.OCSSWRemote.PROCESS_STATUS_STARTED;
@@ -40,20 +40,19 @@ public class RemoteProcessObserver extends ProcessObserver {
 
 
     /**
-     * Starts observing the given process. The method blocks until both {@code stdout} and {@code stderr}
-     * streams are no longer available. If the progress monitor is cancelled, the process will be destroyed.
+     * Starts observing the given process. The method blocks until the server reports that the program has ended.
+     * Output lines and status transitions are pushed by the server's long-poll event service, so this needs
+     * neither a socket per stream nor status polling. If the progress monitor is cancelled, the process will be destroyed.
      */
     @Override
     public final void startAndWait() {
-        final Thread stdoutReaderThread = new RemoteProcessObserver.LineReaderThread(STDOUT);
-        final Thread stderrReaderThread = new RemoteProcessObserver.LineReaderThread(STDERR);
-        stdoutReaderThread.start();
-        stderrReaderThread.start();
-        awaitTermination(stdoutReaderThread, stderrReaderThread);
+        final Thread eventReaderThread = new EventReaderThread();
+        eventReaderThread.start();
+        awaitTermination(eventReaderThread);
     }
 
-    private void awaitTermination(Thread stdoutReaderThread, Thread stderrReaderThread) {
-        while (stdoutReaderThread.isAlive() && stderrReaderThread.isAlive()) {
+    private void awaitTermination(Thread eventReaderThread) {
+        while (eventReaderThread.isAlive()) {
             try {
                 Thread.sleep(100);
             } catch (InterruptedException e) {
@@ -113,67 +112,54 @@ public class RemoteProcessObserver extends ProcessObserver {
         void handleLineOnStderrRead(String line, Process process, ProgressMonitor progressMonitor);
     }
 
-    private class LineReaderThread extends Thread {
-        private final String type;
+    private class EventReaderThread extends Thread {
 
-        public LineReaderThread(String type) {
-            super(processName + "-" + type);
-            this.type = type;
+        public EventReaderThread() {
+            super(processName + "-events");
         }
 
         @Override
         public void run() {
             try {
                 read();
-            } catch (IOException e) {
+            } catch (Exception e) {
                 // cannot be handled
+                e.printStackTrace();
             }
         }
 
-        private void read() throws IOException {
-            final InputStream inputStream = type.equals("stdout") ? readProcessStream(ocsswInfo.getProcessInputStreamPort()) : readProcessStream(ocsswInfo.getProcessErrorStreamPort());
-            final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-            try {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    fireLineRead(line);
-                }
-            } finally {
-                reader.close();
-            }
-            String processStatus = target.path("ocssw").path("processStatus").path(jobId).request().get(String.class);
-            setProcessExitValue(new Integer(processStatus).intValue());
-        }
-
-
-        private InputStream readProcessStream(int portNumber) {
-            String hostName = "127.0.0.1";
-            InputStream inputStream = null;
-            boolean serverProcessStarted = false;
-            try {
-                String processStatus = "-100";
-                while (!serverProcessStarted) {
-                    processStatus = target.path("ocssw").path("processStatus").path(jobId).request().get(String.class);
-                    if ( ! processStatus.equals(PROCESS_STATUS_NONEXIST ) ) {
-                        serverProcessStarted = true;
+        private void read() {
+            long next = 0;
+            while (!serverProcessCompleted) {
+                // the server holds the request until there are new events, or for at most half a minute
+                JsonObject response = target.path("ocssw").path("processEvents").path(jobId)
+                        .queryParam("since", next)
+                        .request(MediaType.APPLICATION_JSON_TYPE).get(JsonObject.class);
+                JsonArray events = response.getJsonArray("events");
+                for (int i = 0; i < events.size(); i++) {
+                    JsonObject event = events.getJsonObject(i);
+                    String type = event.getString("type");
+                    String text = event.getString("text");
+                    if (type.equals(STDOUT) || type.equals(STDERR)) {
+                        fireLineRead(type, text);
+                    } else if (!text.equals(PROCESS_STATUS_NONEXIST) && !text.equals(PROCESS_STATUS_STARTED)) {
+                        setProcessExitValue(new Integer(text).intValue());
+                        serverProcessCompleted = true;
                     }
                 }
-                Socket echoSocket = new Socket(hostName, portNumber);
-                inputStream = echoSocket.getInputStream();
-            } catch (UnknownHostException e) {
-                System.err.println("Unknown host " + hostName);
-                e.printStackTrace();
-            } catch (IOException e) {
-                System.err.println("Couldn't get I/O for the connection to " +
-                        hostName + " at port number " + portNumber);
-                e.printStackTrace();
+                String status = response.getString("status");
+                if (!serverProcessCompleted && !status.equals(PROCESS_STATUS_NONEXIST) && !status.equals(PROCESS_STATUS_STARTED)) {
+                    // the status event is gone, e.g. the server has discarded the job's event log
+                    setProcessExitValue(new Integer(status).intValue());
+                    serverProcessCompleted = true;
+                }
+                next = response.getJsonNumber("next").longValue();
             }
-            return inputStream;
         }
 
-        protected void fireLineRead(String line) {
+        protected void fireLineRead(String type, String line) {
             for (ProcessObserver.Handler handler : handlers) {
-                if (type.equals("stdout")) {
+                if (type.equals(STDOUT)) {
                     handler.handleLineOnStdoutRead(line, process, progressMonitor);
                 } else {
                     handler.handleLineOnStderrRead(line, process, progressMonitor);
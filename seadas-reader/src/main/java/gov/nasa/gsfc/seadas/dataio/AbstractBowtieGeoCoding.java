@@ -21,6 +21,7 @@ import org.esa.beam.framework.dataop.maptransf.Datum;
 import java.awt.*;
 import java.awt.geom.Line2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -39,9 +40,16 @@ public abstract class AbstractBowtieGeoCoding extends AbstractGeoCoding {
     protected List<GeoCoding> _gcList;
     protected boolean _cross180;
     protected List<PolyLine> _centerLineList;
-    private int _lastCenterLineIndex;           // index found on the previous search
+    // index found on the previous search, kept per thread so that concurrent callers do not race on it
+    private final ThreadLocal<SearchCursor> _searchCursor = new ThreadLocal<SearchCursor>() {
+        @Override
+        protected SearchCursor initialValue() {
+            return new SearchCursor();
+        }
+    };
     private int _smallestValidIndex;
     private int _biggestValidIndex;
+    private StripeIndex _stripeIndex;
     private ProductNode _gridOwner;
 
     /**
@@ -49,7 +57,6 @@ public abstract class AbstractBowtieGeoCoding extends AbstractGeoCoding {
      *
      */
     public AbstractBowtieGeoCoding() {
-        _lastCenterLineIndex = 0;
     }
 
     /**
@@ -97,13 +104,30 @@ public abstract class AbstractBowtieGeoCoding extends AbstractGeoCoding {
      * @return the pixel co-ordinates as x/y
      */
     public PixelPos getPixelPos(GeoPos geoPos, PixelPos pixelPos) {
+        return getPixelPos(geoPos, pixelPos, _searchCursor.get());
+    }
+
+    /**
+     * Returns the pixel co-ordinates as x/y for a given geographical position given as lat/lon, using
+     * the given cursor to remember where the previous search of the caller ended.
+     * <p/>
+     * <p>Callers that process spatially coherent positions, such as the pixels of one tile, can keep
+     * their own cursor. {@link #getPixelPos(GeoPos, PixelPos)} uses a cursor per thread.
+     *
+     * @param geoPos   the geographical position as lat/lon in the coordinate system determined by {@link #getDatum()}
+     * @param pixelPos an instance of <code>Point</code> to be used as return value. If this parameter is
+     *                 <code>null</code>, the method creates a new instance which it then returns.
+     * @param cursor   the search cursor of the caller, must not be shared between threads
+     * @return the pixel co-ordinates as x/y
+     */
+    public PixelPos getPixelPos(GeoPos geoPos, PixelPos pixelPos, SearchCursor cursor) {
         if (pixelPos == null) {
             pixelPos = new PixelPos();
         }
         pixelPos.setInvalid();
 
-        final int index = getGeoCodingIndexfor(geoPos);
-        _lastCenterLineIndex = index;
+        final int index = getGeoCodingIndexfor(geoPos, cursor.centerLineIndex);
+        cursor.centerLineIndex = index;
         final GeoCoding gc = _gcList.get(index);
         if (gc != null) {
             gc.getPixelPos(geoPos, pixelPos);
@@ -139,6 +163,70 @@ public abstract class AbstractBowtieGeoCoding extends AbstractGeoCoding {
         }
     }
 
+    /**
+     * Computes the latitudes and longitudes of the centres of all pixels of a rectangular region.
+     * The stripe geo-coding is resolved once per scan instead of once per pixel, and no objects are
+     * allocated per pixel. Pixels without a valid position are set to <code>NaN</code>.
+     *
+     * @param region the pixel region
+     * @param lats   the array to fill with latitudes, row by row, at least <code>region.width * region.height</code> long
+     * @param lons   the array to fill with longitudes, row by row, at least <code>region.width * region.height</code> long
+     */
+    public void getGeoPos(Rectangle region, float[] lats, float[] lons) {
+        final int scanlineHeight = getScanlineHeight();
+        int y = region.y;
+        while (y < region.y + region.height) {
+            final int index = computeIndex(y);
+            // rows of the region which are handled by the same stripe
+            int y1 = y + 1;
+            while (y1 < region.y + region.height && computeIndex(y1) == index) {
+                y1++;
+            }
+            final int offset = (y - region.y) * region.width;
+            final int length = (y1 - y) * region.width;
+            final GeoCoding gc = _gcList.get(index);
+            if (gc != null) {
+                final Rectangle stripeRegion = new Rectangle(region.x, y - scanlineHeight * index + getScanlineOffset(),
+                                                             region.width, y1 - y);
+                getStripeGeoPos(gc, stripeRegion, lats, lons, offset);
+            } else {
+                Arrays.fill(lats, offset, offset + length, Float.NaN);
+                Arrays.fill(lons, offset, offset + length, Float.NaN);
+            }
+            y = y1;
+        }
+    }
+
+    /**
+     * Computes the pixel centre positions of a region of one stripe geo-coding. Subclasses may override this
+     * to interpolate whole rows at once.
+     *
+     * @param gc           the stripe geo-coding
+     * @param stripeRegion the region in the pixel coordinates of the stripe
+     * @param lats         the array to fill with latitudes
+     * @param lons         the array to fill with longitudes
+     * @param offset       the index of the region's first pixel within <code>lats</code> and <code>lons</code>
+     */
+    protected void getStripeGeoPos(GeoCoding gc, Rectangle stripeRegion, float[] lats, float[] lons, int offset) {
+        final PixelPos pixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        int i = offset;
+        for (int y = stripeRegion.y; y < stripeRegion.y + stripeRegion.height; y++) {
+            for (int x = stripeRegion.x; x < stripeRegion.x + stripeRegion.width; x++) {
+                pixelPos.setLocation(x + 0.5f, y + 0.5f);
+                gc.getGeoPos(pixelPos, geoPos);
+                if (geoPos.isValid()) {
+                    lats[i] = geoPos.lat;
+                    lons[i] = geoPos.lon;
+                } else {
+                    lats[i] = Float.NaN;
+                    lons[i] = Float.NaN;
+                }
+                i++;
+            }
+        }
+    }
+
     /**
      * Gets the datum, the reference point or surface against which {@link org.esa.beam.framework.datamodel.GeoPos} measurements are made.
      *
@@ -187,6 +275,7 @@ public abstract class AbstractBowtieGeoCoding extends AbstractGeoCoding {
                 break;
             }
         }
+        _stripeIndex = StripeIndex.create(_centerLineList);
     }
 
     protected static PolyLine createCenterPolyLine(GeoCoding geoCoding, final int sceneWidth,
@@ -214,7 +303,11 @@ public abstract class AbstractBowtieGeoCoding extends AbstractGeoCoding {
     }
 
     private int computeIndex(PixelPos pixelPos) {
-        final int y = (int) pixelPos.getY() + getScanlineOffset();
+        return computeIndex((int) pixelPos.getY());
+    }
+
+    private int computeIndex(int pixelY) {
+        final int y = pixelY + getScanlineOffset();
         final int index = y / getScanlineHeight();
         if (index < _smallestValidIndex) {
             return _smallestValidIndex;
@@ -225,8 +318,29 @@ public abstract class AbstractBowtieGeoCoding extends AbstractGeoCoding {
         }
     }
 
-    private int getGeoCodingIndexfor(final GeoPos geoPos) {
-        int index = _lastCenterLineIndex;
+    private int getGeoCodingIndexfor(final GeoPos geoPos, final int lastIndex) {
+        final int[] candidates = _stripeIndex != null ? _stripeIndex.getCandidates(geoPos.lon, geoPos.lat) : null;
+        if (candidates != null) {
+            int bestIndex = candidates[0];
+            double bestDistance = Double.MAX_VALUE;
+            for (final int candidate : candidates) {
+                final double distance = _centerLineList.get(candidate).getDistance(geoPos.lon, geoPos.lat);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestIndex = candidate;
+                }
+            }
+            return bestIndex;
+        }
+        return searchGeoCodingIndexfor(geoPos, lastIndex);
+    }
+
+    /**
+     * Walks the center lines outward from the stripe found on the previous search. Used for positions
+     * which are not covered by the stripe index, e.g. outside of the swath.
+     */
+    private int searchGeoCodingIndexfor(final GeoPos geoPos, final int lastIndex) {
+        int index = lastIndex;
         index = getNextCenterLineIndex(index, 1);
         final PolyLine centerLine1 = _centerLineList.get(index);
         double v = centerLine1.getDistance(geoPos.lon, geoPos.lat);
@@ -280,12 +394,24 @@ public abstract class AbstractBowtieGeoCoding extends AbstractGeoCoding {
         return (region.y + region.height) / scanlineHeight * scanlineHeight + scanlineHeight;
     }
 
+    /**
+     * Remembers the stripe found by the previous pixel position search of one caller.
+     */
+    public static final class SearchCursor {
+
+        private int centerLineIndex;
+    }
+
     protected static class PolyLine {
 
         private float _x1;
         private float _y1;
         private boolean _started;
         private ArrayList<Line2D.Float> _lines;
+        private float _minX = Float.MAX_VALUE;
+        private float _minY = Float.MAX_VALUE;
+        private float _maxX = -Float.MAX_VALUE;
+        private float _maxY = -Float.MAX_VALUE;
 
         public PolyLine() {
             _started = false;
@@ -308,6 +434,24 @@ public abstract class AbstractBowtieGeoCoding extends AbstractGeoCoding {
         private void setXY1(final float x, final float y) {
             _x1 = x;
             _y1 = y;
+            if (!Float.isNaN(x) && !Float.isNaN(y)) {
+                _minX = Math.min(_minX, x);
+                _minY = Math.min(_minY, y);
+                _maxX = Math.max(_maxX, x);
+                _maxY = Math.max(_maxY, y);
+            }
+        }
+
+        int getNumVertices() {
+            return _lines == null || _lines.isEmpty() ? 0 : _lines.size() + 1;
+        }
+
+        float getVertexX(int i) {
+            return i == 0 ? (float) _lines.get(0).getX1() : (float) _lines.get(i - 1).getX2();
+        }
+
+        float getVertexY(int i) {
+            return i == 0 ? (float) _lines.get(0).getY1() : (float) _lines.get(i - 1).getY2();
         }
 
         public double getDistance(final float x, final float y) {
@@ -328,6 +472,118 @@ public abstract class AbstractBowtieGeoCoding extends AbstractGeoCoding {
         }
     }
 
+    /**
+     * A uniform lat/lon grid over the bounding boxes of the stripe center lines. Every cell lists the
+     * stripes whose center line comes close enough to the cell that it may be the nearest one for
+     * a position inside the cell, so the nearest center line is found among a handful of candidates
+     * instead of by walking the stripes of the scene.
+     */
+    static final class StripeIndex {
+
+        private static final double CELL_SIZE = 1.0;
+
+        private final double minLon;
+        private final double minLat;
+        private final int numCols;
+        private final int numRows;
+        private final int[][] cells;
+
+        private StripeIndex(double minLon, double minLat, int numCols, int numRows, int[][] cells) {
+            this.minLon = minLon;
+            this.minLat = minLat;
+            this.numCols = numCols;
+            this.numRows = numRows;
+            this.cells = cells;
+        }
+
+        /**
+         * @return the index, or <code>null</code> if there are no valid center lines
+         */
+        static StripeIndex create(List<PolyLine> centerLines) {
+            // a position inside the swath is never further from its nearest center line than
+            // the spacing between neighbouring center lines, so use that as search margin
+            double margin = 0.0;
+            PolyLine previous = null;
+            double minLon = Double.MAX_VALUE;
+            double minLat = Double.MAX_VALUE;
+            double maxLon = -Double.MAX_VALUE;
+            double maxLat = -Double.MAX_VALUE;
+            for (PolyLine line : centerLines) {
+                if (line == null || line.getNumVertices() == 0 || line._minX > line._maxX) {
+                    previous = null;
+                    continue;
+                }
+                minLon = Math.min(minLon, line._minX);
+                minLat = Math.min(minLat, line._minY);
+                maxLon = Math.max(maxLon, line._maxX);
+                maxLat = Math.max(maxLat, line._maxY);
+                if (previous != null && previous.getNumVertices() == line.getNumVertices()) {
+                    for (int i = 0; i < line.getNumVertices(); i++) {
+                        final double dx = line.getVertexX(i) - previous.getVertexX(i);
+                        final double dy = line.getVertexY(i) - previous.getVertexY(i);
+                        if (Math.abs(dx) < 180.0 && !Double.isNaN(dy)) {
+                            margin = Math.max(margin, Math.sqrt(dx * dx + dy * dy));
+                        }
+                    }
+                }
+                previous = line;
+            }
+            if (minLon > maxLon) {
+                return null;
+            }
+            minLon -= margin;
+            minLat -= margin;
+            final int numCols = (int) Math.floor((maxLon + margin - minLon) / CELL_SIZE) + 1;
+            final int numRows = (int) Math.floor((maxLat + margin - minLat) / CELL_SIZE) + 1;
+
+            // first pass counts the stripes per cell, second pass fills them in
+            final int[] cellSizes = new int[numCols * numRows];
+            final int[][] cells = new int[numCols * numRows][];
+            for (int pass = 0; pass < 2; pass++) {
+                if (pass == 1) {
+                    for (int c = 0; c < cells.length; c++) {
+                        cells[c] = new int[cellSizes[c]];
+                        cellSizes[c] = 0;
+                    }
+                }
+                for (int stripe = 0; stripe < centerLines.size(); stripe++) {
+                    final PolyLine line = centerLines.get(stripe);
+                    if (line == null || line.getNumVertices() == 0 || line._minX > line._maxX) {
+                        continue;
+                    }
+                    final int col0 = (int) ((line._minX - margin - minLon) / CELL_SIZE);
+                    final int col1 = (int) ((line._maxX + margin - minLon) / CELL_SIZE);
+                    final int row0 = (int) ((line._minY - margin - minLat) / CELL_SIZE);
+                    final int row1 = (int) ((line._maxY + margin - minLat) / CELL_SIZE);
+                    for (int row = Math.max(row0, 0); row <= Math.min(row1, numRows - 1); row++) {
+                        for (int col = Math.max(col0, 0); col <= Math.min(col1, numCols - 1); col++) {
+                            final int c = row * numCols + col;
+                            if (pass == 1) {
+                                cells[c][cellSizes[c]] = stripe;
+                            }
+                            cellSizes[c]++;
+                        }
+                    }
+                }
+            }
+            return new StripeIndex(minLon, minLat, numCols, numRows, cells);
+        }
+
+        /**
+         * @return the stripes which may contain the nearest center line, or <code>null</code> if the
+         *         position is not covered by any stripe
+         */
+        int[] getCandidates(float lon, float lat) {
+            final double col = Math.floor((lon - minLon) / CELL_SIZE);
+            final double row = Math.floor((lat - minLat) / CELL_SIZE);
+            if (!(col >= 0 && col < numCols && row >= 0 && row < numRows)) {
+                return null;
+            }
+            final int[] candidates = cells[(int) row * numCols + (int) col];
+            return candidates.length > 0 ? candidates : null;
+        }
+    }
+
     protected void setGridOwner(ProductNode gridOwner) {
         _gridOwner = gridOwner;
     }
@@ -38,7 +38,7 @@ public class BowtiePixelScanGeoCoding implements GeoCoding {
     private float[] lats;
     private float[] lons;
 
-    private Boolean crossingMeridianAt180;
+    private volatile Boolean crossingMeridianAt180;
 
 
     private static class Result {
@@ -85,7 +85,8 @@ public class BowtiePixelScanGeoCoding implements GeoCoding {
     public boolean isCrossingMeridianAt180() {
 
         if (crossingMeridianAt180 == null) {
-            crossingMeridianAt180 = false;
+            // computed into a local first, so that concurrent callers never see a partial result
+            boolean crossing = false;
 
             GeoPos geoPos1 = new GeoPos();
             GeoPos geoPos2 = new GeoPos();
@@ -108,10 +109,11 @@ public class BowtiePixelScanGeoCoding implements GeoCoding {
                     continue;
 
                 if(geoPos1.lon > geoPos2.lon) {
-                    crossingMeridianAt180 = true;
+                    crossing = true;
                     break;
                 }
             }
+            crossingMeridianAt180 = crossing;
         }
         return crossingMeridianAt180;
     }
@@ -308,6 +308,30 @@ public class BowtieTiePointGeoCoding extends AbstractBowtieGeoCoding {
         }
     }
 
+    /**
+     * Interpolates the stripe's latitude and longitude tie-point grids row by row.
+     */
+    @Override
+    protected void getStripeGeoPos(GeoCoding gc, Rectangle stripeRegion, float[] lats, float[] lons, int offset) {
+        if (!(gc instanceof TiePointGeoCoding)) {
+            super.getStripeGeoPos(gc, stripeRegion, lats, lons, offset);
+            return;
+        }
+        final TiePointGeoCoding tiePointGeoCoding = (TiePointGeoCoding) gc;
+        final TiePointGrid latGrid = tiePointGeoCoding.getLatGrid();
+        final TiePointGrid lonGrid = tiePointGeoCoding.getLonGrid();
+        final int width = stripeRegion.width;
+        final float[] row = new float[width];
+        int i = offset;
+        for (int y = stripeRegion.y; y < stripeRegion.y + stripeRegion.height; y++) {
+            latGrid.getPixels(stripeRegion.x, y, width, 1, row, ProgressMonitor.NULL);
+            System.arraycopy(row, 0, lats, i, width);
+            lonGrid.getPixels(stripeRegion.x, y, width, 1, row, ProgressMonitor.NULL);
+            System.arraycopy(row, 0, lons, i, width);
+            i += width;
+        }
+    }
+
     private GeoCoding createStripeGeocode(float[] lats, float[] lons, int y, int stripeW, int stripeH,
                                           float offsetX, float offsetY, float subSamplingX, float subSamplingY) throws IOException {
         final Range range = Range.computeRangeFloat(lats, IndexValidator.TRUE, null, ProgressMonitor.NULL);
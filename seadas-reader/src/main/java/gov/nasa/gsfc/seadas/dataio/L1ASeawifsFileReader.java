@@ -16,12 +16,15 @@
 
 package gov.nasa.gsfc.seadas.dataio;
 
+import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.framework.dataio.ProductIOException;
 import org.esa.beam.framework.datamodel.*;
 import ucar.ma2.InvalidRangeException;
 import ucar.nc2.Variable;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +32,20 @@ public class L1ASeawifsFileReader extends SeadasFileReader {
 
     static final int[] SEAWIFS_WVL = new int[]{412, 443, 490, 510, 555, 670, 765, 865};
 
+    // number of scan lines computed together by the geonav, and how many such blocks are kept
+    private static final int GEONAV_BLOCK_LINES = 64;
+    private static final int GEONAV_CACHE_BLOCKS = 16;
+
+    private SeaWiFSL1AGeonav geonavCalculator;
+    private Band latBand;
+    private Band lonBand;
+    private final Map<Integer, float[][]> geonavBlocks = new LinkedHashMap<Integer, float[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, float[][]> eldest) {
+            return size() > GEONAV_CACHE_BLOCKS;
+        }
+    };
+
     L1ASeawifsFileReader(SeadasProductReader productReader) {
         super(productReader);
     }
@@ -63,11 +80,10 @@ public class L1ASeawifsFileReader extends SeadasFileReader {
 
         variableMap = addSeawifsBands(product, ncFile.getVariables());
 
-        SeaWiFSL1AGeonav geonavCalculator = new SeaWiFSL1AGeonav(ncFile);
-        float[] latitudes = flatten2DimArray(geonavCalculator.getLatitudes());
-        float[] longitudes = flatten2DimArray(geonavCalculator.getLongitudes());
-        Band latBand = new Band("latitude", ProductData.TYPE_FLOAT32, sceneWidth, sceneHeight);
-        Band lonBand = new Band("longitude", ProductData.TYPE_FLOAT32, sceneWidth, sceneHeight);
+        // latitude and longitude are computed on demand, for the scan lines of the requested tiles
+        geonavCalculator = new SeaWiFSL1AGeonav(ncFile);
+        latBand = new Band("latitude", ProductData.TYPE_FLOAT32, sceneWidth, sceneHeight);
+        lonBand = new Band("longitude", ProductData.TYPE_FLOAT32, sceneWidth, sceneHeight);
         latBand.setNoDataValue(999.0);
         latBand.setNoDataValueUsed(true);
         lonBand.setNoDataValue(999.0);
@@ -75,10 +91,6 @@ public class L1ASeawifsFileReader extends SeadasFileReader {
         product.addBand(latBand);
         product.addBand(lonBand);
 
-        ProductData lats = ProductData.createInstance(latitudes);
-        latBand.setData(lats);
-        ProductData lons = ProductData.createInstance(longitudes);
-        lonBand.setData(lons);
         product.setGeoCoding(GeoCodingFactory.createPixelGeoCoding(latBand, lonBand, null, 10));
         
         addFlagsAndMasks(product);
@@ -87,6 +99,50 @@ public class L1ASeawifsFileReader extends SeadasFileReader {
 
     }
 
+    @Override
+    public void readBandData(Band destBand, int sourceOffsetX, int sourceOffsetY, int sourceWidth,
+                             int sourceHeight, int sourceStepX, int sourceStepY, ProductData destBuffer,
+                             ProgressMonitor pm) throws IOException, InvalidRangeException {
+        if (destBand != latBand && destBand != lonBand) {
+            super.readBandData(destBand, sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight,
+                               sourceStepX, sourceStepY, destBuffer, pm);
+            return;
+        }
+        // the geonav output is in file order, unlike the flipped L1A counts
+        final int geonavIndex = destBand == latBand ? 0 : 1;
+        final int pixPerScanLine = geonavCalculator.getNumberPixels();
+        final float[] buffer = (float[]) destBuffer.getElems();
+        pm.beginTask("Computing band '" + destBand.getName() + "'...", sourceHeight);
+        try {
+            int i = 0;
+            for (int y = sourceOffsetY; y < sourceOffsetY + sourceHeight; y += sourceStepY) {
+                final float[] block = getGeonavBlock(y / GEONAV_BLOCK_LINES)[geonavIndex];
+                final int lineOffset = (y % GEONAV_BLOCK_LINES) * pixPerScanLine;
+                for (int x = sourceOffsetX; x < sourceOffsetX + sourceWidth; x += sourceStepX) {
+                    buffer[i++] = block[lineOffset + x];
+                }
+                pm.worked(1);
+            }
+        } finally {
+            pm.done();
+        }
+    }
+
+    private float[][] getGeonavBlock(int blockIndex) {
+        synchronized (geonavBlocks) {
+            float[][] block = geonavBlocks.get(blockIndex);
+            if (block == null) {
+                final int firstLine = blockIndex * GEONAV_BLOCK_LINES;
+                final int numLines = Math.min(GEONAV_BLOCK_LINES, geonavCalculator.getNumberScanLines() - firstLine);
+                final int numValues = numLines * geonavCalculator.getNumberPixels();
+                block = new float[][]{new float[numValues], new float[numValues]};
+                geonavCalculator.computeScanLines(firstLine, numLines, block[0], block[1], null, null, null, null);
+                geonavBlocks.put(blockIndex, block);
+            }
+            return block;
+        }
+    }
+
     private Map<Band, Variable> addSeawifsBands(Product product, List<Variable> variables) {
         final int sceneRasterWidth = product.getSceneRasterWidth();
         final int sceneRasterHeight = product.getSceneRasterHeight();
@@ -0,0 +1,107 @@
+package gov.nasa.gsfc.seadas.dataio;
+
+import org.esa.beam.dataio.merisl3.ISINGrid;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed mapping between the stored bins of a level-3 bin file and the columns of the
+ * equirectangular scene raster.
+ * <p>
+ * For every stored bin {@code k} the raster columns covered by the bin are {@code [columnStart[k], columnEnd[k])}.
+ * Bins that do not cover any column get an empty range. Within a grid row both arrays are non-decreasing,
+ * so a rendered row segment is filled with a single pass over the row's bins, without any per-pixel
+ * grid math or bin search.
+ */
+final class L3BinColumnMap {
+
+    private final int[] columnStart;
+    private final int[] columnEnd;
+
+    L3BinColumnMap(int numBins) {
+        columnStart = new int[numBins];
+        columnEnd = new int[numBins];
+        Arrays.fill(columnStart, -1);
+    }
+
+    /**
+     * Computes the raster columns of the bins {@code bins[lineOffset .. lineOffset + lineLength)},
+     * which must all belong to the grid row {@code rowIndex} and appear in ascending order.
+     */
+    void addRow(ISINGrid grid, int rowIndex, int[] bins, int lineOffset, int lineLength, int sceneWidth) {
+        final int lineEnd = lineOffset + lineLength;
+        int k = lineOffset;
+        for (int x = 0; x < sceneWidth && k < lineEnd; x++) {
+            final double lon = x * 360.0 / sceneWidth;
+            final int binIndex = grid.getBinIndex(rowIndex, lon);
+            while (k < lineEnd && bins[k] < binIndex) {
+                if (columnStart[k] < 0) {
+                    columnStart[k] = x;
+                    columnEnd[k] = x;
+                }
+                k++;
+            }
+            if (k < lineEnd && bins[k] == binIndex) {
+                if (columnStart[k] < 0) {
+                    columnStart[k] = x;
+                }
+                columnEnd[k] = x + 1;
+            }
+        }
+        for (; k < lineEnd; k++) {
+            if (columnStart[k] < 0) {
+                columnStart[k] = sceneWidth;
+                columnEnd[k] = sceneWidth;
+            }
+        }
+    }
+
+    /**
+     * Copies the bin values of one grid row into a row of the destination buffer.
+     *
+     * @param bindata      the decoded bins of the row, as a primitive array
+     * @param lineOffset   index of the row's first bin within all stored bins
+     * @param lineLength   number of stored bins in the row
+     * @param buffer       the destination primitive array, of the same type as {@code bindata}
+     * @param bufferOffset index within {@code buffer} of raster column {@code x0}
+     * @param x0           first raster column to fill
+     * @param x1           raster column following the last one to fill
+     */
+    void fillRow(Object bindata, int lineOffset, int lineLength, Object buffer, int bufferOffset, int x0, int x1) {
+        final int lineEnd = lineOffset + lineLength;
+        // binary search for the first bin ending right of x0
+        int lo = lineOffset;
+        int hi = lineEnd;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (columnEnd[mid] <= x0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < lineEnd && columnStart[k] < x1; k++) {
+            final int from = Math.max(columnStart[k], x0);
+            final int to = Math.min(columnEnd[k], x1);
+            if (from < to) {
+                fill(bindata, k - lineOffset, buffer, bufferOffset + from - x0, bufferOffset + to - x0);
+            }
+        }
+    }
+
+    private static void fill(Object bindata, int lineIndex, Object buffer, int from, int to) {
+        if (buffer instanceof float[]) {
+            Arrays.fill((float[]) buffer, from, to, ((float[]) bindata)[lineIndex]);
+        } else if (buffer instanceof short[]) {
+            Arrays.fill((short[]) buffer, from, to, ((short[]) bindata)[lineIndex]);
+        } else if (buffer instanceof byte[]) {
+            Arrays.fill((byte[]) buffer, from, to, ((byte[]) bindata)[lineIndex]);
+        } else if (buffer instanceof int[]) {
+            Arrays.fill((int[]) buffer, from, to, ((int[]) bindata)[lineIndex]);
+        } else {
+            for (int i = from; i < to; i++) {
+                System.arraycopy(bindata, lineIndex, buffer, i, 1);
+            }
+        }
+    }
+}
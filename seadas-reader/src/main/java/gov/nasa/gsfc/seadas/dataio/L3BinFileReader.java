@@ -8,6 +8,7 @@ import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
 import ucar.ma2.Array;
+import ucar.ma2.ArrayStructure;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.nc2.Structure;
@@ -17,6 +18,7 @@ import java.awt.*;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -26,9 +28,14 @@ public class L3BinFileReader extends SeadasFileReader {
     private ISINGrid grid;
     private RowInfo[] rowInfo;
     private int[] bins;
+    private L3BinColumnMap columnMap;
     private int sceneWidth;
     private int sceneHeight;
 
+    // maximum number of decoded bin rows kept per band
+    private static final int BIN_ROW_CACHE_SIZE = 256;
+    private final Map<Band, BinRowCache> rowCaches = new HashMap<Band, BinRowCache>();
+
     L3BinFileReader(SeadasProductReader productReader) {
         super(productReader);
     }
@@ -103,18 +110,10 @@ public class L3BinFileReader extends SeadasFileReader {
         }
 
         final int height = sceneHeight;
-        final int width = sceneWidth;
-        final ISINGrid grid = this.grid;
 
 
         // loop over lines
         try {
-            int[] lineOffsets = new int[1];
-            int[] lineLengths = new int[1];
-            int[] stride = new int[1];
-            stride[0] = 1;
-
-
 //            for (int y = sourceOffsetY; y < sourceOffsetY + sourceHeight; y++) {
             for (int y = sourceOffsetY; y < sourceOffsetY + sourceHeight; y+=sourceStepY) {
                     if (pm.isCanceled()) {
@@ -127,36 +126,12 @@ public class L3BinFileReader extends SeadasFileReader {
                     final int lineOffset = rowInfo.offset;
                     final int lineLength = rowInfo.length;
 
+                    final Object bindata = getBinRow(destBand, variable, rowIndex, rowInfo);
 
-                    lineOffsets[0] = lineOffset;
-                    lineLengths[0] = lineLength;
-                    final Object bindata;
+                    final int rasterOffset = sourceWidth * (y - sourceOffsetY);
+                    columnMap.fillRow(bindata, lineOffset, lineLength, buffer, rasterOffset,
+                            sourceOffsetX, sourceOffsetX + sourceWidth);
 
-                    synchronized (ncFile) {
-                        bindata = variable.read().section(lineOffsets, lineLengths, stride).copyTo1DJavaArray();
-                    }
-                    int lineIndex0 = 0;
-                    for (int x = sourceOffsetX; x < sourceOffsetX + sourceWidth; x++) {
-                        final double lon = x * 360.0 / width;
-                        final int binIndex = grid.getBinIndex(rowIndex, lon);
-                        int lineIndex = -1;
-                        for (int i = lineIndex0; i < lineLength; i++) {
-                            int binidx = bins[lineOffset + i];
-                            if (binidx >= binIndex) {
-                                if (binidx == binIndex) {
-                                    lineIndex = i;
-                                }
-                                lineIndex0 = i;
-                                break;
-                            }
-                        }
-
-                        if (lineIndex >= 0) {
-                            final int rasterIndex = sourceWidth * (y - sourceOffsetY) + (x - sourceOffsetX);
-
-                            System.arraycopy(bindata, lineIndex, buffer, rasterIndex, 1);
-                        }
-                    }
                     pm.worked(1);
                 }
             }
@@ -166,6 +141,41 @@ public class L3BinFileReader extends SeadasFileReader {
         }
     }
 
+    /**
+     * Returns the decoded bins of one grid row for the given band, either from the band's row cache
+     * or by reading only the row's offset/length range of the variable from the file.
+     */
+    private Object getBinRow(Band band, Variable variable, int rowIndex, RowInfo rowInfo)
+            throws IOException, InvalidRangeException {
+        BinRowCache rowCache = rowCaches.get(band);
+        if (rowCache == null) {
+            rowCache = new BinRowCache(BIN_ROW_CACHE_SIZE);
+            rowCaches.put(band, rowCache);
+        }
+        Object bindata = rowCache.get(rowIndex);
+        if (bindata == null) {
+            bindata = readBinRow(variable, rowInfo.offset, rowInfo.length);
+            rowCache.put(rowIndex, bindata);
+        }
+        return bindata;
+    }
+
+    private Object readBinRow(Variable variable, int lineOffset, int lineLength)
+            throws IOException, InvalidRangeException {
+        final int[] origin = new int[]{lineOffset};
+        final int[] shape = new int[]{lineLength};
+        final Structure parent = variable.getParentStructure();
+        synchronized (ncFile) {
+            if (parent != null) {
+                // members of the BinList/product structures cannot be sectioned directly,
+                // so read the row range of the (single member) structure and extract it
+                final ArrayStructure rowData = (ArrayStructure) parent.read(origin, shape);
+                return rowData.extractMemberArray(rowData.findMember(variable.getShortName())).copyTo1DJavaArray();
+            }
+            return variable.read(origin, shape).copyTo1DJavaArray();
+        }
+    }
+
     // Don't do this...it hurts.  Too much of a memory hog...
     private void addBandsBinMap (Product product)throws IOException, InvalidRangeException {
         String[] bandList = product.getBandNames();
@@ -307,6 +317,7 @@ public class L3BinFileReader extends SeadasFileReader {
         if (bins == null) {
             bins = idxValues;//(int[]) idxVariable.read().copyTo1DJavaArray();
         }
+        columnMap = new L3BinColumnMap(bins.length);
         final Point gridPoint = new Point();
         int lastBinIndex = -1;
         int lastRowIndex = -1;
@@ -327,6 +338,7 @@ public class L3BinFileReader extends SeadasFileReader {
             if (rowIndex != lastRowIndex) {
                 if (lineLength > 0) {
                     binLines[lastRowIndex] = new RowInfo(lineOffset, lineLength);
+                    columnMap.addRow(grid, lastRowIndex, bins, lineOffset, lineLength, sceneWidth);
                 }
                 lineOffset = i;
                 lineLength = 0;
@@ -338,6 +350,7 @@ public class L3BinFileReader extends SeadasFileReader {
 
         if (lineLength > 0) {
             binLines[lastRowIndex] = new RowInfo(lineOffset, lineLength);
+            columnMap.addRow(grid, lastRowIndex, bins, lineOffset, lineLength, sceneWidth);
         }
 
         return binLines;
@@ -356,6 +369,24 @@ public class L3BinFileReader extends SeadasFileReader {
         }
     }
 
+    /**
+     * LRU cache of decoded bin rows, keyed by grid row index.
+     */
+    private static final class BinRowCache extends LinkedHashMap<Integer, Object> {
+
+        private final int maxRows;
+
+        BinRowCache(int maxRows) {
+            super(16, 0.75f, true);
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object> eldest) {
+            return size() > maxRows;
+        }
+    }
+
     public Map<Band, Variable> addBands(Product product, Variable idxVariable, List<Variable> l3ProdVars) {
 
         final Structure binListStruc = (Structure) idxVariable;
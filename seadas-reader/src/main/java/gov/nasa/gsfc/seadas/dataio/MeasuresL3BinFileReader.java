@@ -28,6 +28,7 @@ public class MeasuresL3BinFileReader extends SeadasFileReader {
     private ISINGrid grid;
     private RowInfo[] rowInfo;
     private int[] bins;
+    private L3BinColumnMap columnMap;
     private int sceneWidth;
     private int sceneHeight;
 
@@ -105,8 +106,6 @@ public class MeasuresL3BinFileReader extends SeadasFileReader {
         }
 
         final int height = sceneHeight;
-        final int width = sceneWidth;
-        final ISINGrid grid = this.grid;
 
         // loop over lines
         try {
@@ -129,28 +128,9 @@ public class MeasuresL3BinFileReader extends SeadasFileReader {
                     synchronized (ncFile) {
                         bindata = variable.read(section).reduce().copyTo1DJavaArray();
                     }
-                    int lineIndex0 = 0;
-                    for (int x = sourceOffsetX; x < sourceOffsetX + sourceWidth; x++) {
-                        final double lon = x * 360.0 / width;
-                        final int binIndex = grid.getBinIndex(rowIndex, lon);
-                        int lineIndex = -1;
-                        for (int i = lineIndex0; i < lineLength; i++) {
-                            int binidx = bins[lineOffset + i];
-                            if (binidx >= binIndex) {
-                                if (binidx == binIndex) {
-                                    lineIndex = i;
-                                }
-                                lineIndex0 = i;
-                                break;
-                            }
-                        }
-
-                        if (lineIndex >= 0) {
-                            final int rasterIndex = sourceWidth * (y - sourceOffsetY) + (x - sourceOffsetX);
-
-                            System.arraycopy(bindata, lineIndex, buffer, rasterIndex, 1);
-                        }
-                    }
+                    final int rasterOffset = sourceWidth * (y - sourceOffsetY);
+                    columnMap.fillRow(bindata, lineOffset, lineLength, buffer, rasterOffset,
+                            sourceOffsetX, sourceOffsetX + sourceWidth);
 
                     pm.worked(1);
                 }
@@ -198,6 +178,7 @@ public class MeasuresL3BinFileReader extends SeadasFileReader {
         if (bins == null) {
             bins = idxValues;//(int[]) idxVariable.read().copyTo1DJavaArray();
         }
+        columnMap = new L3BinColumnMap(bins.length);
         final Point gridPoint = new Point();
         int lastBinIndex = -1;
         int lastRowIndex = -1;
@@ -218,6 +199,7 @@ public class MeasuresL3BinFileReader extends SeadasFileReader {
             if (rowIndex != lastRowIndex) {
                 if (lineLength > 0) {
                     binLines[lastRowIndex] = new RowInfo(lineOffset, lineLength);
+                    columnMap.addRow(grid, lastRowIndex, bins, lineOffset, lineLength, sceneWidth);
                 }
                 lineOffset = i;
                 lineLength = 0;
@@ -229,6 +211,7 @@ public class MeasuresL3BinFileReader extends SeadasFileReader {
 
         if (lineLength > 0 && lastRowIndex > 0) {
             binLines[lastRowIndex] = new RowInfo(lineOffset, lineLength);
+            columnMap.addRow(grid, lastRowIndex, bins, lineOffset, lineLength, sceneWidth);
         }
 
         return binLines;
@@ -0,0 +1,143 @@
+package gov.nasa.gsfc.seadas.dataio;
+
+import org.esa.beam.dataio.netcdf.util.NetcdfFileOpener;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A small pool of NetCDF file handles opened on the same product file.
+ * <p>
+ * A single {@link NetcdfFile} is not safe for concurrent reads, so every read has to hold the handle exclusively.
+ * The pool starts with the product's primary handle and opens additional handles lazily, only when all existing
+ * ones are busy, up to {@code maxSize}. With a maximum size of one, reads are simply serialized on the primary
+ * handle.
+ */
+class NetcdfFilePool {
+
+    static final String POOL_SIZE_PROPERTY = "seadas.reader.netcdfFilePoolSize";
+    private static final int DEFAULT_POOL_SIZE = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private final NetcdfFile primary;
+    private final String location;
+    private final int maxSize;
+    private final Deque<NetcdfFile> idle = new ArrayDeque<NetcdfFile>();
+    private final List<NetcdfFile> opened = new ArrayList<NetcdfFile>();
+    private boolean closed;
+
+    NetcdfFilePool(NetcdfFile primary, String location) {
+        this(primary, location, Integer.getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE));
+    }
+
+    NetcdfFilePool(NetcdfFile primary, String location, int maxSize) {
+        this.primary = primary;
+        this.location = location;
+        this.maxSize = Math.max(1, maxSize);
+        idle.push(primary);
+        opened.add(primary);
+    }
+
+    /**
+     * Reads a section of the given variable of the primary handle, using whichever pooled handle is free.
+     */
+    Array read(Variable variable, Section section) throws IOException, InvalidRangeException {
+        final NetcdfFile handle = acquire();
+        try {
+            if (handle != primary) {
+                final Variable pooled = handle.findVariable(variable.getFullNameEscaped());
+                if (pooled != null) {
+                    return pooled.read(section);
+                }
+            }
+            // the primary handle is also locked directly by code outside of the pool
+            synchronized (primary) {
+                return variable.read(section);
+            }
+        } finally {
+            release(handle);
+        }
+    }
+
+    synchronized void close() throws IOException {
+        closed = true;
+        IOException failure = null;
+        for (NetcdfFile handle : opened) {
+            if (handle == primary) {
+                continue;
+            }
+            try {
+                handle.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        opened.clear();
+        idle.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private NetcdfFile acquire() throws IOException {
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new IOException("Product file has been closed: " + location);
+                }
+                if (!idle.isEmpty()) {
+                    return idle.pop();
+                }
+                if (opened.size() < maxSize) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a file handle: " + location, e);
+                }
+            }
+            // reserve the slot before leaving the lock, the file is opened outside of it
+            opened.add(null);
+        }
+        NetcdfFile handle = null;
+        try {
+            handle = NetcdfFileOpener.open(location);
+        } finally {
+            synchronized (this) {
+                opened.remove(null);
+                if (handle != null) {
+                    opened.add(handle);
+                }
+                notifyAll();
+            }
+        }
+        if (handle == null) {
+            throw new IOException("Failed to open " + location);
+        }
+        synchronized (this) {
+            if (closed) {
+                opened.remove(handle);
+                handle.close();
+                throw new IOException("Product file has been closed: " + location);
+            }
+        }
+        return handle;
+    }
+
+    private synchronized void release(NetcdfFile handle) {
+        if (closed) {
+            return;
+        }
+        idle.push(handle);
+        notifyAll();
+    }
+}
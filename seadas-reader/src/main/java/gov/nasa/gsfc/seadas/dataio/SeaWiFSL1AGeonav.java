@@ -19,6 +19,9 @@
  *                                       only a NetCDF file as an argument and
  *                                       determines other needed info from it.
  *                                       Cleaned up code.
+ * October, 2026                         Scan lines are computed on demand, in
+ *                                       parallel, instead of all of them in the
+ *                                       constructor.
  *
  */
 
@@ -32,7 +35,18 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+/**
+ * Computes the geolocation and, on request, the sensor and solar angles of a SeaWiFS L1A
+ * granule, for any range of scan lines (see {@link #computeScanLines}).
+ * <p>
+ * Note that computing lines on demand only saves time until the pixel geocoding of the
+ * product is created: L1ASeawifsFileReader hands the latitude and longitude bands to a
+ * pixel geocoding, which reads them completely when the product is opened. That pass
+ * computes all scan lines, though in parallel and without the angles.
+ */
 public class SeaWiFSL1AGeonav {
     // Constants - the Fortran version defines pi, but Java has Math.PI.
     public static final float DEGREES_PER_RADIAN = (float) (180.0 / Math.PI);
@@ -65,27 +79,25 @@ public class SeaWiFSL1AGeonav {
 
     enum DataType { GAC, LAC }
 
-    // The following are input parameters in the Fortran geonav.f function:
-    private float[]   scanPathCoef = new float[6];           // coef in Fortran version
+    // Number of scan lines below which a block of lines is not split any further
+    // when the lines are computed in parallel.
+    private static final int   MIN_LINES_PER_TASK = 16;
+
+    // The following are input parameters in the Fortran geonav.f function
+    // which are the same for all scan lines:
     private int       pixIncr = LAC_PIXEL_INCREMENT;         // ninc in Fortran version
     private int       pixPerScanLine = LAC_PIXELS_PER_SCAN;  // npix in Fortran version
     private int       scanStartPix = LAC_START_SCAN_PIXEL;   // nsta in Fortran version
-    private float[]   orbPos = new float[3];                 // pos in Fortran version
-    private float[][] sensorOrientation = new float[3][3];   // rm in Fortran version
-    private float[]   sunUnitVec = new float[3];             // sun in Fortran version
-
-    // Output parameters in Fortran version, used here to hold single arrays
-    // which get loaded into 2D matrices:
-    private float[] sena = new float[MAX_SEAWIFS_PIXELS];
-    private float[] senz = new float[MAX_SEAWIFS_PIXELS];
-    private float[] sola = new float[MAX_SEAWIFS_PIXELS];
-    private float[] solz = new float[MAX_SEAWIFS_PIXELS];
-    private float[] xlat = new float[MAX_SEAWIFS_PIXELS];
-    private float[] xlon = new float[MAX_SEAWIFS_PIXELS];
+
+    // Per scan line navigation data (coef, pos, rm and sun in the Fortran version),
+    // read once and used whenever a scan line is computed:
+    private ArrayFloat orbitData;
+    private ArrayFloat sensorData;
+    private ArrayFloat sunData;
+    private ArrayFloat scanTrackEllipseCoefData;
 
     // Intermediate values for calculations:
-    private float[]   attAngle = new float[3];
-    private double    cosa[] = new double[1285];
+    private double    cosa[] = new double[MAX_SEAWIFS_PIXELS];
     private double    cosl;
     private DataType  dataType;
     private double    elev;
@@ -93,7 +105,7 @@ public class SeaWiFSL1AGeonav {
     private double    sina[] = new double[MAX_SEAWIFS_PIXELS];
     private double    sinl;
 
-    // Final values for "output":
+    // Final values for "output", only filled if all scan lines are requested at once:
     private float[][] latitudes;
     private float[][] longitudes;
     private float[][] sensorAzimuths;
@@ -114,13 +126,6 @@ public class SeaWiFSL1AGeonav {
 
         numScanLines = determineNumberScanLines(ncFile);
 
-        latitudes = new float[numScanLines][pixPerScanLine];
-        longitudes = new float[numScanLines][pixPerScanLine];
-        sensorAzimuths = new float[numScanLines][pixPerScanLine];
-        sensorZeniths = new float[numScanLines][pixPerScanLine];
-        solarAzimuths = new float[numScanLines][pixPerScanLine];
-        solarZeniths = new float[numScanLines][pixPerScanLine];
-
         /* The sensorOffsetMatrix values were copied from the navctl.dat file.
          * According to email from F. Patt, the values never changed during the
          * SeaWiFS mission, thus they are hard-coded here.
@@ -142,14 +147,11 @@ public class SeaWiFSL1AGeonav {
 
         //Group rootGroup = ncFile.getRootGroup();
         Group navGroup = ncFile.findGroup("Navigation");
-        Group scanLineAttrGroup = ncFile.findGroup("Scan-Line_Attributes");
 
-        ArrayFloat orbitData = readNetcdfDataArray("orb_vec", navGroup);
-        ArrayFloat sensorData = readNetcdfDataArray("sen_mat", navGroup);
-        ArrayFloat sunData = readNetcdfDataArray("sun_ref", navGroup);
-        ArrayFloat attAngleData = readNetcdfDataArray("att_ang", navGroup);
-        ArrayFloat scanTrackEllipseCoefData = readNetcdfDataArray("scan_ell", navGroup);
-        ArrayFloat tiltData = readNetcdfDataArray("tilt", scanLineAttrGroup);
+        orbitData = readNetcdfDataArray("orb_vec", navGroup);
+        sensorData = readNetcdfDataArray("sen_mat", navGroup);
+        sunData = readNetcdfDataArray("sun_ref", navGroup);
+        scanTrackEllipseCoefData = readNetcdfDataArray("scan_ell", navGroup);
 
         //  Compute elevation (out-of-plane) angle
         elev = SINC * 1.2;
@@ -160,31 +162,116 @@ public class SeaWiFSL1AGeonav {
             cosa[i] = Math.cos((i - 642) * SINC) * cosl;
         }
 
-        for (int line = 0; line < numScanLines; line ++) {
-            attAngle = populateVector(attAngleData, 3, line);
-
-            orbPos = populateVector(orbitData, 3, line);
-            sensorOrientation[0][0] = sensorData.getFloat(line * 9);
-            sensorOrientation[0][1] = sensorData.getFloat(line * 9 + 1);
-            sensorOrientation[0][2] = sensorData.getFloat(line * 9 + 2);
-            sensorOrientation[1][0] = sensorData.getFloat(line * 9 + 3);
-            sensorOrientation[1][1] = sensorData.getFloat(line * 9 + 4);
-            sensorOrientation[1][2] = sensorData.getFloat(line * 9 + 5);
-            sensorOrientation[2][0] = sensorData.getFloat(line * 9 + 6);
-            sensorOrientation[2][1] = sensorData.getFloat(line * 9 + 7);
-            sensorOrientation[2][2] = sensorData.getFloat(line * 9 + 8);
-            float tilt = tiltData.getFloat(line);
-//            float[][] attXfm = computeTransformMatrix(tilt);
-            scanPathCoef = populateVector(scanTrackEllipseCoefData, 6, line);
-            sunUnitVec = populateVector(sunData, 3, line);
-
-            doComputations();
-            System.arraycopy(xlat, 0, latitudes[line], 0, pixPerScanLine);
-            System.arraycopy(xlon, 0, longitudes[line], 0, pixPerScanLine);
-            System.arraycopy(sena, 0, sensorAzimuths[line], 0, pixPerScanLine);
-            System.arraycopy(senz, 0, sensorZeniths[line], 0, pixPerScanLine);
-            System.arraycopy(sola, 0, solarAzimuths[line], 0, pixPerScanLine);
-            System.arraycopy(solz, 0, solarZeniths[line], 0, pixPerScanLine);
+    }
+
+    /**
+     * Computes latitude, longitude and the sensor and solar angles of a block of scan lines.
+     * The lines are computed in parallel. Any of the output arrays may be <code>null</code>
+     * if that quantity is not needed; the angle computations are skipped if all four
+     * angle arrays are <code>null</code>.
+     *
+     * @param firstLine the first scan line to compute
+     * @param numLines  the number of scan lines to compute
+     * @param lat       receives the latitudes, <code>numLines * getNumberPixels()</code> values
+     * @param lon       receives the longitudes
+     * @param senAz     receives the sensor azimuths
+     * @param senZen    receives the sensor zeniths
+     * @param solAz     receives the solar azimuths
+     * @param solZen    receives the solar zeniths
+     */
+    public void computeScanLines(int firstLine, int numLines, float[] lat, float[] lon,
+                                 float[] senAz, float[] senZen, float[] solAz, float[] solZen) {
+        final ScanLineOutput output = new ScanLineOutput(firstLine, lat, lon, senAz, senZen, solAz, solZen);
+        final ScanLineTask task = new ScanLineTask(output, firstLine, firstLine + numLines);
+        if (numLines <= MIN_LINES_PER_TASK) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+    }
+
+    /**
+     * Computes all scan lines, for the getters returning whole matrices.
+     */
+    private synchronized void computeAllScanLines() {
+        if (latitudes != null) {
+            return;
+        }
+        final int numValues = numScanLines * pixPerScanLine;
+        final float[] lat = new float[numValues];
+        final float[] lon = new float[numValues];
+        final float[] senAz = new float[numValues];
+        final float[] senZen = new float[numValues];
+        final float[] solAz = new float[numValues];
+        final float[] solZen = new float[numValues];
+        computeScanLines(0, numScanLines, lat, lon, senAz, senZen, solAz, solZen);
+
+        sensorAzimuths = toMatrix(senAz);
+        sensorZeniths = toMatrix(senZen);
+        solarAzimuths = toMatrix(solAz);
+        solarZeniths = toMatrix(solZen);
+        longitudes = toMatrix(lon);
+        latitudes = toMatrix(lat);
+    }
+
+    private float[][] toMatrix(float[] values) {
+        final float[][] matrix = new float[numScanLines][pixPerScanLine];
+        for (int line = 0; line < numScanLines; line++) {
+            System.arraycopy(values, line * pixPerScanLine, matrix[line], 0, pixPerScanLine);
+        }
+        return matrix;
+    }
+
+    /**
+     * The destination arrays of a {@link #computeScanLines} call.
+     */
+    private static final class ScanLineOutput {
+
+        final int firstLine;
+        final float[] xlat;
+        final float[] xlon;
+        final float[] sena;
+        final float[] senz;
+        final float[] sola;
+        final float[] solz;
+        final boolean anglesNeeded;
+
+        ScanLineOutput(int firstLine, float[] xlat, float[] xlon,
+                       float[] sena, float[] senz, float[] sola, float[] solz) {
+            this.firstLine = firstLine;
+            this.xlat = xlat;
+            this.xlon = xlon;
+            this.sena = sena;
+            this.senz = senz;
+            this.sola = sola;
+            this.solz = solz;
+            anglesNeeded = sena != null || senz != null || sola != null || solz != null;
+        }
+    }
+
+    private final class ScanLineTask extends RecursiveAction {
+
+        private final ScanLineOutput output;
+        private final int startLine;
+        private final int endLine;
+
+        ScanLineTask(ScanLineOutput output, int startLine, int endLine) {
+            this.output = output;
+            this.startLine = startLine;
+            this.endLine = endLine;
+        }
+
+        @Override
+        protected void compute() {
+            if (endLine - startLine > MIN_LINES_PER_TASK) {
+                final int middle = (startLine + endLine) >>> 1;
+                invokeAll(new ScanLineTask(output, startLine, middle),
+                          new ScanLineTask(output, middle, endLine));
+            } else {
+                for (int line = startLine; line < endLine; line++) {
+                    doComputations(line, output);
+                }
+            }
         }
     }
 
@@ -339,7 +426,7 @@ public class SeaWiFSL1AGeonav {
         return (float) (DEGREES_PER_RADIAN * Math.atan2(Math.sqrt(sunn * sunn + sune * sune), sunv));
     }
 
-    private float[][] computeTransformMatrix(float tilt) {
+    private float[][] computeTransformMatrix(float tilt, float[][] sensorOrientation, float[] attAngle) {
         /**
          * Compute the ECEF-to-orbital tranformation matrix using the
          * sensor transformation matrix.  Corresponds to the get_xfm
@@ -422,7 +509,28 @@ public class SeaWiFSL1AGeonav {
         return ncFile.findGlobalAttribute("LAC_Pixel_Start_Number").getNumericValue().intValue();
     }
 
-    public void doComputations() {
+    /**
+     * Computes one scan line into the output arrays. Everything specific to the line is kept in
+     * local variables, so scan lines can be computed concurrently.
+     */
+    private void doComputations(int line, ScanLineOutput output) {
+        final float[] orbPos = populateVector(orbitData, 3, line);
+        final float[] scanPathCoef = populateVector(scanTrackEllipseCoefData, 6, line);
+        final float[] sunUnitVec = populateVector(sunData, 3, line);
+        final float[][] sensorOrientation = new float[3][3];
+        for (int j = 0; j < 3; j++) {
+            for (int k = 0; k < 3; k++) {
+                sensorOrientation[j][k] = sensorData.getFloat(line * 9 + j * 3 + k);
+            }
+        }
+        final int offset = (line - output.firstLine) * pixPerScanLine;
+        final float[] xlat = output.xlat;
+        final float[] xlon = output.xlon;
+        final float[] sena = output.sena;
+        final float[] senz = output.senz;
+        final float[] sola = output.sola;
+        final float[] solz = output.solz;
+
         float[]  ea = new float[3];
         float[]  geovec = new float[3];
         float[]  no = new float[3];
@@ -452,13 +560,14 @@ public class SeaWiFSL1AGeonav {
             double r = b * b - 4.0 * c * a;  // begin solve quadratic equation
 
             //  Check for scan past edge of Earth
+            final int o = offset + i;
             if (r < 0.0) {
-                xlat[i] = 999.0f;
-                xlon[i] = 999.0f;
-                solz[i] = 999.0f;
-                sola[i] = 999.0f;
-                senz[i] = 999.0f;
-                sena[i] = 999.0f;
+                set(xlat, o, 999.0f);
+                set(xlon, o, 999.0f);
+                set(solz, o, 999.0f);
+                set(sola, o, 999.0f);
+                set(senz, o, 999.0f);
+                set(sena, o, 999.0f);
             } else {
                 double q = computeQ(a, b, h, r, sinl);
                 double Qx = q * cosa[in];
@@ -474,8 +583,11 @@ public class SeaWiFSL1AGeonav {
                 }
 
                 // Compute geodetic latitude and longitude
-                xlat[i] = computeLatitude(geovec);
-                xlon[i] = DEGREES_PER_RADIAN * (float) Math.atan2(geovec[1], geovec[0]);
+                set(xlat, o, computeLatitude(geovec));
+                set(xlon, o, DEGREES_PER_RADIAN * (float) Math.atan2(geovec[1], geovec[0]));
+                if (!output.anglesNeeded) {
+                    continue;
+                }
 
                 // Compute the local vertical, East and North unit vectors
                 up = computeVerticalUnitVector(geovec);
@@ -502,25 +614,37 @@ public class SeaWiFSL1AGeonav {
                 }
 
                 // Compute the sensor zenith and azimuth
-                senz[i] = computeSensorZenith(sn, se, sv);
-                sena[i] = computeSensorAzimuth(senz[i], sn, se);
+                final float sensorZenith = computeSensorZenith(sn, se, sv);
+                set(senz, o, sensorZenith);
+                set(sena, o, computeSensorAzimuth(sensorZenith, sn, se));
             }  // close (else part of) if (r < 0.0)
 
             // Compute the solar zenith and azimuth
-            solz[i] = computeSolarZenith(sunn, sune, sunv);
-            sola[i] = computeSolarAzimuth(solz[i], sunn, sune);
+            if (output.anglesNeeded) {
+                final float solarZenith = computeSolarZenith(sunn, sune, sunv);
+                set(solz, o, solarZenith);
+                set(sola, o, computeSolarAzimuth(solarZenith, sunn, sune));
+            }
         } // close for (int i = 0; i < npix; i ++)
     } // close doComputations()
 
+    private static void set(float[] values, int index, float value) {
+        if (values != null) {
+            values[index] = value;
+        }
+    }
+
     public int getFirstPixel() {
         return scanStartPix;
     }
 
     public float[][] getLatitudes() {
-            return latitudes;
+        computeAllScanLines();
+        return latitudes;
     }
 
     public float[][] getLongitudes() {
+        computeAllScanLines();
         return longitudes;
     }
 
@@ -529,18 +653,22 @@ public class SeaWiFSL1AGeonav {
     }
 
     public float[][] getSensorAzimuths() {
+        computeAllScanLines();
         return sensorAzimuths;
     }
 
     public float[][] getSensorZeniths() {
+        computeAllScanLines();
         return sensorZeniths;
     }
 
     public float[][] getSolarAzimuths() {
+        computeAllScanLines();
         return solarAzimuths;
     }
 
     public float[][] getSolarZeniths() {
+        computeAllScanLines();
         return solarZeniths;
     }
 
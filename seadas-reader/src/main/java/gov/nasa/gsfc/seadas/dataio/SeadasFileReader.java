@@ -102,9 +102,14 @@ public abstract class SeadasFileReader {
 
     public abstract Product createProduct() throws IOException;
 
-    public synchronized void readBandData(Band destBand, int sourceOffsetX, int sourceOffsetY, int sourceWidth,
-                                          int sourceHeight, int sourceStepX, int sourceStepY, ProductData destBuffer,
-                                          ProgressMonitor pm) throws IOException, InvalidRangeException {
+    /**
+     * Reads a raster region of a band. This method is reentrant: all per-call state lives in local
+     * section objects, and the file access itself goes through the product's pool of NetCDF file handles,
+     * so tiles of one product can be read from several threads in parallel.
+     */
+    public void readBandData(Band destBand, int sourceOffsetX, int sourceOffsetY, int sourceWidth,
+                             int sourceHeight, int sourceStepX, int sourceStepY, ProductData destBuffer,
+                             ProgressMonitor pm) throws IOException, InvalidRangeException {
 
         if (mustFlipY) {
             sourceOffsetY = destBand.getSceneRasterHeight() - (sourceOffsetY + sourceHeight);
@@ -118,12 +123,9 @@ public abstract class SeadasFileReader {
         if (widthRemainder < 0) {
             sourceWidth += widthRemainder;
         }
-        start[0] = sourceOffsetY;
-        start[1] = sourceOffsetX;
-        stride[0] = sourceStepY;
-        stride[1] = sourceStepX;
-        count[0] = sourceHeight;
-        count[1] = sourceWidth;
+        final int[] start = {sourceOffsetY, sourceOffsetX};
+        final int[] stride = {sourceStepY, sourceStepX};
+        final int[] count = {sourceHeight, sourceWidth};
         Object buffer = destBuffer.getElems();
         Variable variable = variableMap.get(destBand);
 
@@ -134,27 +136,31 @@ public abstract class SeadasFileReader {
             Array array;
             int[] newshape = {sourceHeight, sourceWidth};
 
-            array = variable.read(section);
+            array = readSection(variable, section);
             if (array.getRank() > 2) {
                 array = array.reshapeNoCopy(newshape);
             }
-            Object storage;
-
-            if (mustFlipX && !mustFlipY) {
-                storage = array.flip(1).copyTo1DJavaArray();
-            } else if (!mustFlipX && mustFlipY) {
-                storage = array.flip(0).copyTo1DJavaArray();
-            } else if (mustFlipX && mustFlipY) {
-                storage = array.flip(0).flip(1).copyTo1DJavaArray();
-            } else {
-                storage = array.copyTo1DJavaArray();
+            int numElems = destBuffer.getNumElems();
+            if (widthRemainder < 0) {
+                numElems += widthRemainder;
             }
 
-            if (widthRemainder < 0) {
-                arraycopy(storage, 0, buffer, 0, destBuffer.getNumElems() + widthRemainder);
+            // the freshly read array is canonical, so its storage can be copied straight into the destination
+            Object storage = array.getStorage();
+            if (array.getRank() == 2 && storage.getClass() == buffer.getClass()) {
+                final int[] shape = array.getShape();
+                copyFlipped(storage, buffer, shape[0], shape[1], mustFlipX, mustFlipY, numElems);
             } else {
-                arraycopy(storage, 0, buffer, 0, destBuffer.getNumElems());
-
+                if (mustFlipX && !mustFlipY) {
+                    storage = array.flip(1).copyTo1DJavaArray();
+                } else if (!mustFlipX && mustFlipY) {
+                    storage = array.flip(0).copyTo1DJavaArray();
+                } else if (mustFlipX && mustFlipY) {
+                    storage = array.flip(0).flip(1).copyTo1DJavaArray();
+                } else {
+                    storage = array.copyTo1DJavaArray();
+                }
+                arraycopy(storage, 0, buffer, 0, numElems);
             }
         } finally {
             pm.done();
@@ -162,6 +168,65 @@ public abstract class SeadasFileReader {
 
     }
 
+    /**
+     * Copies a row-major raster into the destination array, reversing rows and/or columns on the fly.
+     * At most {@code numElems} elements are written.
+     */
+    static void copyFlipped(Object src, Object dest, int rows, int cols, boolean flipX, boolean flipY, int numElems) {
+        for (int r = 0; r < rows; r++) {
+            final int destPos = r * cols;
+            final int length = Math.min(cols, numElems - destPos);
+            if (length <= 0) {
+                break;
+            }
+            final int srcPos = (flipY ? rows - 1 - r : r) * cols;
+            if (!flipX) {
+                arraycopy(src, srcPos, dest, destPos, length);
+            } else if (src instanceof float[]) {
+                final float[] s = (float[]) src;
+                final float[] d = (float[]) dest;
+                for (int c = 0, i = srcPos + cols - 1; c < length; c++, i--) {
+                    d[destPos + c] = s[i];
+                }
+            } else if (src instanceof short[]) {
+                final short[] s = (short[]) src;
+                final short[] d = (short[]) dest;
+                for (int c = 0, i = srcPos + cols - 1; c < length; c++, i--) {
+                    d[destPos + c] = s[i];
+                }
+            } else if (src instanceof int[]) {
+                final int[] s = (int[]) src;
+                final int[] d = (int[]) dest;
+                for (int c = 0, i = srcPos + cols - 1; c < length; c++, i--) {
+                    d[destPos + c] = s[i];
+                }
+            } else if (src instanceof byte[]) {
+                final byte[] s = (byte[]) src;
+                final byte[] d = (byte[]) dest;
+                for (int c = 0, i = srcPos + cols - 1; c < length; c++, i--) {
+                    d[destPos + c] = s[i];
+                }
+            } else {
+                for (int c = 0, i = srcPos + cols - 1; c < length; c++, i--) {
+                    arraycopy(src, i, dest, destPos + c, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a section of a variable of this product's file, through the product's file handle pool if there is one.
+     */
+    protected Array readSection(Variable variable, Section section) throws IOException, InvalidRangeException {
+        final NetcdfFilePool pool = productReader.getNcfilePool();
+        if (pool != null) {
+            return pool.read(variable, section);
+        }
+        synchronized (ncFile) {
+            return variable.read(section);
+        }
+    }
+
     public FlagCoding readFlagCoding(Product product, Band bandName) {
         Variable variable = variableMap.get(bandName);
         if (variable.getFullName().contains("flag")) {
@@ -92,14 +92,14 @@ public class PNGSourceImage extends SourcelessOpImage {
             inputStream = zipFile.getInputStream(zipEntry);
             BufferedImage image = ImageIO.read(inputStream);
             Raster imageData = image.getData();
+            final int[] row = new int[imageData.getWidth()];
             for (int y = 0; y < imageData.getHeight(); y++) {
                 int yPos = tileYToY(tileY) + y;
-                for (int x = 0; x < imageData.getWidth(); x++) {
-                    byte sample = (byte) imageData.getSample(x, y, 0);
-                    sample = (byte) Math.abs(sample - 1);
-                    int xPos = tileXToX(tileX) + x;
-                    targetRaster.setSample(xPos, yPos, 0, sample);
+                imageData.getSamples(0, y, row.length, 1, 0, row);
+                for (int x = 0; x < row.length; x++) {
+                    row[x] = (byte) Math.abs((byte) row[x] - 1);
                 }
+                targetRaster.setSamples(tileXToX(tileX), yPos, row.length, 1, 0, row);
             }
         } finally {
             if (inputStream != null) {
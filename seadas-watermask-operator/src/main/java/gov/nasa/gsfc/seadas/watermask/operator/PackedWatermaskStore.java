@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package gov.nasa.gsfc.seadas.watermask.operator;
+
+import javax.media.jai.OpImage;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A land/water mask stored with one bit per pixel in a tile-indexed file next to the zipped mask tiles.
+ * <p/>
+ * The file starts with a header and a table with one entry per tile, followed by the tile data.
+ * A tile entry either marks the tile as not converted yet, as uniformly land, water or invalid, or gives
+ * the file offset of the tile's packed bits (or of its raw bytes, for the rare tiles which contain other
+ * values than land and water). Tiles are converted from the zipped source image the first time they are
+ * needed and appended to the file, so later runs never touch the zip archive again. Tile data is memory-mapped.
+ * If a tile cannot be converted, e.g. because the disk is full, the store samples the source image instead.
+ * <p/>
+ * Stores are shared by all classifier instances of a JVM, see {@link #get(File, OpImage)}.
+ */
+class PackedWatermaskStore {
+
+    private static final int MAGIC = 0x5344574d; // "SDWM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 6 * 4;
+
+    private static final long NOT_CONVERTED = -1;
+    private static final long UNIFORM_LAND = -2;
+    private static final long UNIFORM_WATER = -3;
+    private static final long UNIFORM_INVALID = -4;
+    private static final long RAW_BYTES_FLAG = 1L << 62;
+
+    private static final Map<String, PackedWatermaskStore> STORES = new HashMap<String, PackedWatermaskStore>();
+
+    private final OpImage sourceImage;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int numXTiles;
+    private final AtomicLongArray tileEntries;
+    private final ByteBuffer[] tileData;
+    private volatile boolean conversionFailed;
+
+    /**
+     * Returns the store for the given zipped mask, creating the store file if it does not exist yet.
+     *
+     * @param storeFile   the file holding the packed mask
+     * @param sourceImage the image decoding the zipped mask tiles, used to convert tiles which are not in the store yet
+     * @throws IOException if the store file cannot be written, or is incompatible or truncated
+     */
+    static PackedWatermaskStore get(File storeFile, OpImage sourceImage) throws IOException {
+        final String key = storeFile.getCanonicalPath();
+        synchronized (STORES) {
+            PackedWatermaskStore store = STORES.get(key);
+            if (store == null) {
+                store = new PackedWatermaskStore(storeFile, sourceImage);
+                STORES.put(key, store);
+            }
+            return store;
+        }
+    }
+
+    private PackedWatermaskStore(File storeFile, OpImage sourceImage) throws IOException {
+        this.sourceImage = sourceImage;
+        width = sourceImage.getWidth();
+        height = sourceImage.getHeight();
+        tileWidth = sourceImage.getTileWidth();
+        tileHeight = sourceImage.getTileHeight();
+        numXTiles = sourceImage.getNumXTiles();
+        final int numTiles = numXTiles * sourceImage.getNumYTiles();
+        tileEntries = new AtomicLongArray(numTiles);
+        tileData = new ByteBuffer[numTiles];
+
+        file = new RandomAccessFile(storeFile, "rw");
+        channel = file.getChannel();
+        final FileLock lock = channel.lock();
+        try {
+            if (file.length() == 0) {
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                file.writeInt(width);
+                file.writeInt(height);
+                file.writeInt(tileWidth);
+                file.writeInt(tileHeight);
+                for (int i = 0; i < numTiles; i++) {
+                    file.writeLong(NOT_CONVERTED);
+                }
+            } else {
+                file.seek(0);
+                if (file.readInt() != MAGIC || file.readInt() != VERSION
+                    || file.readInt() != width || file.readInt() != height
+                    || file.readInt() != tileWidth || file.readInt() != tileHeight) {
+                    throw new IOException("Incompatible water mask store: " + storeFile);
+                }
+            }
+            readTileEntries();
+        } finally {
+            lock.release();
+        }
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the mask value of the given pixel, {@link WatermaskClassifier#INVALID_VALUE} if outside of the mask
+     */
+    int getSample(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return WatermaskClassifier.INVALID_VALUE;
+        }
+        final int tileX = x / tileWidth;
+        final int tileY = y / tileHeight;
+        final int tileIndex = tileY * numXTiles + tileX;
+        long entry = tileEntries.get(tileIndex);
+        if (entry == NOT_CONVERTED && !conversionFailed) {
+            entry = convertTile(tileX, tileY);
+        }
+        if (entry == NOT_CONVERTED) {
+            return getSourceSample(x, y);
+        }
+        if (entry == UNIFORM_LAND) {
+            return WatermaskClassifier.LAND_VALUE;
+        } else if (entry == UNIFORM_WATER) {
+            return WatermaskClassifier.WATER_VALUE;
+        } else if (entry == UNIFORM_INVALID) {
+            return WatermaskClassifier.INVALID_VALUE;
+        }
+        final int pixelIndex = (y - tileY * tileHeight) * tileWidth + (x - tileX * tileWidth);
+        final ByteBuffer data = tileData[tileIndex];
+        if ((entry & RAW_BYTES_FLAG) != 0) {
+            return data.get(pixelIndex);
+        }
+        return (data.get(pixelIndex >> 3) >> (pixelIndex & 7)) & 1;
+    }
+
+    private synchronized long convertTile(int tileX, int tileY) {
+        final int tileIndex = tileY * numXTiles + tileX;
+        final long current = tileEntries.get(tileIndex);
+        if (current != NOT_CONVERTED) {
+            return current;
+        }
+        try {
+            final FileLock lock = channel.lock();
+            try {
+                // another process may have converted the tile in the meantime
+                long entry = readTileEntry(tileIndex);
+                if (entry == NOT_CONVERTED) {
+                    entry = appendTile(tileX, tileY, tileIndex);
+                }
+                mapTile(tileIndex, entry);
+                return entry;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            // the tiles already in the store stay valid, all others are read from the source image from now on
+            System.err.println("Failed to convert water mask tile " + tileX + "," + tileY + ": " + e);
+            conversionFailed = true;
+            return NOT_CONVERTED;
+        }
+    }
+
+    private int getSourceSample(int x, int y) {
+        final Raster tile = sourceImage.getTile(sourceImage.XToTileX(x), sourceImage.YToTileY(y));
+        if (tile == null) {
+            return WatermaskClassifier.INVALID_VALUE;
+        }
+        return tile.getSample(x, y, 0);
+    }
+
+    private long appendTile(int tileX, int tileY, int tileIndex) throws IOException {
+        // bypass the image's tile cache, each tile is decoded exactly once
+        final Raster raster = sourceImage.computeTile(tileX, tileY);
+        final byte[] samples = new byte[tileWidth * tileHeight];
+        final int[] row = new int[tileWidth];
+        boolean binary = true;
+        for (int y = 0; y < tileHeight; y++) {
+            raster.getSamples(raster.getMinX(), raster.getMinY() + y, tileWidth, 1, 0, row);
+            for (int x = 0; x < tileWidth; x++) {
+                final byte sample = (byte) row[x];
+                samples[y * tileWidth + x] = sample;
+                binary &= sample == WatermaskClassifier.LAND_VALUE || sample == WatermaskClassifier.WATER_VALUE;
+            }
+        }
+
+        long entry = getUniformEntry(samples);
+        if (entry == NOT_CONVERTED) {
+            final byte[] data;
+            final long offset = file.length();
+            if (binary) {
+                data = new byte[(samples.length + 7) / 8];
+                for (int i = 0; i < samples.length; i++) {
+                    if (samples[i] == WatermaskClassifier.WATER_VALUE) {
+                        data[i >> 3] |= 1 << (i & 7);
+                    }
+                }
+                entry = offset;
+            } else {
+                data = samples;
+                entry = offset | RAW_BYTES_FLAG;
+            }
+            file.seek(offset);
+            file.write(data);
+        }
+        file.seek(HEADER_SIZE + 8L * tileIndex);
+        file.writeLong(entry);
+        return entry;
+    }
+
+    private static long getUniformEntry(byte[] samples) {
+        final byte first = samples[0];
+        for (byte sample : samples) {
+            if (sample != first) {
+                return NOT_CONVERTED;
+            }
+        }
+        if (first == WatermaskClassifier.LAND_VALUE) {
+            return UNIFORM_LAND;
+        } else if (first == WatermaskClassifier.WATER_VALUE) {
+            return UNIFORM_WATER;
+        } else if (first == WatermaskClassifier.INVALID_VALUE) {
+            return UNIFORM_INVALID;
+        }
+        return NOT_CONVERTED;
+    }
+
+    private void readTileEntries() throws IOException {
+        final ByteBuffer table = ByteBuffer.allocate(8 * tileEntries.length());
+        while (table.hasRemaining()) {
+            if (channel.read(table, HEADER_SIZE + table.position()) < 0) {
+                throw new IOException("Truncated water mask store: " + table.position() + " of " + table.capacity() + " bytes of the tile table");
+            }
+        }
+        table.flip();
+        for (int i = 0; i < tileEntries.length(); i++) {
+            mapTile(i, table.getLong());
+        }
+    }
+
+    private long readTileEntry(int tileIndex) throws IOException {
+        file.seek(HEADER_SIZE + 8L * tileIndex);
+        return file.readLong();
+    }
+
+    private void mapTile(int tileIndex, long entry) throws IOException {
+        if (entry >= 0) {
+            final boolean raw = (entry & RAW_BYTES_FLAG) != 0;
+            final long offset = entry & ~RAW_BYTES_FLAG;
+            final int numPixels = tileWidth * tileHeight;
+            final int length = raw ? numPixels : (numPixels + 7) / 8;
+            // mapping beyond the end of the file would extend it instead of failing
+            if (offset + length > channel.size()) {
+                throw new IOException("Truncated water mask store: tile " + tileIndex + " ends after the end of the file");
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            tileData[tileIndex] = buffer;
+        } else if (entry < UNIFORM_INVALID) {
+            throw new IOException("Corrupt water mask store: unknown entry " + entry + " of tile " + tileIndex);
+        }
+        // publish the data before the entry, readers check the entry without locking
+        tileEntries.set(tileIndex, entry);
+    }
+}
@@ -24,11 +24,13 @@ import gov.nasa.gsfc.seadas.watermask.util.ImageDescriptor;
 import gov.nasa.gsfc.seadas.watermask.util.ImageDescriptorBuilder;
 
 import javax.media.jai.OpImage;
+import java.awt.Rectangle;
 import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.Properties;
 
 /**
@@ -123,6 +125,10 @@ public class WatermaskClassifier {
     private PNGSourceImage gshhsImage;
     private PNGSourceImage aboveSixtyNorthImage;
     private PNGSourceImage belowSixtySouthImage;
+    private PackedWatermaskStore centerStore;
+    private PackedWatermaskStore gshhsStore;
+    private PackedWatermaskStore aboveSixtyNorthStore;
+    private PackedWatermaskStore belowSixtySouthStore;
     private Mode mode;
     private int resolution;
     private String filename;
@@ -215,6 +221,7 @@ public class WatermaskClassifier {
             ImageDescriptor gshhsDescriptor = getGshhsDescriptor(auxdataDir);
             if (gshhsDescriptor != null) {
                 gshhsImage = createImage(auxdataDir, gshhsDescriptor);
+                gshhsStore = createStore(auxdataDir, gshhsDescriptor.getZipFileName(), gshhsImage);
             }
         } else if (mode == Mode.SRTM_GC) {
             centerImage = createSrtmImage(auxdataDir);
@@ -224,6 +231,10 @@ public class WatermaskClassifier {
 
             ImageDescriptor southDescriptor = getSouthDescriptor(auxdataDir);
             belowSixtySouthImage = createImage(auxdataDir, southDescriptor);
+
+            centerStore = createStore(auxdataDir, filename, centerImage);
+            aboveSixtyNorthStore = createStore(auxdataDir, northDescriptor.getZipFileName(), aboveSixtyNorthImage);
+            belowSixtySouthStore = createStore(auxdataDir, southDescriptor.getZipFileName(), belowSixtySouthImage);
         }
 
 
@@ -367,6 +378,21 @@ public class WatermaskClassifier {
         return PNGSourceImage.create(properties, zipFile, mode, resolution);
     }
 
+    /**
+     * Opens the bit-packed copy of the given zipped mask, which is filled tile by tile on first use.
+     *
+     * @return the store, or {@code null} if it cannot be written, e.g. in a read-only auxdata directory,
+     *         in which case the image is sampled directly
+     */
+    private static PackedWatermaskStore createStore(File auxdataDir, String zipFileName, OpImage image) {
+        final File storeFile = new File(auxdataDir, zipFileName + "." + image.getWidth() + "x" + image.getHeight() + ".bits");
+        try {
+            return PackedWatermaskStore.get(storeFile, image);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
 
     /**
      * Returns the sample value at the given geo-position, regardless of the source resolution.
@@ -388,21 +414,29 @@ public class WatermaskClassifier {
             return INVALID_VALUE;
         }
         if (mode == Mode.GSHHS) {
-            return getSample(normLat, tempLon, 180.0, 360.0, 0.0, gshhsImage);
+            return getSample(normLat, tempLon, 180.0, 360.0, 0.0, gshhsStore, gshhsImage);
         } else {
             if (normLat < 150.0f && normLat > 30.0f) {
-                return getSample(normLat, tempLon, 180.0, 360.0, 0.0, centerImage);
+                return getSample(normLat, tempLon, 180.0, 360.0, 0.0, centerStore, centerImage);
             } else if (normLat <= 30.0f) {
-                return getSample(normLat, tempLon, 30.0, 360.0, 0.0, aboveSixtyNorthImage);
+                return getSample(normLat, tempLon, 30.0, 360.0, 0.0, aboveSixtyNorthStore, aboveSixtyNorthImage);
             } else if (normLat >= 150.0f) {
 //                return WATER_VALUE;
-                return getSample(normLat, tempLon, 30.0, 360.0, 0.0, belowSixtySouthImage);
+                return getSample(normLat, tempLon, 30.0, 360.0, 0.0, belowSixtySouthStore, belowSixtySouthImage);
             }
         }
         throw new IllegalStateException("Cannot come here");
     }
 
-    private int getSample(double lat, double lon, double latDiff, double lonDiff, double offset, OpImage image) {
+    private int getSample(double lat, double lon, double latDiff, double lonDiff, double offset,
+                          PackedWatermaskStore store, OpImage image) {
+        if (store != null) {
+            final double pixelSizeX = lonDiff / store.getWidth();
+            final double pixelSizeY = latDiff / store.getHeight();
+            final int x = (int) Math.floor(lon / pixelSizeX);
+            final int y = (int) (Math.floor((lat - offset) / pixelSizeY));
+            return store.getSample(x, y);
+        }
         final double pixelSizeX = lonDiff / image.getWidth();
         final double pixelSizeY = latDiff / image.getHeight();
         final int x = (int) Math.floor(lon / pixelSizeX);
@@ -451,6 +485,65 @@ public class WatermaskClassifier {
         return computeAverage(subsamplingFactorX, subsamplingFactorY, valueSum, invalidCount);
     }
 
+    /**
+     * Computes the fraction of water for all pixels of the given region, in the same way as
+     * {@link #getWaterMaskFraction(GeoCoding, PixelPos, int, int)} does for a single pixel.
+     * The supersampled positions are geo-located and classified one supersampled row at a time.
+     *
+     * @param geoCoding          The geo coding of the product the watermask fraction shall be computed for.
+     * @param region             The pixel region the watermask fraction shall be computed for.
+     * @param subsamplingFactorX The subsampling factor in x direction.
+     * @param subsamplingFactorY The subsampling factor in y direction.
+     * @param fractions          Receives the fractions of water in the range [0..100] or {@link #INVALID_VALUE},
+     *                           row by row, {@code region.width} values per row starting at {@code offset}.
+     * @param offset             The index within {@code fractions} of the region's first pixel.
+     * @param stride             The distance within {@code fractions} between two rows.
+     */
+    public void getWaterMaskFractions(GeoCoding geoCoding, Rectangle region,
+                                      int subsamplingFactorX, int subsamplingFactorY,
+                                      float[] fractions, int offset, int stride) {
+        final double xStep = 1.0 / subsamplingFactorX;
+        final double yStep = 1.0 / subsamplingFactorY;
+        final int numSamples = region.width * subsamplingFactorX;
+        final float[] lats = new float[numSamples];
+        final float[] lons = new float[numSamples];
+        final float[] valueSums = new float[region.width];
+        final int[] invalidCounts = new int[region.width];
+        final PixelPos pixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        for (int y = region.y; y < region.y + region.height; y++) {
+            Arrays.fill(valueSums, 0);
+            Arrays.fill(invalidCounts, 0);
+            for (int sy = 0; sy < subsamplingFactorY; sy++) {
+                pixelPos.y = (float) (y + sy * yStep);
+                for (int i = 0; i < numSamples; i++) {
+                    pixelPos.x = (float) (region.x + i / subsamplingFactorX + (i % subsamplingFactorX) * xStep);
+                    geoCoding.getGeoPos(pixelPos, geoPos);
+                    if (geoPos.isValid()) {
+                        lats[i] = geoPos.lat;
+                        lons[i] = geoPos.lon;
+                    } else {
+                        lats[i] = Float.NaN;
+                        lons[i] = Float.NaN;
+                    }
+                }
+                for (int i = 0; i < numSamples; i++) {
+                    final int sample = Float.isNaN(lats[i]) ? INVALID_VALUE : getWaterMaskSample(lats[i], lons[i]);
+                    if (sample != INVALID_VALUE) {
+                        valueSums[i / subsamplingFactorX] += sample;
+                    } else {
+                        invalidCounts[i / subsamplingFactorX]++;
+                    }
+                }
+            }
+            final int rowOffset = offset + (y - region.y) * stride;
+            for (int x = 0; x < region.width; x++) {
+                fractions[rowOffset + x] = computeAverage(subsamplingFactorX, subsamplingFactorY,
+                                                          valueSums[x], invalidCounts[x]);
+            }
+        }
+    }
+
     private byte computeAverage(int subsamplingFactorX, int subsamplingFactorY, float valueSum, int invalidCount) {
         final boolean allValuesInvalid = invalidCount == subsamplingFactorX * subsamplingFactorY;
         if (allValuesInvalid) {
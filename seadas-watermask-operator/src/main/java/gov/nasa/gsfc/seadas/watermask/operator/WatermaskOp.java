@@ -29,6 +29,7 @@ import org.esa.beam.visat.actions.imgfilter.model.Filter;
 import java.awt.*;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
@@ -148,50 +149,24 @@ public class WatermaskOp extends Operator {
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
         final Rectangle rectangle = targetTile.getRectangle();
         try {
-            final String targetBandName = targetBand.getName();
-            final PixelPos pixelPos = new PixelPos();
-            final GeoCoding geoCoding = sourceProduct.getGeoCoding();
-            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-                    pixelPos.x = x;
-                    pixelPos.y = y;
-                    int dataValue = 0;
-                    if (targetBandName.equals(LAND_WATER_FRACTION_BAND_NAME)) {
-                        dataValue = classifier.getWaterMaskFraction(geoCoding, pixelPos,
-                                superSamplingFactor,
-                                superSamplingFactor);
-                    } else if (targetBandName.equals(COAST_BAND_NAME)) {
-                        final boolean coastline = isCoastline(geoCoding, pixelPos,
-                                superSamplingFactor,
-                                superSamplingFactor);
-                        dataValue = coastline ? 1 : 0;
-                    }
-                    targetTile.setSample(x, y, dataValue);
+            final float[] data = targetTile.getDataBufferFloat();
+            final int offset = targetTile.getScanlineOffset();
+            final int stride = targetTile.getScanlineStride();
+            if (targetBand.getName().equals(LAND_WATER_FRACTION_BAND_NAME)) {
+                classifier.getWaterMaskFractions(sourceProduct.getGeoCoding(), rectangle,
+                                                 superSamplingFactor, superSamplingFactor,
+                                                 data, offset, stride);
+            } else {
+                // there is no coastline algorithm, no pixel is coastline
+                for (int y = 0; y < rectangle.height; y++) {
+                    Arrays.fill(data, offset + y * stride, offset + y * stride + rectangle.width, 0);
                 }
             }
-
         } catch (Exception e) {
             throw new OperatorException("Error computing tile '" + targetTile.getRectangle().toString() + "'.", e);
         }
     }
 
-    private boolean isCoastline(GeoCoding geoCoding, PixelPos pixelPos, int superSamplingX, int superSamplingY) {
-        double xStep = 1.0 / superSamplingX;
-        double yStep = 1.0 / superSamplingY;
-        final GeoPos geoPos = new GeoPos();
-        final PixelPos currentPos = new PixelPos();
-        for (int sx = 0; sx < superSamplingX; sx++) {
-            currentPos.x = (float) (pixelPos.x + sx * xStep);
-            for (int sy = 0; sy < superSamplingY; sy++) {
-                currentPos.y = (float) (pixelPos.y + sy * yStep);
-                geoCoding.getGeoPos(currentPos, geoPos);
-                // Todo: Implement coastline algorithm here
-                //
-            }
-        }
-        return false;
-    }
-
     private void validateParameter() {
         if (resolution != WatermaskClassifier.RESOLUTION_50m &&
                 resolution != WatermaskClassifier.RESOLUTION_150m &&
@@ -0,0 +1,158 @@
+package gov.nasa.gsfc.seadas.writeimage;
+
+import javax.media.jai.ImageLayout;
+import javax.media.jai.PointOpImage;
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.geom.AffineTransform;
+import java.awt.image.*;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * The final export image: the colored band image with masks blended in and overlays drawn on top,
+ * computed tile by tile.
+ * <p/>
+ * Only the tiles an image writer currently asks for are held in memory, so images of any size can be
+ * written with a bounded heap. The image has the tile layout of the colored band image and either
+ * 3 (RGB) or 4 (RGBA) interleaved byte bands. Without alpha, transparent pixels are blended onto
+ * the background color.
+ */
+class CompositeOpImage extends PointOpImage {
+
+    private final int numMasks;
+    private final int[] maskRed;
+    private final int[] maskGreen;
+    private final int[] maskBlue;
+    private final float[] maskOpacity;
+    private final List<TileOverlay> overlays;
+    private final AffineTransform modelToImage;
+    private final boolean alpha;
+    private final Color background;
+
+    /**
+     * @param coloredImage       the RGB or RGBA image of the band
+     * @param maskImages         the mask images, at the same level as the colored image, non-zero where set
+     * @param maskColors         the color of each mask
+     * @param maskTransparencies the transparency of each mask, 0 for opaque
+     * @param overlays           the overlays, drawn in the given order
+     * @param imageToModel       the image to model transform of the colored image
+     * @param alpha              whether to keep the alpha channel
+     * @param background         the color transparent pixels are blended onto if there is no alpha channel
+     */
+    CompositeOpImage(RenderedImage coloredImage,
+                     RenderedImage[] maskImages, Color[] maskColors, double[] maskTransparencies,
+                     List<TileOverlay> overlays, AffineTransform imageToModel,
+                     boolean alpha, Color background) throws NoninvertibleTransformException {
+        super(toVector(coloredImage, maskImages), createLayout(coloredImage, alpha), null, true);
+        numMasks = maskImages.length;
+        maskRed = new int[numMasks];
+        maskGreen = new int[numMasks];
+        maskBlue = new int[numMasks];
+        maskOpacity = new float[numMasks];
+        for (int i = 0; i < numMasks; i++) {
+            maskRed[i] = maskColors[i].getRed();
+            maskGreen[i] = maskColors[i].getGreen();
+            maskBlue[i] = maskColors[i].getBlue();
+            maskOpacity[i] = (float) (1.0 - maskTransparencies[i]);
+        }
+        this.overlays = overlays;
+        this.modelToImage = imageToModel.createInverse();
+        this.alpha = alpha;
+        this.background = background;
+    }
+
+    @Override
+    protected void computeRect(Raster[] sources, WritableRaster dest, Rectangle destRect) {
+        final int x0 = destRect.x;
+        final int width = destRect.width;
+        final Raster colorRaster = sources[0];
+        final int sourceBands = colorRaster.getNumBands();
+        final int targetBands = alpha ? 4 : 3;
+        final int[] colorRow = new int[width * sourceBands];
+        final int[][] maskRows = new int[numMasks][width];
+        final int[] targetRow = new int[width * targetBands];
+        final int bgRed = background.getRed();
+        final int bgGreen = background.getGreen();
+        final int bgBlue = background.getBlue();
+
+        for (int y = destRect.y; y < destRect.y + destRect.height; y++) {
+            colorRaster.getPixels(x0, y, width, 1, colorRow);
+            for (int m = 0; m < numMasks; m++) {
+                sources[m + 1].getSamples(x0, y, width, 1, 0, maskRows[m]);
+            }
+            for (int x = 0; x < width; x++) {
+                final int s = x * sourceBands;
+                float r = colorRow[s];
+                float g = colorRow[s + 1];
+                float b = colorRow[s + 2];
+                float a = sourceBands > 3 ? colorRow[s + 3] / 255f : 1f;
+
+                // mask colors are laid over the pixel like the mask layers of a scene view
+                for (int m = 0; m < numMasks; m++) {
+                    if (maskRows[m][x] != 0) {
+                        final float o = maskOpacity[m];
+                        final float na = o + a * (1f - o);
+                        if (na > 0f) {
+                            final float w = a * (1f - o);
+                            r = (maskRed[m] * o + r * w) / na;
+                            g = (maskGreen[m] * o + g * w) / na;
+                            b = (maskBlue[m] * o + b * w) / na;
+                        }
+                        a = na;
+                    }
+                }
+
+                final int t = x * targetBands;
+                if (alpha) {
+                    targetRow[t] = Math.round(r);
+                    targetRow[t + 1] = Math.round(g);
+                    targetRow[t + 2] = Math.round(b);
+                    targetRow[t + 3] = Math.round(a * 255f);
+                } else {
+                    targetRow[t] = Math.round(r * a + bgRed * (1f - a));
+                    targetRow[t + 1] = Math.round(g * a + bgGreen * (1f - a));
+                    targetRow[t + 2] = Math.round(b * a + bgBlue * (1f - a));
+                }
+            }
+            dest.setPixels(x0, y, width, 1, targetRow);
+        }
+
+        if (!overlays.isEmpty()) {
+            final WritableRaster tileRaster = dest.createWritableChild(destRect.x, destRect.y,
+                                                                       destRect.width, destRect.height,
+                                                                       0, 0, null);
+            final BufferedImage tileImage = new BufferedImage(getColorModel(), tileRaster, false, null);
+            final AffineTransform modelToTile = AffineTransform.getTranslateInstance(-destRect.x, -destRect.y);
+            modelToTile.concatenate(modelToImage);
+            for (TileOverlay overlay : overlays) {
+                overlay.render(tileImage, modelToTile);
+            }
+        }
+    }
+
+    private static Vector<RenderedImage> toVector(RenderedImage coloredImage, RenderedImage[] maskImages) {
+        final Vector<RenderedImage> sources = new Vector<RenderedImage>();
+        sources.add(coloredImage);
+        for (RenderedImage maskImage : maskImages) {
+            sources.add(maskImage);
+        }
+        return sources;
+    }
+
+    private static ImageLayout createLayout(RenderedImage coloredImage, boolean alpha) {
+        final int numBands = alpha ? 4 : 3;
+        final int tileWidth = coloredImage.getTileWidth();
+        final int tileHeight = coloredImage.getTileHeight();
+        final int[] bandOffsets = alpha ? new int[]{0, 1, 2, 3} : new int[]{0, 1, 2};
+        final SampleModel sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, tileWidth, tileHeight,
+                                                                        numBands, tileWidth * numBands, bandOffsets);
+        final ColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), alpha, false,
+                                                              alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE,
+                                                              DataBuffer.TYPE_BYTE);
+        final ImageLayout layout = new ImageLayout(coloredImage);
+        layout.setSampleModel(sampleModel);
+        layout.setColorModel(colorModel);
+        return layout;
+    }
+}
@@ -0,0 +1,54 @@
+package gov.nasa.gsfc.seadas.writeimage;
+
+import com.bc.ceres.glayer.Layer;
+import com.bc.ceres.grender.Viewport;
+import com.bc.ceres.grender.support.BufferedImageRendering;
+import com.bc.ceres.grender.support.DefaultViewport;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders a layer, e.g. the graticule, into each tile through a viewport covering just that tile.
+ */
+class LayerTileOverlay implements TileOverlay {
+
+    private final Layer layer;
+    private final boolean modelYAxisDown;
+
+    LayerTileOverlay(Layer layer, boolean modelYAxisDown) {
+        this.layer = layer;
+        this.modelYAxisDown = modelYAxisDown;
+    }
+
+    @Override
+    public void render(BufferedImage tileImage, AffineTransform modelToTile) {
+        final Rectangle tileBounds = new Rectangle(0, 0, tileImage.getWidth(), tileImage.getHeight());
+        final AffineTransform tileToModel;
+        try {
+            tileToModel = modelToTile.createInverse();
+        } catch (NoninvertibleTransformException e) {
+            return;
+        }
+
+        // the viewport only tells the layer which model area is visible; it applies the viewport's
+        // model to view transform itself, so the graphics have to undo it (see WriteImageOp.createRendering)
+        final Viewport viewport = new DefaultViewport(tileBounds, modelYAxisDown);
+        viewport.zoom(tileToModel.createTransformedShape(tileBounds).getBounds2D());
+        final BufferedImageRendering rendering = new BufferedImageRendering(tileImage, viewport);
+        final AffineTransform viewToTile = new AffineTransform(modelToTile);
+        viewToTile.concatenate(viewport.getViewToModelTransform());
+        final Graphics2D graphics = rendering.getGraphics();
+        graphics.setTransform(viewToTile);
+        try {
+            // layers create their figures lazily and are not meant to be rendered concurrently
+            synchronized (layer) {
+                layer.render(rendering);
+            }
+        } finally {
+            graphics.dispose();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package gov.nasa.gsfc.seadas.writeimage;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws an outlined text label anchored at a model position. The font size is in image pixels.
+ */
+class TextTileOverlay implements TileOverlay {
+
+    private final String text;
+    private final Point2D modelPos;
+    private final Font font;
+    private final Color color;
+    private final Color outlineColor;
+
+    TextTileOverlay(String text, Point2D modelPos, Font font, Color color, Color outlineColor) {
+        this.text = text;
+        this.modelPos = modelPos;
+        this.font = font;
+        this.color = color;
+        this.outlineColor = outlineColor;
+    }
+
+    @Override
+    public void render(BufferedImage tileImage, AffineTransform modelToTile) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        final Point2D tilePos = modelToTile.transform(modelPos, null);
+        final Graphics2D graphics = tileImage.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            final FontRenderContext frc = graphics.getFontRenderContext();
+            if (!font.getStringBounds(text, frc).getBounds().intersects(
+                    new Rectangle((int) -tilePos.getX() - 2, (int) -tilePos.getY() - 2,
+                                  tileImage.getWidth() + 4, tileImage.getHeight() + 4))) {
+                return;
+            }
+            final Shape outline = font.createGlyphVector(frc, text).getOutline((float) tilePos.getX(), (float) tilePos.getY());
+            graphics.setColor(outlineColor);
+            graphics.draw(outline);
+            graphics.setColor(color);
+            graphics.fill(outline);
+        } finally {
+            graphics.dispose();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package gov.nasa.gsfc.seadas.writeimage;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Something drawn on top of the colored band image, one tile at a time.
+ * <p/>
+ * Implementations are called concurrently for different tiles and must not keep state between calls.
+ */
+interface TileOverlay {
+
+    /**
+     * Draws the part of the overlay which falls into a tile.
+     *
+     * @param tileImage   the tile, drawn on in place
+     * @param modelToTile transforms model coordinates into the pixel coordinates of the tile image
+     */
+    void render(BufferedImage tileImage, AffineTransform modelToTile);
+}
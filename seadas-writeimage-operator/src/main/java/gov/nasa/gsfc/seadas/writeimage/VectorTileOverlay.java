@@ -0,0 +1,89 @@
+package gov.nasa.gsfc.seadas.writeimage;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import org.esa.beam.framework.datamodel.VectorDataNode;
+import org.geotools.feature.FeatureIterator;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws the line geometries of vector data nodes, e.g. contour lines, in a single color.
+ * <p/>
+ * The geometries are converted into paths in model coordinates once; a tile only draws the paths
+ * whose bounds intersect it.
+ */
+class VectorTileOverlay implements TileOverlay {
+
+    private final List<Path2D> paths = new ArrayList<Path2D>();
+    private final List<Rectangle2D> pathBounds = new ArrayList<Rectangle2D>();
+    private final Color color;
+    private final Stroke stroke;
+
+    VectorTileOverlay(List<VectorDataNode> vectorDataNodes, Color color, float lineWidth) {
+        this.color = color;
+        this.stroke = new BasicStroke(lineWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        for (VectorDataNode vectorDataNode : vectorDataNodes) {
+            final FeatureIterator<SimpleFeature> features = vectorDataNode.getFeatureCollection().features();
+            try {
+                while (features.hasNext()) {
+                    final Object geometry = features.next().getDefaultGeometry();
+                    if (geometry instanceof Geometry) {
+                        addGeometry((Geometry) geometry);
+                    }
+                }
+            } finally {
+                features.close();
+            }
+        }
+    }
+
+    @Override
+    public void render(BufferedImage tileImage, AffineTransform modelToTile) {
+        // lines just outside of the tile may still reach into it with their width
+        final Rectangle2D tileBounds = new Rectangle2D.Double(-1, -1, tileImage.getWidth() + 2, tileImage.getHeight() + 2);
+        Graphics2D graphics = null;
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                if (!modelToTile.createTransformedShape(pathBounds.get(i)).intersects(tileBounds)) {
+                    continue;
+                }
+                if (graphics == null) {
+                    graphics = tileImage.createGraphics();
+                    graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    graphics.setColor(color);
+                    graphics.setStroke(stroke);
+                }
+                // transform the path rather than the graphics, so the line width stays in image pixels
+                graphics.draw(modelToTile.createTransformedShape(paths.get(i)));
+            }
+        } finally {
+            if (graphics != null) {
+                graphics.dispose();
+            }
+        }
+    }
+
+    private void addGeometry(Geometry geometry) {
+        for (int n = 0; n < geometry.getNumGeometries(); n++) {
+            final Coordinate[] coordinates = geometry.getGeometryN(n).getCoordinates();
+            if (coordinates.length < 2) {
+                continue;
+            }
+            final Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO, coordinates.length);
+            path.moveTo(coordinates[0].x, coordinates[0].y);
+            for (int i = 1; i < coordinates.length; i++) {
+                path.lineTo(coordinates[i].x, coordinates[i].y);
+            }
+            paths.add(path);
+            pathBounds.add(path.getBounds2D());
+        }
+    }
+}
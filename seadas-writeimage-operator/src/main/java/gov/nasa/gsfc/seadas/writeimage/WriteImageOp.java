@@ -4,6 +4,7 @@ import com.bc.ceres.binding.Property;
 import com.bc.ceres.binding.PropertySet;
 import com.bc.ceres.binding.ValidationException;
 import com.bc.ceres.core.ProgressMonitor;
+import com.bc.ceres.glevel.MultiLevelModel;
 import com.bc.ceres.glayer.*;
 import com.bc.ceres.glayer.support.ImageLayer;
 import com.bc.ceres.glayer.support.LayerUtils;
@@ -32,6 +33,7 @@ import org.esa.beam.glayer.GraticuleLayer;
 import org.esa.beam.glayer.GraticuleLayerType;
 import org.esa.beam.glayer.MaskLayerType;
 import org.esa.beam.gpf.operators.standard.ReadOp;
+import org.esa.beam.jai.ImageManager;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.PropertyMap;
 import org.esa.beam.util.geotiff.GeoTIFF;
@@ -47,10 +49,12 @@ import org.slf4j.LoggerFactory;
 import javax.media.jai.operator.BandSelectDescriptor;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -59,7 +63,15 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author kutila
@@ -95,6 +107,8 @@ public class WriteImageOp extends Operator {
     private static final String LOGARITHMIC = "log";
     private static final int[] DEFAULT_MASK_COLOR = {192, 192, 192};
     private static final double DEFAULT_MASK_TRANSPARENCY = 0;
+    // same as the default background of a scene view
+    private static final Color DEFAULT_BACKGROUND_COLOR = Color.DARK_GRAY;
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
@@ -128,6 +142,13 @@ public class WriteImageOp extends Operator {
     @Parameter(itemAlias = "textAnnotation", description = "Specifies text annotation(s) to be added in the target image.")
     TextAnnotation[] textAnnotations = {};
 
+    @Parameter(itemAlias = "quicklook", description = "Writes one image per quicklook instead of a single image, " +
+            "sharing band statistics and layers between them. Unset quicklook fields default to the operator's parameters.")
+    Quicklook[] quicklooks = {};
+
+    @Parameter(description = "Number of quicklooks written concurrently. 0 uses one per processor.", defaultValue = "0")
+    private int batchThreads;
+
     @Parameter(description = "Add mask layer(s) to the target image.", defaultValue = "false")
     private boolean maskLayer;
 
@@ -180,6 +201,10 @@ public class WriteImageOp extends Operator {
     @Parameter(description = "The scale type to apply. Can be 'linear' or 'log'.", defaultValue = "linear")
     private String scaleType;
 
+    @Parameter(description = "Render and write the image tile by tile, without a scene view. Needs no display " +
+            "and keeps memory bounded for large scenes.", defaultValue = "true")
+    private boolean tiledRendering;
+
     private Band sourceBand;
 
     private ProgressMonitor pm = ProgressMonitor.NULL;
@@ -195,17 +220,7 @@ public class WriteImageOp extends Operator {
         }
 
 
-        // - print warning if cpd file is missing. we proceed with default mapping
-        final File f = new File(this.cpdFilePath);
-        if (f == null || !f.exists()) {
-            System.out.println("WARNING: Color palette definition could not be read. Will proceed with default colors.");
-            this.log.warn("WARNING: Color palette definition could not be read. Will proceed with default colors.");
-
-            // - colour scale min/max are only used if there is cpd file
-            if (!(this.colourScaleMin < this.colourScaleMax)) {
-                throw new OperatorException("Error in data range: min should be less than max");
-            }
-        }
+        checkColorPalette(this.cpdFilePath, this.colourScaleMin, this.colourScaleMax);
 
         if (sourceBandName != null) {
             this.sourceBand = this.sourceProduct.getBand(sourceBandName);
@@ -214,6 +229,17 @@ public class WriteImageOp extends Operator {
             this.sourceBandName = this.sourceBand.getName();
         }
 
+        for (Quicklook quicklook : quicklooks) {
+            if (quicklook.getSourceBandName() != null && !this.sourceProduct.containsBand(quicklook.getSourceBandName())) {
+                throw new OperatorException("Source does not contain band: " + quicklook.getSourceBandName());
+            }
+            if (quicklook.getFilePath() == null) {
+                throw new OperatorException("Quicklook file path is not set");
+            }
+            // the quicklooks are written by a worker pool, so their palettes are checked up front
+            checkColorPalette(getCpdFilePath(quicklook), getColourScaleMin(quicklook), getColourScaleMax(quicklook));
+        }
+
         final int sceneRasterWidth = 1199;
         final int sceneRasterHeight = 951;
 
@@ -256,74 +282,151 @@ public class WriteImageOp extends Operator {
      */
     protected void writeImage() throws Exception {
 
+        if (quicklooks.length > 0) {
+            writeQuicklooks();
+            return;
+        }
+
         Band band = this.sourceBand;
         final ImageInfo defaultImageInfo = band.createDefaultImageInfo(histoSkipRatios, this.pm);
         band.setImageInfo(defaultImageInfo);
 
         final boolean isLog = LOGARITHMIC.equalsIgnoreCase(this.scaleType);
+        applyColorPalette(band, band.getImageInfo(), this.cpdFilePath, colourScaleMin, colourScaleMax, isLog);
 
-        final StringBuilder debug = new StringBuilder();
-        debug.append("\n====\n");
-        final File file = new File(this.cpdFilePath);
-        ColorPaletteDef cpd = null;
-        try {
-            cpd = ColorPaletteDef.loadColorPaletteDef(file);
-            debug.append("Successfully loaded color palette definition: ");
-            debug.append(this.cpdFilePath);
+        //pale grey (gray goose): 209, 208, 206 dark grey: 110, 110, 110, battleship gray: 132, 132, 130, seadas light gray:192, 192, 192
+        //band.getImageInfo().setNoDataColor(Color.WHITE);
 
-        } catch (IOException e) {
-            cpd = RGBUtils.buildColorPaletteDef(colourScaleMin, colourScaleMax);
-            debug.append("Built new color palette definition: ");
+        // construct Image
+        //ImageManager imageManager = ImageManager.getInstance();
+        //RenderedImage outputImage = imageManager.createColoredBandImage(bands, defaultImageInfo, level);
+
+        // write Image
+        //JAI.create("filestore", outputImage, filePath, formatName, null);
+        if (tiledRendering) {
+            writeTiledImage(band);
+        } else {
+            writeImage2(band);
         }
+    }
 
-        if (band.getIndexCoding() != null) {
-            band.getImageInfo().setColors(cpd.getColors());
-            debug.append("\n Non-null Index Coding");
+    /**
+     * Prints a warning if the color palette definition file is missing, in which case the default palette is
+     * spread over the colour scale range, which must then be valid.
+     */
+    private void checkColorPalette(String cpdFilePath, double colourScaleMin, double colourScaleMax) {
+        // - print warning if cpd file is missing. we proceed with default mapping
+        final File f = new File(cpdFilePath);
+        if (!f.exists()) {
+            System.out.println("WARNING: Color palette definition " + cpdFilePath + " could not be read. Will proceed with default colors.");
+            this.log.warn("WARNING: Color palette definition " + cpdFilePath + " could not be read. Will proceed with default colors.");
 
-        } else {
-            debug.append("\n Null Index Coding");
+            // - colour scale min/max are only used if there is cpd file
+            if (!(colourScaleMin < colourScaleMax)) {
+                throw new OperatorException("Error in data range: min should be less than max");
+            }
+        }
+    }
 
-            debug.append("\n CPD Auto Distribute=" + this.cpdAutoDistribute);
+    private String getCpdFilePath(Quicklook quicklook) {
+        return quicklook.getCpdFilePath() != null ? quicklook.getCpdFilePath() : cpdFilePath;
+    }
 
-            double minSample = colourScaleMin;
-            double maxSample = colourScaleMax;
+    private double getColourScaleMin(Quicklook quicklook) {
+        return quicklook.getColourScaleMin() != null ? quicklook.getColourScaleMin() : colourScaleMin;
+    }
 
-            band.getImageInfo().setColorPaletteDef(cpd, minSample, maxSample, this.cpdAutoDistribute, defaultImageInfo.isLogScaled(), isLog);
-            band.getImageInfo().setLogScaled(isLog);
+    private double getColourScaleMax(Quicklook quicklook) {
+        return quicklook.getColourScaleMax() != null ? quicklook.getColourScaleMax() : colourScaleMax;
+    }
 
-            debug.append("\n CPD min =");
-            debug.append(minSample + "   " + band.getStx().getMinimum() + "   ");
-            debug.append(cpd.getMinDisplaySample() + "   " + band.getImageInfo().getColorPaletteDef().getMinDisplaySample());
-            debug.append(band.getImageInfo().isLogScaled());
-            debug.append("\n CPD  max =");
-            debug.append(maxSample + "  " + band.getStx().getMinimum() + "   " + cpd.getMaxDisplaySample() + "   " + band.getImageInfo().getColorPaletteDef().getMaxDisplaySample());
-            debug.append("\n ColorScaleMin/Max  = " + colourScaleMin + "; " + colourScaleMax);
-            debug.append("\n source scaling=" + (defaultImageInfo.isLogScaled() ? "LOG" : "LINEAR"));
-            if (isLog) {
-                debug.append("\n target scaling=LOG");
+    /**
+     * Sets the color palette of an image info from a color palette definition file, or from the default
+     * palette if the file cannot be read.
+     */
+    private void applyColorPalette(Band band, ImageInfo imageInfo, String cpdFilePath,
+                                   double minSample, double maxSample, boolean isLog) {
+        ColorPaletteDef cpd;
+        try {
+            cpd = ColorPaletteDef.loadColorPaletteDef(new File(cpdFilePath));
+        } catch (IOException e) {
+            cpd = RGBUtils.buildColorPaletteDef(minSample, maxSample);
+        }
 
-            } else {
-                debug.append("\n target scaling=LINEAR");
-            }
-            debug.append("\n====\n");
+        if (band.getIndexCoding() != null) {
+            imageInfo.setColors(cpd.getColors());
+        } else {
+            imageInfo.setColorPaletteDef(cpd, minSample, maxSample, this.cpdAutoDistribute, imageInfo.isLogScaled(), isLog);
+            imageInfo.setLogScaled(isLog);
         }
 
-        //pale grey (gray goose): 209, 208, 206 dark grey: 110, 110, 110, battleship gray: 132, 132, 130, seadas light gray:192, 192, 192
-        //band.getImageInfo().setNoDataColor(Color.WHITE);
+        // image looks worse when using either Normalize or Equalize
+        imageInfo.setHistogramMatching(ImageInfo.HistogramMatching.None);
+    }
 
-        RasterDataNode[] bands = {band};
+    /**
+     * Writes all quicklooks. The default image info, and with it the statistics, is computed once per band,
+     * for all bands concurrently. Masks and overlays are created once and shared by all images, which are
+     * then written concurrently. Quicklooks are always rendered tile by tile.
+     *
+     * @throws Exception if an image could not be written
+     */
+    private void writeQuicklooks() throws Exception {
+        final Map<String, Band> bands = new LinkedHashMap<String, Band>();
+        for (Quicklook quicklook : quicklooks) {
+            final String bandName = quicklook.getSourceBandName() != null ? quicklook.getSourceBandName() : sourceBandName;
+            bands.put(bandName, sourceProduct.getBand(bandName));
+        }
 
-        // image looks worse when using either Normalize or Equalize
-        defaultImageInfo.setHistogramMatching(ImageInfo.HistogramMatching.None);
+        final int numThreads = batchThreads > 0 ? batchThreads : Runtime.getRuntime().availableProcessors();
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(numThreads, Math.max(bands.size(), quicklooks.length)));
+        try {
+            final Map<String, Future<ImageInfo>> defaultImageInfos = new HashMap<String, Future<ImageInfo>>();
+            for (final Band band : bands.values()) {
+                defaultImageInfos.put(band.getName(), executorService.submit(new Callable<ImageInfo>() {
+                    @Override
+                    public ImageInfo call() throws Exception {
+                        return band.createDefaultImageInfo(histoSkipRatios, ProgressMonitor.NULL);
+                    }
+                }));
+            }
 
-        // construct Image
-        //ImageManager imageManager = ImageManager.getInstance();
-        //RenderedImage outputImage = imageManager.createColoredBandImage(bands, defaultImageInfo, level);
+            // all bands of a product share the geo-coding and raster size, so any band can carry the overlays
+            final ExportLayers exportLayers = createExportLayers(bands.values().iterator().next());
+
+            final List<Future<?>> writes = new ArrayList<Future<?>>();
+            for (final Quicklook quicklook : quicklooks) {
+                final Band band = bands.get(quicklook.getSourceBandName() != null ? quicklook.getSourceBandName() : sourceBandName);
+                final ImageInfo imageInfo = getResult(defaultImageInfos.get(band.getName())).createDeepCopy();
+                applyColorPalette(band, imageInfo, getCpdFilePath(quicklook),
+                                  getColourScaleMin(quicklook), getColourScaleMax(quicklook),
+                                  LOGARITHMIC.equalsIgnoreCase(quicklook.getScaleType() != null ? quicklook.getScaleType() : scaleType));
+                final String imageFormat = quicklook.getFormatName() != null ? quicklook.getFormatName() : formatName;
+                writes.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        writeTiledImage(band, imageInfo, exportLayers, imageFormat, new File(quicklook.getFilePath()));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> write : writes) {
+                getResult(write);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
 
-        // write Image
-        //JAI.create("filestore", outputImage, filePath, formatName, null);
-        writeImage2(band);
-        //System.out.println(debug.toString());
+    private static <T> T getResult(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
     }
 
     private void writeImage2(Band sourceBand) {
@@ -348,27 +451,9 @@ public class WriteImageOp extends Operator {
         if (graticuleLayer) {
             productSceneView.setGraticuleOverlayEnabled(true);
             List<Layer> layers = productSceneView.getRootLayer().getChildren();
-            String pName;
             for (Layer layer:layers) {
                 if (layer instanceof GraticuleLayer) {
-                    PropertySet ps = layer.getConfiguration();
-                    for (Property p:ps.getProperties()) {
-                        if (p.getName().contains(GraticuleLayerType.PROPERTY_NAME_TICKMARK_ENABLED)) {
-                            try {
-                                p.setValue(new Boolean(graticuleLayerTickEnabled));
-                            } catch (ValidationException ve ){
-
-                            }
-
-                        } else if (p.getName().contains(GraticuleLayerType.PROPERTY_NAME_TEXT_INSIDE)) {
-                            try {
-                                p.setValue(new Boolean(graticuleLayerLabel));
-                            } catch (ValidationException ve ){
-
-                            }
-
-                        }
-                    }
+                    configureGraticuleLayer(layer);
                 }
             }
         }
@@ -400,6 +485,140 @@ public class WriteImageOp extends Operator {
         System.out.println(dateFormat.format(date));
     }
 
+    /**
+     * Writes the image without a scene view. The colored band image, the masks and the overlays are
+     * composed tile by tile while the image writer pulls rows, so the full image is never held in memory.
+     *
+     * @param sourceBand the band to write, with its image info set up
+     * @throws IOException if the image could not be written
+     */
+    private void writeTiledImage(Band sourceBand) throws IOException {
+        writeTiledImage(sourceBand, sourceBand.getImageInfo(), createExportLayers(sourceBand), formatName, new File(filePath));
+    }
+
+    private void writeTiledImage(Band sourceBand, ImageInfo imageInfo, ExportLayers exportLayers,
+                                 String imageFormat, File file) throws IOException {
+        final boolean useAlpha = !BMP_FORMAT_DESCRIPTION[0].equals(imageFormat) && !JPEG_FORMAT_DESCRIPTION[0].equals(imageFormat);
+
+        final RenderedImage coloredImage = ImageManager.getInstance().createColoredBandImage(
+                new RasterDataNode[]{sourceBand}, imageInfo, level);
+        final AffineTransform imageToModel = sourceBand.getSourceImage().getModel().getImageToModelTransform(level);
+
+        final CompositeOpImage image;
+        try {
+            image = new CompositeOpImage(coloredImage, exportLayers.maskImages, exportLayers.maskColors,
+                                         exportLayers.maskTransparencies, exportLayers.overlays,
+                                         imageToModel, useAlpha, DEFAULT_BACKGROUND_COLOR);
+        } catch (NoninvertibleTransformException e) {
+            throw new IOException("Image to model transform of band " + sourceBand.getName() + " is not invertible", e);
+        }
+        try {
+            // georeferencing is only written for the full resolution image
+            writeImage(imageFormat, image, this.sourceProduct, level == 0, file);
+        } finally {
+            image.dispose();
+        }
+    }
+
+    /**
+     * Creates the masks and overlays requested by the layer parameters. They only depend on the product,
+     * not on the colors of the band, and can be shared by several images.
+     */
+    private ExportLayers createExportLayers(Band sourceBand) {
+        final MultiLevelModel model = sourceBand.getSourceImage().getModel();
+        final boolean modelYAxisDown = model.getImageToModelTransform(level).getDeterminant() > 0.0;
+
+        final List<Mask> masks = new ArrayList<Mask>();
+        if (maskLayer && imageMasks.length > 0) {
+            final Product maskProduct = readProduct(maskProductFilePath);
+            for (ImageMask imageMask : imageMasks) {
+                final Mask mask = createImageMask(imageMask, maskProduct);
+                if (mask != null) {
+                    this.sourceProduct.getMaskGroup().add(mask);
+                    masks.add(mask);
+                }
+            }
+        }
+
+        final List<TileOverlay> overlays = new ArrayList<TileOverlay>();
+        if (contourLayer && contours.length > 0) {
+            final Product contourProduct = readProduct(contourProductFilePath);
+            for (Contour contour : contours) {
+                overlays.add(new VectorTileOverlay(createContourVectorDataNodes(contour, contourProduct, this.sourceProduct),
+                                                   getContourLineColor(contour), 1.0f));
+            }
+        }
+        if (graticuleLayer) {
+            overlays.add(new LayerTileOverlay(createGraticuleLayer(sourceBand), modelYAxisDown));
+        }
+        if (textAnnotationLayer) {
+            overlays.addAll(createTextTileOverlays(sourceBand.getGeoCoding(), model.getImageToModelTransform(0)));
+        }
+
+        return new ExportLayers(masks, level, overlays);
+    }
+
+    private Product readProduct(String productFilePath) {
+        Operator readerOp = new ReadOp();
+        readerOp.setParameter("file", new File(productFilePath));
+        readerOp.initialize();
+        return readerOp.getTargetProduct();
+    }
+
+    private Layer createGraticuleLayer(RasterDataNode raster) {
+        final LayerType layerType = LayerTypeRegistry.getLayerType(GraticuleLayerType.class);
+        final PropertySet configuration = layerType.createLayerConfig(null);
+        configuration.setValue(GraticuleLayerType.PROPERTY_NAME_RASTER, raster);
+        final Layer layer = layerType.createLayer(null, configuration);
+        configureGraticuleLayer(layer);
+        return layer;
+    }
+
+    private void configureGraticuleLayer(Layer layer) {
+        PropertySet ps = layer.getConfiguration();
+        for (Property p:ps.getProperties()) {
+            if (p.getName().contains(GraticuleLayerType.PROPERTY_NAME_TICKMARK_ENABLED)) {
+                try {
+                    p.setValue(new Boolean(graticuleLayerTickEnabled));
+                } catch (ValidationException ve ){
+
+                }
+
+            } else if (p.getName().contains(GraticuleLayerType.PROPERTY_NAME_TEXT_INSIDE)) {
+                try {
+                    p.setValue(new Boolean(graticuleLayerLabel));
+                } catch (ValidationException ve ){
+
+                }
+
+            }
+        }
+    }
+
+    private List<TileOverlay> createTextTileOverlays(GeoCoding geoCoding, AffineTransform imageToModel) {
+        final List<TileOverlay> overlays = new ArrayList<TileOverlay>();
+        for (TextAnnotation textAnnotation : textAnnotations) {
+            final float[] latlon = textAnnotation.getTextAnnotationLatLon();
+            final int[] pixels = textAnnotation.getTextAnnotationLocation();
+            PixelPos pixelPos = null;
+            if (latlon != null && latlon.length > 0) {
+                pixelPos = geoCoding.getPixelPos(new GeoPos(latlon[0], latlon[1]), null);
+            } else if (pixels != null && pixels.length > 0) {
+                pixelPos = new PixelPos(pixels[0], pixels[1]);
+            }
+            if (pixelPos == null || !pixelPos.isValid()) {
+                continue;
+            }
+            final Font textFont = new Font(textAnnotation.getTextAnnotationFontName(), textAnnotation.getTextAnnotationFontStyle(), textAnnotation.getTextAnnotationFontSize());
+            final int[] fontColor = textAnnotation.getTextAnnotationFontColor();
+            final Color textColor = new Color(fontColor[0], fontColor[1], fontColor[2]);
+            overlays.add(new TextTileOverlay(textAnnotation.getTextAnnotationContent(),
+                                             imageToModel.transform(pixelPos, null),
+                                             textFont, textColor, Color.BLACK));
+        }
+        return overlays;
+    }
+
     private void write3(String imageFormat, ProductSceneView view, boolean entireImageSelected, File file) {
 
 
@@ -430,31 +649,33 @@ public class WriteImageOp extends Operator {
         }
     }
 
-    private void writeImage(String imageFormat, RenderedImage finalImage, ProductSceneView view, boolean entireImageSelected, File file) {
+    /**
+     * Writes an image. The encoders request the image strip by strip, so a tiled image is written
+     * without being computed as a whole.
+     */
+    private void writeImage(String imageFormat, RenderedImage finalImage, Product product, boolean entireImageSelected, File file) throws IOException {
 
         boolean geoTIFFWritten = false;
-        try {
-            if (imageFormat.equals("GeoTIFF") && entireImageSelected) {
-                final GeoTIFFMetadata metadata = ProductUtils.createGeoTIFFMetadata(view.getProduct());
-                if (metadata != null) {
-                    GeoTIFF.writeImage(finalImage, file, metadata);
-                    geoTIFFWritten = true;
-                }
+        if (imageFormat.equals("GeoTIFF") && entireImageSelected) {
+            final GeoTIFFMetadata metadata = ProductUtils.createGeoTIFFMetadata(product);
+            if (metadata != null) {
+                GeoTIFF.writeImage(finalImage, file, metadata);
+                geoTIFFWritten = true;
             }
-            if (!geoTIFFWritten) {
-                if ("JPEG".equalsIgnoreCase(imageFormat)) {
-                    finalImage = BandSelectDescriptor.create(finalImage, new int[]{0, 1, 2}, null);
-                }
-                final OutputStream stream = new FileOutputStream(file);
-                try {
-                    ImageEncoder encoder = ImageCodec.createImageEncoder(imageFormat, stream, null);
-                    encoder.encode(finalImage);
-                } finally {
-                    stream.close();
-                }
+        }
+        if (!geoTIFFWritten) {
+            if ("JPEG".equalsIgnoreCase(imageFormat)) {
+                finalImage = BandSelectDescriptor.create(finalImage, new int[]{0, 1, 2}, null);
+            }
+            // without georeferencing a GeoTIFF is a plain TIFF
+            final String encoderFormat = GEOTIFF_FORMAT_DESCRIPTION[0].equals(imageFormat) ? "TIFF" : imageFormat;
+            final OutputStream stream = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                ImageEncoder encoder = ImageCodec.createImageEncoder(encoderFormat, stream, null);
+                encoder.encode(finalImage);
+            } finally {
+                stream.close();
             }
-        } catch (IOException ioe) {
-
         }
     }
 
@@ -601,55 +822,15 @@ public class WriteImageOp extends Operator {
      * @param productSceneView
      */
     private void applyMask(final ProductSceneView productSceneView) {
-        ImageMask imageMask;
-        String maskSourceBandName;
-        String maskName;
-        String maskDescription;
-        Band maskBand;
-        int[] maskColorValueArray;
-        String maskExpression;
-        double maskTransparency;
         Layer maskCollectionLayer = productSceneView.getSceneImage().getMaskCollectionLayer(true);
         maskCollectionLayer.setVisible(true);
         int existingLayerCount = maskCollectionLayer.getChildren().size();
-        Operator readerOp = new ReadOp();
-        readerOp.setParameter("file", new File(maskProductFilePath));
-        readerOp.initialize();
-        Product maskProduct = readerOp.getTargetProduct();
+        Product maskProduct = readProduct(maskProductFilePath);
         for (int i = 0; i < imageMasks.length; i++) {
-            imageMask = imageMasks[i];
-            //extract mask band, rename it, and add to the source product
-            maskSourceBandName = imageMask.getImageMaskSourceBandName();
-            maskBand = maskProduct.getBand(maskSourceBandName);
-            maskBand.setName(maskSourceBandName);
-            if (!sourceProduct.containsBand(maskSourceBandName)) {
-                sourceProduct.addBand(maskBand);
-            }
-            maskName = imageMask.getImageMaskName();
-            maskDescription = imageMask.getImageMaskDescription();
-
-            maskExpression = imageMask.getImageMaskExpression();
-
-            maskColorValueArray = imageMask.getColor();
-            maskTransparency = imageMask.getImageMaskTransparency();
-
-            if (maskExpression != null && maskExpression.length() > 0) {
-
-                if (maskColorValueArray == null || maskColorValueArray.length != 3) {
-                    maskColorValueArray = DEFAULT_MASK_COLOR;
-                }
-                final Color maskColor = new Color(maskColorValueArray[0], maskColorValueArray[1], maskColorValueArray[2]);
-
-                final Mask mask = Mask.BandMathsType.create(maskName,
-                        maskDescription,
-                        this.sourceBand.getRasterWidth(),
-                        this.sourceBand.getRasterHeight(),
-                        maskExpression,
-                        maskColor,
-                        maskTransparency);
-
+            final Mask mask = createImageMask(imageMasks[i], maskProduct);
+            if (mask != null) {
                 this.sourceProduct.getMaskGroup().add(i + existingLayerCount, mask);
-                maskCollectionLayer.getChildren().add(i + existingLayerCount, getMaskAsLayer(this.sourceProduct.getMaskGroup().get(maskName)));
+                maskCollectionLayer.getChildren().add(i + existingLayerCount, getMaskAsLayer(this.sourceProduct.getMaskGroup().get(mask.getName())));
             }
         }
 
@@ -669,6 +850,41 @@ public class WriteImageOp extends Operator {
         productSceneView.setMaskOverlayEnabled(true);
     }
 
+    /**
+     * Creates the mask described by an image mask parameter. The mask's source band is copied from the
+     * mask product into the source product, where the mask expression is evaluated.
+     *
+     * @return the mask, {@code null} if the image mask has no expression
+     */
+    private Mask createImageMask(ImageMask imageMask, Product maskProduct) {
+        //extract mask band, rename it, and add to the source product
+        String maskSourceBandName = imageMask.getImageMaskSourceBandName();
+        Band maskBand = maskProduct.getBand(maskSourceBandName);
+        maskBand.setName(maskSourceBandName);
+        if (!sourceProduct.containsBand(maskSourceBandName)) {
+            sourceProduct.addBand(maskBand);
+        }
+
+        String maskExpression = imageMask.getImageMaskExpression();
+        if (maskExpression == null || maskExpression.length() == 0) {
+            return null;
+        }
+
+        int[] maskColorValueArray = imageMask.getColor();
+        if (maskColorValueArray == null || maskColorValueArray.length != 3) {
+            maskColorValueArray = DEFAULT_MASK_COLOR;
+        }
+        final Color maskColor = new Color(maskColorValueArray[0], maskColorValueArray[1], maskColorValueArray[2]);
+
+        return Mask.BandMathsType.create(imageMask.getImageMaskName(),
+                imageMask.getImageMaskDescription(),
+                this.sourceBand.getRasterWidth(),
+                this.sourceBand.getRasterHeight(),
+                maskExpression,
+                maskColor,
+                imageMask.getImageMaskTransparency());
+    }
+
     private Layer getMaskAsLayer(final Mask mask) {
         final MaskLayerType maskLayerType = LayerTypeRegistry.getLayerType(MaskLayerType.class);
         final PropertySet configuration = maskLayerType.createLayerConfig(null);
@@ -820,46 +1036,11 @@ public class WriteImageOp extends Operator {
      * @param productSceneView
      */
     private void addContourLayers(ProductSceneView productSceneView) {
-        ImageMask imageMask;
-        String contourSourceBandName;
-        Operator readerOp = new ReadOp();
-        readerOp.setParameter("file", new File(contourProductFilePath));
-        readerOp.initialize();
-        Product contourProduct = readerOp.getTargetProduct();
+        Product contourProduct = readProduct(contourProductFilePath);
         productSceneView.setGcpOverlayEnabled(true);
         Product sourceProduct = productSceneView.getProduct();
-        String filterBandName;
-        ContourData contourData;
-        Color contourLineColor;
-        Band filteredBand;
-        Band contourBand;
         for (Contour contour: contours) {
-            contourSourceBandName = contour.getContourSourceBandName();
-            contourBand = contourProduct.getBand(contourSourceBandName);
-            contourBand.setName(contourSourceBandName);
-            if (!sourceProduct.containsBand(contourSourceBandName)) {
-                sourceProduct.addBand(contourBand);
-            }
-            filterBandName = contour.getFilterName();
-            filteredBand = getFilteredBand(contourBand, contour.getName());
-            ContourInterval ci = new ContourInterval(contour.getName(), new Double(contour.getValue()), filterBandName, 1, true); //0.08, "am5", 1);
-            contourLineColor = new Color(contour.getColor()[0], contour.getColor()[1], contour.getColor()[2]);
-            ci.setLineColor(contourLineColor);
-            ArrayList<ContourInterval> contourIntervals = new ArrayList<>();
-            contourIntervals.add(ci);
-            if (contour.applyFilter){
-               contourBand = filteredBand;
-            } else {
-                contourBand = sourceBand;
-            }
-            contourData = new ContourData(contourBand, filterBandName, sourceBandName, 1);
-            contourData.setContourIntervals(contourIntervals);
-            contourData.setBand(contourBand);
-
-            ShowVectorContourOverlayAction action = new ShowVectorContourOverlayAction();
-            action.setGeoCoding((GeoCoding) sourceProduct.getGeoCoding());
-            ArrayList<VectorDataNode> vectorDataNodes = action.createVectorDataNodesforContours(contourData);
-
+            List<VectorDataNode> vectorDataNodes = createContourVectorDataNodes(contour, contourProduct, sourceProduct);
 
             for (VectorDataNode vectorDataNode : vectorDataNodes) {
                 // remove the old vector data node with the same name.
@@ -885,10 +1066,156 @@ public class WriteImageOp extends Operator {
             }
         }
     }
+
+    /**
+     * Creates the contour lines of a contour parameter. The contour's source band is copied from the
+     * contour product into the source product.
+     */
+    private List<VectorDataNode> createContourVectorDataNodes(Contour contour, Product contourProduct, Product sourceProduct) {
+        String contourSourceBandName = contour.getContourSourceBandName();
+        Band contourBand = contourProduct.getBand(contourSourceBandName);
+        contourBand.setName(contourSourceBandName);
+        if (!sourceProduct.containsBand(contourSourceBandName)) {
+            sourceProduct.addBand(contourBand);
+        }
+        String filterBandName = contour.getFilterName();
+        Band filteredBand = getFilteredBand(contourBand, contour.getName());
+        ContourInterval ci = new ContourInterval(contour.getName(), new Double(contour.getValue()), filterBandName, 1, true); //0.08, "am5", 1);
+        ci.setLineColor(getContourLineColor(contour));
+        ArrayList<ContourInterval> contourIntervals = new ArrayList<>();
+        contourIntervals.add(ci);
+        if (contour.applyFilter){
+           contourBand = filteredBand;
+        } else {
+            contourBand = sourceBand;
+        }
+        ContourData contourData = new ContourData(contourBand, filterBandName, sourceBandName, 1);
+        contourData.setContourIntervals(contourIntervals);
+        contourData.setBand(contourBand);
+
+        ShowVectorContourOverlayAction action = new ShowVectorContourOverlayAction();
+        action.setGeoCoding((GeoCoding) sourceProduct.getGeoCoding());
+        return action.createVectorDataNodesforContours(contourData);
+    }
+
+    private static Color getContourLineColor(Contour contour) {
+        final int[] color = contour.getColor();
+        if (color == null || color.length != 3) {
+            return Color.BLACK;
+        }
+        return new Color(color[0], color[1], color[2]);
+    }
+
     private int toInteger(double value) {
         return MathUtils.floorInt(value);
     }
 
+    /**
+     * The masks and overlays of an exported image.
+     */
+    private static class ExportLayers {
+
+        private final RenderedImage[] maskImages;
+        private final Color[] maskColors;
+        private final double[] maskTransparencies;
+        private final List<TileOverlay> overlays;
+
+        private ExportLayers(List<Mask> masks, int level, List<TileOverlay> overlays) {
+            maskImages = new RenderedImage[masks.size()];
+            maskColors = new Color[masks.size()];
+            maskTransparencies = new double[masks.size()];
+            for (int i = 0; i < masks.size(); i++) {
+                maskImages[i] = masks.get(i).getSourceImage().getImage(level);
+                maskColors[i] = masks.get(i).getImageColor();
+                maskTransparencies[i] = masks.get(i).getImageTransparency();
+            }
+            this.overlays = overlays;
+        }
+    }
+
+    public static class Quicklook {
+
+        @Parameter(description = "Name of band containing data. Defaults to the operator's source band.")
+        private String sourceBandName;
+        @Parameter(description = "The file to which the image is written.", notNull = true)
+        private String filePath;
+        @Parameter(description = "Output image format. Defaults to the operator's format.")
+        private String formatName;
+        @Parameter(description = "Color palette definition file. Defaults to the operator's color palette definition.")
+        private String cpdFilePath;
+        @Parameter(description = "Minimum value of colour scale. Defaults to the operator's minimum.")
+        private Double colourScaleMin;
+        @Parameter(description = "Maximum value of colour scale. Defaults to the operator's maximum.")
+        private Double colourScaleMax;
+        @Parameter(description = "The scale type to apply. Can be 'linear' or 'log'. Defaults to the operator's scale type.")
+        private String scaleType;
+
+        public Quicklook() {
+        }
+
+        public Quicklook(String sourceBandName, String filePath, String cpdFilePath) {
+            this.sourceBandName = sourceBandName;
+            this.filePath = filePath;
+            this.cpdFilePath = cpdFilePath;
+        }
+
+        public String getSourceBandName() {
+            return sourceBandName;
+        }
+
+        public void setSourceBandName(String sourceBandName) {
+            this.sourceBandName = sourceBandName;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public void setFilePath(String filePath) {
+            this.filePath = filePath;
+        }
+
+        public String getFormatName() {
+            return formatName;
+        }
+
+        public void setFormatName(String formatName) {
+            this.formatName = formatName;
+        }
+
+        public String getCpdFilePath() {
+            return cpdFilePath;
+        }
+
+        public void setCpdFilePath(String cpdFilePath) {
+            this.cpdFilePath = cpdFilePath;
+        }
+
+        public Double getColourScaleMin() {
+            return colourScaleMin;
+        }
+
+        public void setColourScaleMin(Double colourScaleMin) {
+            this.colourScaleMin = colourScaleMin;
+        }
+
+        public Double getColourScaleMax() {
+            return colourScaleMax;
+        }
+
+        public void setColourScaleMax(Double colourScaleMax) {
+            this.colourScaleMax = colourScaleMax;
+        }
+
+        public String getScaleType() {
+            return scaleType;
+        }
+
+        public void setScaleType(String scaleType) {
+            this.scaleType = scaleType;
+        }
+    }
+
     public static class TextAnnotation {
 
         @Parameter(description = "The name of a text annotation.")